@@ -17,20 +17,33 @@
 package com.sababado.network;
 
 
+import java.io.File;
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.List;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpResponse;
-import org.apache.http.NameValuePair;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
-import org.apache.http.client.utils.URLEncodedUtils;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
 import org.xmlpull.v1.XmlPullParserException;
 
 import com.sababado.utils.UtilNetwork;
@@ -38,35 +51,54 @@ import com.sababado.utils.UtilNetwork;
 import android.content.Context;
 import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.util.Log;
 
 /**
  * <p>This implementation of an {@link AsyncTask} is to help make service calls convenient and easy.
  * <br/>Supply an implementation of a {@link AsyncServiceListener} as a callback. It's appropriate functions will be called when there is either a service call failure or success.
  * </p>
+ * <p>To run calls in parallel with priorities use a {@link ServiceExecutor} instead of calling {@link #execute(Void...)} directly.</p>
  * <p><b>Logging statements are off by default and can be turned off by calling</b> {@link AsyncServiceCallTask#setLogLevel(int) setLogLevel(AsyncServiceCallTask.LOGGING_OFF);}</p>
  * @author Robert J. Szabo
- * @version 1.1
+ * @version 1.25
  * @since 8/30/2012
  * @updates 
+ * 1.25 the request after a <code>304</code> for an evicted body is one more attempt of the same call instead of a new call.<br/>
+ * 1.24 calls that are not {@link Service#isIdempotent() idempotent} are only retried when the request never reached the server.<br/>
+ * 1.23 a <code>304</code> for a cached body that was evicted in the meantime is followed by one unconditional request.<br/>
+ * 1.22 requests aborted by the deadline and attempts that fail in the client do not count against the {@link CircuitBreaker}.<br/>
+ * 1.21 a cancelled call is no longer flagged on its service, which other calls may share; the service asks the call running on its thread.<br/>
+ * 1.20 services with {@link Service#NO_DEADLINE} are not limited by the default deadline.<br/>
+ * 1.19 records the phases of every call to the {@link ServiceTracer}, log messages are only built when they are logged and
+ * {@link #setLogLevel(int)} accepts {@link #LOGGING_ONLY_ERRORS}.<br/>
+ * 1.18 <code>429 Too Many Requests</code> responses pause the call's {@link RateLimit}.<br/>
+ * 1.17 requests to a host whose {@link CircuitBreaker} is open fail fast with {@link #ERR_CODE_CIRCUIT_OPEN}.<br/>
+ * 1.16 results travel as a {@link ServiceResult}, {@link TypedServiceListener}s get them without a Bundle, see {@link TypedService}.<br/>
+ * 1.15 {@link DownloadService}s stream their response to a file and resume interrupted downloads.<br/>
+ * 1.14 added {@link #cancelCall()} which also aborts the request, its retries and the parse.<br/>
+ * 1.13 mutating calls that opted in are queued in the {@link ServiceOutbox} when there is no network, see {@link #ERR_CODE_QUEUED_OFFLINE}.<br/>
+ * 1.12 reports the timings and outcome of every call to {@link ServiceMetrics}.<br/>
+ * 1.11 POST and PUT calls send the service's {@link RequestBody}, streamed with chunked transfer encoding.<br/>
+ * 1.10 slow requests of {@link Service#setHedgingEnabled(boolean) hedged} services send a second request, see {@link HedgePolicy}.<br/>
+ * 1.9 added connect, read and deadline timeouts and {@link #ERR_CODE_DEADLINE_EXCEEDED}.<br/>
+ * 1.8 failed attempts are retried according to a {@link RetryPolicy}, by default with exponential backoff and jitter.<br/>
+ * 1.7 negotiates gzip/deflate compressed responses and decompresses them while they are parsed.<br/>
+ * 1.6 a {@link StreamingServiceListener} receives parsed items in batches while the response is parsed.<br/>
+ * 1.5 results of GET calls are served from and stored in the {@link ServiceResultCache}.<br/>
+ * 1.4 GET calls use the installed {@link ServiceResponseCache}, a <code>304 Not Modified</code> response is served from the cache.<br/>
+ * 1.3 added {@link #ERR_CODE_REJECTED} for calls rejected by a {@link ServiceExecutor}.<br/>
+ * 1.2 calls share a connection pooled {@link HttpClient} from {@link ServiceHttpClient} instead of creating a new client per attempt.<br/>
  * 1.1 gets parameter name and values from all param name and values (user defined plus constant)<br/>
  * 1.0.2 added additional logs.<br/>
  * 1.0.1 added ability to turn on and off logs
  */
-public class AsyncServiceCallTask extends AsyncTask<Void, String, Bundle>
+public class AsyncServiceCallTask extends AsyncTask<Void, String, ServiceResult>
 {
 	/**
 	 * Find the result from the success bundle with this tag.
 	 */
 	public static final String EXTRA_SERVICE_RESULT = "EXTRA_SERVICE_RESULT";
-	/**
-	 * Find the error message from the failure bundle with this tag.
-	 */
-	private static final String EXTRA_ERR_MSG = "EXTRA_ERR_MSG";
-	/**
-	 * Find the error code from the failure bundle with this tag.
-	 */
-	private static final String EXTRA_ERR_CODE = "EXTRA_ERR_CODE";
 
 	/**
 	 * Error code corresponding to an unknown error. There is an error code missing for this situation.
@@ -96,6 +128,41 @@ public class AsyncServiceCallTask extends AsyncTask<Void, String, Bundle>
 	 * Error code corresponding to the fact that nothing came back from the service call. The response is <code>null</code>.
 	 */
 	public static final int ERR_CODE_NO_RESULTS = 15;
+	/**
+	 * Error code corresponding to the call being rejected by a {@link ServiceExecutor} because too many calls are waiting.
+	 */
+	public static final int ERR_CODE_REJECTED = 16;
+	/**
+	 * Error code corresponding to the call not completing before its deadline, see {@link Service#setDeadline(long)}.
+	 */
+	public static final int ERR_CODE_DEADLINE_EXCEEDED = 17;
+	/**
+	 * Error code corresponding to the call being queued in the {@link ServiceOutbox} because there is no network, see {@link Service#setQueueWhenOffline(boolean)}.
+	 */
+	public static final int ERR_CODE_QUEUED_OFFLINE = 18;
+	/**
+	 * Error code corresponding to the call not being made because the {@link CircuitBreaker} of its host is open.
+	 */
+	public static final int ERR_CODE_CIRCUIT_OPEN = 19;
+	
+	/**
+	 * Default time in milliseconds to wait for a connection to be established.
+	 */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 15000;
+	/**
+	 * Default time in milliseconds to wait for data while reading a response.
+	 */
+	public static final int DEFAULT_READ_TIMEOUT = 30000;
+	/**
+	 * Default total time in milliseconds a call can take, including retries and parsing.
+	 */
+	public static final long DEFAULT_DEADLINE = 60000;
+	
+	private static int sDefaultConnectTimeout = DEFAULT_CONNECT_TIMEOUT;
+	private static int sDefaultReadTimeout = DEFAULT_READ_TIMEOUT;
+	private static long sDefaultDeadline = DEFAULT_DEADLINE;
+	//Aborts requests that run past their deadline.
+	private static ScheduledExecutorService sDeadlineTimer;
 
 	//Listener associated with this async task
 	private AsyncServiceListener mAsyncServiceListener;
@@ -105,6 +172,39 @@ public class AsyncServiceCallTask extends AsyncTask<Void, String, Bundle>
 	private Service mService;	
 	//Context invoking this async task
 	private Context mContext;
+	//Client used to make the call, null to use the shared client.
+	private HttpClient mHttpClient;
+	//Decides which failed attempts are retried, null to use the default policy.
+	private RetryPolicy mRetryPolicy;
+	//Retry policy used by tasks that do not have their own.
+	private static RetryPolicy sDefaultRetryPolicy;
+	//Time the call must be done by based on SystemClock.elapsedRealtime(), 0 if there is no deadline.
+	private long mDeadline;
+	//Request currently being made, so it can be aborted.
+	private volatile HttpUriRequest mCurrentRequest;
+	//true once the deadline timer aborted the request.
+	private volatile boolean mDeadlineAborted;
+	//Hedge of the request currently being made, null if it is not hedged.
+	private volatile HttpUriRequest mHedgeRequest;
+	//Decides when hedged services send a second request.
+	private static HedgePolicy sHedgePolicy;
+	//Timings and outcome of the call.
+	private final ServiceCallMetrics mMetrics = new ServiceCallMetrics();
+	//Time the task was executed based on SystemClock.elapsedRealtime().
+	private long mExecutedAt;
+	//Maximum number of items in a batch delivered to a StreamingServiceListener.
+	private int mStreamingBatchSize = DEFAULT_STREAMING_BATCH_SIZE;
+	//Maximum time in milliseconds a parsed item waits before its batch is delivered.
+	private long mStreamingBatchDelay = DEFAULT_STREAMING_BATCH_DELAY;
+	
+	/**
+	 * Default maximum number of items in a batch delivered to a {@link StreamingServiceListener}.
+	 */
+	public static final int DEFAULT_STREAMING_BATCH_SIZE = 20;
+	/**
+	 * Default maximum time in milliseconds a parsed item waits before it is delivered to a {@link StreamingServiceListener}.
+	 */
+	public static final long DEFAULT_STREAMING_BATCH_DELAY = 250;
 	
 	/**
 	 * Constant used to not log any calls
@@ -128,6 +228,17 @@ public class AsyncServiceCallTask extends AsyncTask<Void, String, Bundle>
 	
 	//true if the service call is running, false if not.
 	private boolean mRunning;
+	//HttpStatus of the bundled HttpClient has no constant for it.
+	private static final int SC_TOO_MANY_REQUESTS = 429;
+	//Run on the main thread once the call completed or was cancelled, added by the executor.
+	private ArrayList<Runnable> mOnFinished;
+	//Last id given to a call.
+	private static final AtomicInteger sLastCallId = new AtomicInteger();
+	//Identifies this call in the ServiceTracer.
+	private final int mCallId = sLastCallId.incrementAndGet();
+	private final ServiceTracer mTracer = ServiceTracer.getInstance();
+	//Call running on each worker thread.
+	private static final ThreadLocal<AsyncServiceCallTask> sRunningTask = new ThreadLocal<AsyncServiceCallTask>();
 	
 	/**
 	 * Set a log level so that this {@link AsyncServiceCallTask} can determine which logs should be allowed.
@@ -135,7 +246,7 @@ public class AsyncServiceCallTask extends AsyncTask<Void, String, Bundle>
 	 */
 	public static void setLogLevel(int logLevel)
 	{
-		if(logLevel != LOGGING_OFF && logLevel != LOGGING_ON_ALL)
+		if(logLevel != LOGGING_OFF && logLevel != LOGGING_ON_ALL && logLevel != LOGGING_ONLY_ERRORS)
 			throw new RuntimeException("Inappropriate use of log level. Use an AsyncServiceCallTask.LOGGING_* constant");
 		mLogLevel = logLevel;
 	}
@@ -169,164 +280,873 @@ public class AsyncServiceCallTask extends AsyncTask<Void, String, Bundle>
 		MAX_ATTEMPTS = maxAutoRetryAttempts;
 	}
 	
+	/**
+	 * Initialize this async task with a typed callback listener, a typed service to execute, and the invoking context.
+	 * <br/>The listener gets the parsed result as it is, see {@link TypedServiceListener}.
+	 * @param typedServiceListener Callback Listener for this task
+	 * @param service Service to execute
+	 * @param ctx Invoking context
+	 */
+	public <T> AsyncServiceCallTask(TypedServiceListener<T> typedServiceListener, TypedService<? extends T> service, Context ctx)
+	{
+		this(new TypedListenerAdapter<T>(typedServiceListener), service, ctx);
+	}
+	
+	/**
+	 * Get the id of this call, it identifies the call's events in the {@link ServiceTracer}.
+	 * @return the call id, unique within the process.
+	 */
+	public int getCallId()
+	{
+		return mCallId;
+	}
+	
+	/**
+	 * Cancel the service call. Unlike {@link #cancel(boolean)} on its own this also aborts the HTTP request and its hedge, which releases
+	 * the connection and stops the download, drops any pending retries and makes {@link Service#isCancelled()} return true
+	 * in the parser of this call so it can stop early. The listener does not receive a success or failure callback.
+	 * @return false if the call could not be cancelled, typically because it has already completed.
+	 */
+	public boolean cancelCall()
+	{
+		boolean cancelled = cancel(true);
+		if(cancelled)
+			abortCurrentRequest();
+		return cancelled;
+	}
+	
+	/**
+	 * Set the client this task should use to make the service call instead of the shared client from {@link ServiceHttpClient#getSharedClient()}.
+	 * <br/>This must be called before the task is executed.
+	 * @param httpClient Client to use, or <code>null</code> to use the shared client.
+	 */
+	public void setHttpClient(HttpClient httpClient)
+	{
+		mHttpClient = httpClient;
+	}
+	
+	/**
+	 * Set the timeouts used by services that do not set their own.
+	 * @param connectTimeout Time in milliseconds to wait for a connection to be established.
+	 * @param readTimeout Time in milliseconds to wait for data while reading a response.
+	 * @param deadline Total time in milliseconds a call can take including retries and parsing, 0 for no deadline.
+	 */
+	public static synchronized void setDefaultTimeouts(int connectTimeout, int readTimeout, long deadline)
+	{
+		if(connectTimeout < 0 || readTimeout < 0 || deadline < 0)
+			throw new IllegalArgumentException("Timeouts can not be negative.");
+		sDefaultConnectTimeout = connectTimeout;
+		sDefaultReadTimeout = readTimeout;
+		sDefaultDeadline = deadline;
+	}
+	
+	/**
+	 * Set the policy that decides when {@link Service#setHedgingEnabled(boolean) hedged} services send a second request.
+	 * @param hedgePolicy Policy to use, or <code>null</code> to use a default {@link HedgePolicy}.
+	 */
+	public static synchronized void setHedgePolicy(HedgePolicy hedgePolicy)
+	{
+		sHedgePolicy = hedgePolicy;
+	}
+	
+	/**
+	 * Get the policy that decides when {@link Service#setHedgingEnabled(boolean) hedged} services send a second request.
+	 * @return the hedge policy.
+	 */
+	public static synchronized HedgePolicy getHedgePolicy()
+	{
+		if(sHedgePolicy == null)
+			sHedgePolicy = new HedgePolicy();
+		return sHedgePolicy;
+	}
+	
+	/**
+	 * Set the retry policy used by every task that was not given its own policy.
+	 * @param retryPolicy Policy to use, or <code>null</code> to use a {@link DefaultRetryPolicy}.
+	 */
+	public static synchronized void setDefaultRetryPolicy(RetryPolicy retryPolicy)
+	{
+		sDefaultRetryPolicy = retryPolicy;
+	}
+	
+	/**
+	 * Get the retry policy used by every task that was not given its own policy.
+	 * @return the default retry policy.
+	 */
+	public static synchronized RetryPolicy getDefaultRetryPolicy()
+	{
+		if(sDefaultRetryPolicy == null)
+			sDefaultRetryPolicy = new DefaultRetryPolicy();
+		return sDefaultRetryPolicy;
+	}
+	
+	/**
+	 * Set the retry policy of this task. The task never makes more than its maximum number of attempts.
+	 * @param retryPolicy Policy to use, or <code>null</code> to use the default policy.
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy)
+	{
+		mRetryPolicy = retryPolicy;
+	}
+	
+	/**
+	 * Set how parsed items are batched when the listener is a {@link StreamingServiceListener}.
+	 * A batch is delivered when it is full or when its first item has waited long enough, whichever comes first.
+	 * @param maxItems Maximum number of items in a batch
+	 * @param maxDelay Maximum time in milliseconds an item waits before its batch is delivered
+	 */
+	public void setStreamingBatch(int maxItems, long maxDelay)
+	{
+		if(maxItems < 1 || maxDelay < 0)
+			throw new IllegalArgumentException("A batch must hold at least 1 item and the delay can not be negative.");
+		mStreamingBatchSize = maxItems;
+		mStreamingBatchDelay = maxDelay;
+	}
+	
+	/**
+	 * Get the listener that receives this task's callbacks.
+	 * @return the listener.
+	 */
+	AsyncServiceListener getAsyncServiceListener()
+	{
+		return mAsyncServiceListener;
+	}
+	
+	/**
+	 * Get the service this task calls.
+	 */
+	Service getService()
+	{
+		return mService;
+	}
+	
+	/**
+	 * Get the context this task was created with.
+	 */
+	Context getContext()
+	{
+		return mContext;
+	}
+	
+	@Override
+	protected void onPreExecute()
+	{
+		mExecutedAt = SystemClock.elapsedRealtime();
+		mMetrics.mEndpoint = ServiceMetrics.getEndpoint(mService.getUrl());
+		mMetrics.mCallType = mService.getCallType();
+		mTracer.trace(mCallId, ServiceTracer.PHASE_EXECUTED, 0, 0);
+	}
+	
+	/**
+	 * Check if the call running on the current thread was cancelled.
+	 * @return true if it was cancelled, false if it was not or no call is running on this thread.
+	 */
+	static boolean isRunningCallCancelled()
+	{
+		AsyncServiceCallTask task = sRunningTask.get();
+		return task != null && task.isCancelled();
+	}
+	
 	@Override
-	protected Bundle doInBackground(Void...args)
+	protected ServiceResult doInBackground(Void...args)
+	{
+		//lets the service check the cancellation of this call while it parses, see Service#isCancelled().
+		sRunningTask.set(this);
+		try
+		{
+			return makeCall();
+		}
+		finally
+		{
+			sRunningTask.remove();
+		}
+	}
+	
+	/**
+	 * Make the call on the worker thread, from the caches or the network.
+	 * @return the success or failure result.
+	 */
+	private ServiceResult makeCall()
 	{
 		mRunning = true;
+		mMetrics.mQueueWait = SystemClock.elapsedRealtime() - mExecutedAt;
+		mTracer.trace(mCallId, ServiceTracer.PHASE_STARTED, 0, mMetrics.mQueueWait);
 		
 		log(LOG_TYPE_DEBUG,"****in AsyncServiceCallTask do in Background");
-		int attempts = 0;
 		
-		if(!UtilNetwork.isNetworkAvailable(mContext))
+		//an already parsed result needs neither the network nor the parser.
+		Object cachedResult = ServiceResultCache.getDefault().get(mService);
+		if(cachedResult != null)
 		{
-			Bundle responseBundle = new Bundle();
-			responseBundle.putString(EXTRA_ERR_MSG, "Sorry, there is limited or no connectivity. Please try again later.");
-			responseBundle.putInt(EXTRA_ERR_CODE, ERR_CODE_NO_NETWORK);
-			return responseBundle;
+			log(LOG_TYPE_DEBUG, "Serving parsed result from the result cache");
+			mTracer.trace(mCallId, ServiceTracer.PHASE_RESULT_CACHE_HIT, 0, 0);
+			mMetrics.mSource = ServiceCallMetrics.SOURCE_RESULT_CACHE;
+			return successResult(cachedResult);
 		}
 		
-		//get names and values
-		String[] paramNames = mService.getAllParamNames();
-		String[] paramValues= mService.getAllParamValues();
+		//parameters sent in the request body are left out of the url.
+		RequestBody requestBody = mService.getEffectiveRequestBody();
+		boolean paramsInBody = requestBody != null && mService.getRequestBody() == null;
 		
-		//build parameter list
-		String paramString = "";
-		if(paramNames != null && paramNames.length > 0)
+		String url;
+		try
 		{
-			try
+			url = mService.buildRequestUrl(paramsInBody);
+		}
+		catch(ArrayIndexOutOfBoundsException e)
+		{
+			log(LOG_TYPE_ERROR,e.getMessage());
+			throw e;
+		}
+		
+		if(isLoggable(LOG_TYPE_DEBUG))
+			log(LOG_TYPE_DEBUG,"Url: "+url);
+		
+		//use the response cache for GET calls if one is installed.
+		ServiceResponseCache cache = null;
+		String cacheKey = null;
+		ServiceResponseCache.Entry cacheEntry = null;
+		if(mService.getCallType() == Service.CALL_TYPE_GET && mService.isResponseCacheable())
+			cache = ServiceResponseCache.getInstalled();
+		if(cache != null)
+		{
+			cacheKey = mService.getRequestKey();
+			cacheEntry = cache.get(cacheKey);
+			if(cacheEntry != null && cacheEntry.isFresh())
 			{
-				//this assumes there is a 1 to 1 number of names and values
-				List<NameValuePair> nvPairs = new LinkedList<NameValuePair>();
-				for(int i=0; i<paramNames.length; i++)
+				log(LOG_TYPE_DEBUG, "Serving fresh response from the cache");
+				mTracer.trace(mCallId, ServiceTracer.PHASE_RESPONSE_CACHE_HIT, 0, 0);
+				mMetrics.mSource = ServiceCallMetrics.SOURCE_RESPONSE_CACHE;
+				try
 				{
-					nvPairs.add(new BasicNameValuePair(paramNames[i],paramValues[i]));
+					return parseBody(cache.openBody(cacheEntry), null);
+				}
+				catch(IOException e)
+				{
+					//the body is gone, go to the network.
+					cacheEntry = null;
 				}
-				paramString = URLEncodedUtils.format(nvPairs, "utf-8");
-			}
-			catch(ArrayIndexOutOfBoundsException e)
-			{
-				String message = "Failed paring param names and values (Index out of bounds). Make sure the there are the same number of param names and values.";
-				log(LOG_TYPE_ERROR,message);
-				throw new ArrayIndexOutOfBoundsException(message);
 			}
 		}
 		
-		String url = mService.getUrl();
-		//format the url string
-		if(paramString.length() > 0)
+		if(isCancelled())
+			return errorResult("Service call cancelled.", ERR_CODE_MAX_ATTEMPTS_REACHED);
+		
+		//a fresh cached response does not need a connection.
+		if(!UtilNetwork.isNetworkAvailable(mContext))
 		{
-			//format url to have parameters only if there are parameters to add.
-			if(!url.endsWith("?"))
-		        url += "?";
-			url += paramString;
+			if(queueOffline())
+				return errorResult("There is no connectivity, the call was queued and will be made when the network is back.", ERR_CODE_QUEUED_OFFLINE);
+			return errorResult("Sorry, there is limited or no connectivity. Please try again later.", ERR_CODE_NO_NETWORK);
 		}
 		
-		log(LOG_TYPE_DEBUG,"Url: "+url);
-		
+		//the deadline covers every attempt and parsing the response.
+		long deadline = mService.getDeadline() == Service.NO_DEADLINE ? 0 : mService.getDeadline() > 0 ? mService.getDeadline() : sDefaultDeadline;
+		ScheduledFuture<?> deadlineAbort = null;
+		if(deadline > 0)
+		{
+			mDeadline = SystemClock.elapsedRealtime() + deadline;
+			deadlineAbort = getDeadlineTimer().schedule(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					mDeadlineAborted = true;
+					abortCurrentRequest();
+				}
+			}, deadline, TimeUnit.MILLISECONDS);
+		}
+		try
+		{
+			ServiceResult result = executeRequest(url, requestBody, cache, cacheKey, cacheEntry);
+			if(!result.isSuccess() && getRemainingTime() <= 0)
+				return errorResult("The service call took too long, please try again later.", ERR_CODE_DEADLINE_EXCEEDED);
+			return result;
+		}
+		finally
+		{
+			if(deadlineAbort != null)
+				deadlineAbort.cancel(false);
+			mCurrentRequest = null;
+			mHedgeRequest = null;
+		}
+	}
+	
+	/**
+	 * Queue the call in the installed {@link ServiceOutbox} if the service opted in and the call changes data.
+	 * @return true if the call was queued.
+	 */
+	private boolean queueOffline()
+	{
+		ServiceOutbox outbox = ServiceOutbox.getInstalled();
+		if(outbox == null || !mService.isQueueWhenOffline() || mService.getCallType() == Service.CALL_TYPE_GET)
+			return false;
+		try
+		{
+			outbox.enqueue(mService);
+			log(LOG_TYPE_DEBUG, "Queued the call in the outbox");
+			return true;
+		}
+		catch(IOException e)
+		{
+			if(isLoggable(LOG_TYPE_ERROR))
+				log(LOG_TYPE_ERROR, "Could not queue the call: "+e.getMessage());
+			return false;
+		}
+	}
+	
+	/**
+	 * Make the request, retrying as allowed by the retry policy, and parse the response.
+	 * @param url Full url of the request, including the query string.
+	 * @param requestBody Body to send, or null
+	 * @param cache Response cache to use, or null
+	 * @param cacheKey Request key of the call in the cache
+	 * @param cacheEntry Stale cache entry to revalidate, or null
+	 * @return A success or failure result.
+	 */
+	private ServiceResult executeRequest(String url, RequestBody requestBody, ServiceResponseCache cache, String cacheKey, ServiceResponseCache.Entry cacheEntry)
+	{
+		int attempts = 0;
+		int maxAttempts = MAX_ATTEMPTS;
 		HttpResponse response = null;
+		//use the shared, connection pooled client unless one was supplied.
+		HttpClient client = mHttpClient != null ? mHttpClient : ServiceHttpClient.getSharedClient();
+		RetryPolicy retryPolicy = mRetryPolicy != null ? mRetryPolicy : getDefaultRetryPolicy();
+		retryPolicy.onCallStarted();
+		int connectTimeout = mService.getConnectTimeout() > 0 ? mService.getConnectTimeout() : sDefaultConnectTimeout;
+		int readTimeout = mService.getReadTimeout() > 0 ? mService.getReadTimeout() : sDefaultReadTimeout;
+		boolean isGet = mService.getCallType() == Service.CALL_TYPE_GET;
+		HedgePolicy hedgePolicy = null;
+		if(isGet)
+		{
+			//latencies of every GET call are observed so hedged calls know what is slow.
+			hedgePolicy = getHedgePolicy();
+			if(mService.isHedgingEnabled())
+				hedgePolicy.onCallStarted();
+		}
 		
-		//while under the maximum number of attempts...
-		while(attempts < MAX_ATTEMPTS)
+		while(true)
 		{
-			try
+			//while under the maximum number of attempts and before the deadline...
+			while(attempts < maxAttempts && getRemainingTime() > 0 && !isCancelled())
 			{
-				log(LOG_TYPE_DEBUG, (attempts+1)+"/"+MAX_ATTEMPTS+": Creating Http Client");
-				//create the HttpClient
-				HttpClient client = new DefaultHttpClient();
-				//set the request
-				switch(mService.getCallType())
+				IOException error = null;
+				CircuitBreaker breaker = null;
+				long start = 0;
+				try
+				{
+					if(isLoggable(LOG_TYPE_DEBUG))
+						log(LOG_TYPE_DEBUG, (attempts+1)+"/"+maxAttempts+": Making Http Request");
+					mTracer.trace(mCallId, ServiceTracer.PHASE_ATTEMPT, 0, attempts + 1);
+					HttpUriRequest request = prepareRequest(url, requestBody, cache, cacheEntry, connectTimeout, readTimeout);
+					mCurrentRequest = request;
+					//a cancel that came before the request existed could not abort it.
+					if(isCancelled())
+						request.abort();
+					//do not wait on a host that keeps failing.
+					CircuitBreaker hostBreaker = getCircuitBreaker(request);
+					if(hostBreaker != null && !hostBreaker.tryAcquire())
+					{
+						if(isLoggable(LOG_TYPE_DEBUG))
+							log(LOG_TYPE_DEBUG, "Circuit breaker of "+hostBreaker.getHost()+" is open");
+						return errorResult("The server is not responding, please try again later.", ERR_CODE_CIRCUIT_OPEN);
+					}
+					breaker = hostBreaker;
+					start = SystemClock.elapsedRealtime();
+					if(isGet && mService.isHedgingEnabled())
+					{
+						String host = request.getURI().getHost();
+						mHedgeRequest = prepareRequest(url, requestBody, cache, cacheEntry, connectTimeout, readTimeout);
+						//the hedge stays referenced so it can be aborted if it won.
+						response = HedgedExecution.execute(client, request, mHedgeRequest, hedgePolicy.getHedgeDelay(host), hedgePolicy);
+						recordTimings(null, start);
+					}
+					else
+					{
+						mHedgeRequest = null;
+						HttpContext context = new BasicHttpContext();
+						response = client.execute(request, context);
+						recordTimings(context, start);
+					}
+					if(hedgePolicy != null)
+						hedgePolicy.recordLatency(request.getURI().getHost(), SystemClock.elapsedRealtime() - start);
+				}
+				catch(IOException e)
 				{
-					case Service.CALL_TYPE_GET:
-						log(LOG_TYPE_DEBUG, "Making GET Call");
-						HttpGet getRequest = new HttpGet(url);
-						response = client.execute(getRequest);
-						break;
-					case Service.CALL_TYPE_POST:
-						log(LOG_TYPE_DEBUG, "Making POST Call");
-						HttpPost postRequest = new HttpPost(url);
-						response = client.execute(postRequest);
-						break;
-					case Service.CALL_TYPE_PUT:
-						log(LOG_TYPE_DEBUG, "Making PUT Call");
-						HttpPut putRequest = new HttpPut(url);
-						response = client.execute(putRequest);
-						break;
-					case Service.CALL_TYPE_DELETE:
-						log(LOG_TYPE_DEBUG, "Making DELETE Call");
-						HttpDelete deleteRequest = new HttpDelete(url);
-						response = client.execute(deleteRequest);
-						break;
-					default:
-						throw new RuntimeException("Invalid Call type, please see Service.CALL_TYPE_* for possible types.");
+					error = e;
+				}
+				finally
+				{
+					//the permit of an attempt is always given back, even if the client threw.
+					if(breaker != null)
+					{
+						//an aborted request or a failure in the client says nothing about the host.
+						if(isCancelled() || mDeadlineAborted || (error == null && response == null))
+							breaker.release();
+						else
+							breaker.onResult(error != null || response.getStatusLine().getStatusCode() >= HttpStatus.SC_INTERNAL_SERVER_ERROR, SystemClock.elapsedRealtime() - start);
+					}
+				}
+				if(error != null)
+					mTracer.trace(mCallId, ServiceTracer.PHASE_IO_ERROR, 0, start == 0 ? 0 : SystemClock.elapsedRealtime() - start);
+				else if(response != null)
+					mTracer.trace(mCallId, ServiceTracer.PHASE_RESPONSE, response.getStatusLine().getStatusCode(), SystemClock.elapsedRealtime() - start);
+				//hold the calls queued behind this one until the server takes requests again.
+				if(response != null && response.getStatusLine().getStatusCode() == SC_TOO_MANY_REQUESTS)
+					RateLimiter.getDefault().onTooManyRequests(mService, DefaultRetryPolicy.getRetryAfter(response));
+				attempts++;
+				mMetrics.mAttempts = attempts;
+			
+				//ask the retry policy if this attempt failed in a way that is worth retrying.
+				if(attempts >= maxAttempts || isCancelled())
+					break;
+				//a streamed body can not be sent again.
+				if(requestBody != null && !requestBody.isRepeatable())
+					break;
+				//the server may already have made a change that must not be made twice.
+				if(!mService.isIdempotent() && !DefaultRetryPolicy.neverReachedServer(error, response))
+					break;
+				long retryDelay = retryPolicy.getRetryDelay(attempts, error, response);
+				if(retryDelay < 0)
+					break;
+				if(retryDelay >= getRemainingTime())
+				{
+					//the next attempt could not start before the deadline.
+					if(response != null)
+						consumeEntity(response.getEntity());
+					return errorResult("The service call took too long, please try again later.", ERR_CODE_DEADLINE_EXCEEDED);
+				}
+			
+				if(error != null)
+					publishProgress("IOException: Retrying, attempt "+(attempts+1), error.getMessage());
+				else
+				{
+					publishProgress("Service Failed: "+response.getStatusLine().getStatusCode()+": Retrying, attempt "+(attempts+1), response.getStatusLine().getReasonPhrase());
+					//release the connection before waiting.
+					consumeEntity(response.getEntity());
+					response = null;
+				}
+				if(isLoggable(LOG_TYPE_DEBUG))
+					log(LOG_TYPE_DEBUG, "Retrying in "+retryDelay+"ms");
+				mTracer.trace(mCallId, ServiceTracer.PHASE_RETRY, 0, retryDelay);
+				try
+				{
+					Thread.sleep(retryDelay);
+				}
+				catch(InterruptedException e)
+				{
+					//the task was cancelled.
+					return errorResult("Service call interrupted.", ERR_CODE_MAX_ATTEMPTS_REACHED);
 				}
 			}
-			catch(IOException e)
+		
+			//check if every attempt failed to get a response
+			if(response == null)
 			{
-				attempts++;
-				publishProgress("IOException: Retrying, attempt "+(attempts+1), e.getMessage());
+				//max number of attempts exceeded, error
+				//return errorResult("Failed "+MAX_ATTEMPTS+" attempts, please retry later.", ERR_CODE_MAX_ATTEMPTS_REACHED);
+				return errorResult("Could not connect to the server, please try again later", ERR_CODE_MAX_ATTEMPTS_REACHED);
 			}
-			
-			if(response != null)
-				break;
+				
+			ServiceResult result = parseResponse(response, cache, cacheKey, cacheEntry);
+			if(result != null)
+				return result;
+			//the cached body was evicted after the request was made conditional, ask for the whole response with one more attempt.
+			cacheEntry = null;
+			response = null;
+			maxAttempts = attempts + 1;
 		}
-		
-		//check if exceeded max number of attempts
-		if(attempts == MAX_ATTEMPTS)
+	}
+	
+	/**
+	 * Get the breaker of the host of a request.
+	 * @return the breaker, or null if circuit breakers are turned off.
+	 */
+	private static CircuitBreaker getCircuitBreaker(HttpUriRequest request)
+	{
+		CircuitBreakerRegistry registry = CircuitBreakerRegistry.getDefault();
+		String host = request.getURI().getHost();
+		if(!registry.isEnabled() || host == null)
+			return null;
+		return registry.get(host);
+	}
+	
+	/**
+	 * Record how long the attempt that got a response took to connect and to get the first byte.
+	 * @param context Context the request was executed with, null if it is not known.
+	 * @param start Time the attempt started based on SystemClock.elapsedRealtime().
+	 */
+	private void recordTimings(HttpContext context, long start)
+	{
+		Long sent = context == null ? null : (Long)context.getAttribute(ServiceMetrics.ATTR_REQUEST_SENT);
+		Long received = context == null ? null : (Long)context.getAttribute(ServiceMetrics.ATTR_RESPONSE_RECEIVED);
+		if(sent != null && received != null)
 		{
-			//max number of attempts exceeded, error
-			Bundle responseBundle = new Bundle();
-			//responseBundle.putString(EXTRA_ERR_MSG, "Failed "+MAX_ATTEMPTS+" attempts, please retry later.");
-			responseBundle.putString(EXTRA_ERR_MSG, "Could not connect to the server, please try again later");
-			responseBundle.putInt(EXTRA_ERR_CODE, ERR_CODE_MAX_ATTEMPTS_REACHED);
-			return responseBundle;
+			mMetrics.mConnectTime = sent.longValue() - start;
+			mMetrics.mTimeToFirstByte = received.longValue() - sent.longValue();
 		}
-				
-		return parseResponse(response);
+		else
+		{
+			//the client does not note when the request was sent.
+			mMetrics.mConnectTime = -1;
+			mMetrics.mTimeToFirstByte = SystemClock.elapsedRealtime() - start;
+		}
+	}
+	
+	/**
+	 * Get the time left before the deadline of the call.
+	 * @return time in milliseconds, {@link Long#MAX_VALUE} if there is no deadline.
+	 */
+	private long getRemainingTime()
+	{
+		if(mDeadline == 0)
+			return Long.MAX_VALUE;
+		return mDeadline - SystemClock.elapsedRealtime();
+	}
+	
+	/**
+	 * Set the timeouts of a request. They are shortened to the time left before the deadline.
+	 * @param request Request to set the timeouts on.
+	 * @param connectTimeout Time in milliseconds to wait for a connection.
+	 * @param readTimeout Time in milliseconds to wait for data.
+	 */
+	private void applyTimeouts(HttpUriRequest request, int connectTimeout, int readTimeout)
+	{
+		long remaining = getRemainingTime();
+		int cap = remaining > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int)Math.max(1, remaining);
+		HttpParams params = request.getParams();
+		HttpConnectionParams.setConnectionTimeout(params, Math.min(connectTimeout, cap));
+		HttpConnectionParams.setSoTimeout(params, Math.min(readTimeout, cap));
+		//do not wait for a pooled connection longer than it could take to connect.
+		ConnManagerParams.setTimeout(params, Math.min(connectTimeout, cap));
+	}
+	
+	/**
+	 * Create a request with its cache validators and timeouts.
+	 */
+	private HttpUriRequest prepareRequest(String url, RequestBody requestBody, ServiceResponseCache cache, ServiceResponseCache.Entry cacheEntry, int connectTimeout, int readTimeout) throws IOException
+	{
+		HttpUriRequest request = createRequest(url, requestBody);
+		if(cacheEntry != null && cacheEntry.hasValidators())
+			cache.addValidators(cacheEntry, request);
+		if(mService instanceof DownloadService)
+			((DownloadService)mService).addRangeHeaders(request);
+		applyTimeouts(request, connectTimeout, readTimeout);
+		return request;
 	}
 	
-	private Bundle parseResponse(HttpResponse result)
+	/**
+	 * Abort the request currently being made and its hedge, which also stops reading the response.
+	 */
+	private void abortCurrentRequest()
 	{
-		Bundle responseBundle = new Bundle();
-		if(result != null)
+		HttpUriRequest request = mCurrentRequest;
+		if(request != null)
+			request.abort();
+		HttpUriRequest hedge = mHedgeRequest;
+		if(hedge != null)
+			hedge.abort();
+	}
+	
+	/**
+	 * Get the timer that aborts requests that run past their deadline.
+	 */
+	private static synchronized ScheduledExecutorService getDeadlineTimer()
+	{
+		if(sDeadlineTimer == null)
 		{
-			if(result.getStatusLine().getStatusCode() != 200)
+			sDeadlineTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
 			{
-				//something is wrong
-				int statusCd = result.getStatusLine().getStatusCode();
-				responseBundle.putString(EXTRA_ERR_MSG, "Service Failed: "+statusCd+": "+result.getStatusLine().getReasonPhrase()+": "+mService.getUrl());
-				responseBundle.putInt(EXTRA_ERR_CODE, statusCd);
-				return responseBundle;
-			}
+				@Override
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r, "AsyncServiceCallTask-deadline");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return sDeadlineTimer;
+	}
+	
+	/**
+	 * Create the request for the service's call type.
+	 * @param url Full url of the request, including the query string.
+	 * @param requestBody Body to send with a POST or PUT call, or null
+	 * @return the request.
+	 * @throws IOException if the body could not be created.
+	 */
+	private HttpUriRequest createRequest(String url, RequestBody requestBody) throws IOException
+	{
+		HttpUriRequest request;
+		switch(mService.getCallType())
+		{
+			case Service.CALL_TYPE_GET:
+				log(LOG_TYPE_DEBUG, "Making GET Call");
+				request = new HttpGet(url);
+				break;
+			case Service.CALL_TYPE_POST:
+				log(LOG_TYPE_DEBUG, "Making POST Call");
+				HttpPost postRequest = new HttpPost(url);
+				if(requestBody != null)
+					postRequest.setEntity(requestBody.createEntity());
+				request = postRequest;
+				break;
+			case Service.CALL_TYPE_PUT:
+				log(LOG_TYPE_DEBUG, "Making PUT Call");
+				HttpPut putRequest = new HttpPut(url);
+				if(requestBody != null)
+					putRequest.setEntity(requestBody.createEntity());
+				request = putRequest;
+				break;
+			case Service.CALL_TYPE_DELETE:
+				log(LOG_TYPE_DEBUG, "Making DELETE Call");
+				request = new HttpDelete(url);
+				break;
+			default:
+				throw new RuntimeException("Invalid Call type, please see Service.CALL_TYPE_* for possible types.");
+		}
+		if(mService.isAcceptCompressedResponse())
+			ContentEncoding.acceptCompressed(request);
+		if(mService.isCompressRequestBody() && request instanceof HttpEntityEnclosingRequest)
+		{
+			HttpEntityEnclosingRequest entityRequest = (HttpEntityEnclosingRequest)request;
+			if(entityRequest.getEntity() != null)
+				entityRequest.setEntity(new GzipRequestEntity(entityRequest.getEntity()));
+		}
+		return request;
+	}
+	
+	/**
+	 * Check the status of a response and parse its body.
+	 * @param result Response of the service call
+	 * @param cache Response cache to use, or null
+	 * @param cacheKey Request key of the call in the cache
+	 * @param cacheEntry Stale entry that was revalidated, or null
+	 * @return A success or failure result, or null if the response was <code>304</code> but the cached body is gone.
+	 */
+	private ServiceResult parseResponse(HttpResponse result, ServiceResponseCache cache, String cacheKey, ServiceResponseCache.Entry cacheEntry)
+	{
+		if(result == null)
+			return errorResult("No result from service call.", ERR_CODE_NO_RESULTS);
+		
+		int statusCd = result.getStatusLine().getStatusCode();
+		if(statusCd == HttpStatus.SC_NOT_MODIFIED && cacheEntry != null)
+		{
+			//the cached response is still good.
+			consumeEntity(result.getEntity());
+			InputStream cachedBody;
 			try
 			{
-				Bundle bundle = new Bundle();
-				bundle.putSerializable(EXTRA_SERVICE_RESULT, mService.parseResults(result.getEntity().getContent()));
-				return bundle;
+				cachedBody = cache.openBody(cacheEntry);
 			}
-			catch (IllegalStateException e)
+			catch(IOException e)
 			{
-				responseBundle.putString(EXTRA_ERR_MSG, "IllegalStateException: "+e.getMessage());
-				responseBundle.putInt(EXTRA_ERR_CODE, ERR_CODE_PARSE_ILLEGAL_STATE);
-				return responseBundle;
+				//evicted since the freshness check, drop the entry so the request is made without validators.
+				log(LOG_TYPE_DEBUG, "Not modified, but the cached body is gone");
+				cache.remove(mService);
+				return null;
 			}
-			catch (IOException e)
+			log(LOG_TYPE_DEBUG, "Not modified, serving response from the cache");
+			mMetrics.mSource = ServiceCallMetrics.SOURCE_RESPONSE_CACHE;
+			cache.update(cacheEntry, result);
+			return parseBody(cachedBody, null);
+		}
+		if(mService instanceof DownloadService && (statusCd == HttpStatus.SC_OK || statusCd == HttpStatus.SC_PARTIAL_CONTENT))
+			return download((DownloadService)mService, result);
+		if(statusCd == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE && mService instanceof DownloadService)
+		{
+			//the partial file does not fit the file on the server anymore.
+			((DownloadService)mService).discardPartial();
+		}
+		if(statusCd != HttpStatus.SC_OK)
+		{
+			//something is wrong
+			//release the connection back to the pool
+			consumeEntity(result.getEntity());
+			return errorResult("Service Failed: "+statusCd+": "+result.getStatusLine().getReasonPhrase()+": "+mService.getUrl(), statusCd);
+		}
+		
+		HttpEntity entity = result.getEntity();
+		InputStream body;
+		try
+		{
+			body = ContentEncoding.decode(entity, entity.getContent());
+		}
+		catch (IllegalStateException e)
+		{
+			consumeEntity(entity);
+			return errorResult("IllegalStateException: "+e.getMessage(), ERR_CODE_PARSE_ILLEGAL_STATE);
+		}
+		catch (IOException e)
+		{
+			consumeEntity(entity);
+			return errorResult("IOException: "+e.getMessage(), ERR_CODE_PARSE_IOEXCEPTION);
+		}
+		if(cache != null)
+			body = cache.put(cacheKey, result, body);
+		return parseBody(body, entity);
+	}
+	
+	/**
+	 * Write the response of a download to its file.
+	 * @param service The download.
+	 * @param response A 200 or 206 response.
+	 * @return A success result with the file, or a failure result.
+	 */
+	private ServiceResult download(DownloadService service, HttpResponse response)
+	{
+		long start = SystemClock.elapsedRealtime();
+		try
+		{
+			ArrayList<File> result = new ArrayList<File>(1);
+			result.add(service.download(response));
+			return successResult(result);
+		}
+		catch (IllegalStateException e)
+		{
+			return errorResult("IllegalStateException: "+e.getMessage(), ERR_CODE_PARSE_ILLEGAL_STATE);
+		}
+		catch (IOException e)
+		{
+			if(isLoggable(LOG_TYPE_ERROR))
+				log(LOG_TYPE_ERROR, "Download interrupted, it will resume on the next call: "+e.getMessage());
+			return errorResult("IOException: "+e.getMessage(), ERR_CODE_PARSE_IOEXCEPTION);
+		}
+		finally
+		{
+			consumeEntity(response.getEntity());
+			mMetrics.mDownloadTime = SystemClock.elapsedRealtime() - start;
+		}
+	}
+	
+	/**
+	 * Parse a response body with the service.
+	 * @param body Body to parse, it is closed when parsing is done.
+	 * @param entity Entity the body belongs to, or null if it did not come from the network.
+	 * @return A success or failure result.
+	 */
+	private ServiceResult parseBody(InputStream body, HttpEntity entity)
+	{
+		//time spent waiting for the network while parsing is download time.
+		TimingInputStream timedBody = null;
+		if(entity != null)
+		{
+			timedBody = new TimingInputStream(body);
+			body = timedBody;
+		}
+		long parseStart = SystemClock.elapsedRealtime();
+		try
+		{
+			Object result;
+			if(isStreaming())
 			{
-				responseBundle.putString(EXTRA_ERR_MSG, "IOException: "+e.getMessage());
-				responseBundle.putInt(EXTRA_ERR_CODE, ERR_CODE_PARSE_IOEXCEPTION);
-				return responseBundle;
+				ItemBatcher batcher = new ItemBatcher(this, (StreamingServiceListener)mAsyncServiceListener, mStreamingBatchSize, mStreamingBatchDelay);
+				result = mService.parseBody(body, batcher);
+				batcher.finish();
 			}
-			catch (XmlPullParserException e)
+			else
+				result = mService.parseBody(body, null);
+			//a cancelled parse may have stopped early.
+			if(!isCancelled())
+				ServiceResultCache.getDefault().put(mService, result);
+			return successResult(result);
+		}
+		catch (IllegalStateException e)
+		{
+			return errorResult("IllegalStateException: "+e.getMessage(), ERR_CODE_PARSE_ILLEGAL_STATE);
+		}
+		catch (IOException e)
+		{
+			return errorResult("IOException: "+e.getMessage(), ERR_CODE_PARSE_IOEXCEPTION);
+		}
+		catch (XmlPullParserException e)
+		{
+			return errorResult("XmlPullParserException: "+e.getMessage(), ERR_CODE_XML_PULLPARSER_EXCEPTION);
+		}
+		finally
+		{
+			closeQuietly(body);
+			//make sure the rest of the response is read so the connection can be reused.
+			consumeEntity(entity);
+			long parseTime = SystemClock.elapsedRealtime() - parseStart;
+			if(timedBody != null)
 			{
-				responseBundle.putString(EXTRA_ERR_MSG, "XmlPullParserException: "+e.getMessage());
-				responseBundle.putInt(EXTRA_ERR_CODE, ERR_CODE_XML_PULLPARSER_EXCEPTION);
-				return responseBundle;
+				mMetrics.mDownloadTime = timedBody.getReadTime();
+				parseTime -= mMetrics.mDownloadTime;
 			}
+			mMetrics.mParseTime = Math.max(0, parseTime);
+			mTracer.trace(mCallId, ServiceTracer.PHASE_PARSED, 0, mMetrics.mParseTime);
 		}
-		else
+	}
+	
+	/**
+	 * Check if parsed items should be handed to the listener while parsing.
+	 * @return true if the listener wants batches of items.
+	 */
+	private boolean isStreaming()
+	{
+		if(mAsyncServiceListener instanceof CoalescedCall)
+			return ((CoalescedCall)mAsyncServiceListener).hasStreamingSubscribers();
+		return mAsyncServiceListener instanceof StreamingServiceListener;
+	}
+	
+	/**
+	 * Create a success result.
+	 * @param result The parsed result.
+	 * @return the success result.
+	 */
+	static ServiceResult successResult(Object result)
+	{
+		return ServiceResult.success(result);
+	}
+	
+	/**
+	 * Create a failure result.
+	 * @param errMsg The fail message.
+	 * @param errCode The error code associated with this failure.
+	 * @return the failure result.
+	 */
+	static ServiceResult errorResult(String errMsg, int errCode)
+	{
+		return ServiceResult.failure(errMsg, errCode);
+	}
+	
+	/**
+	 * Close a stream, ignoring any errors.
+	 * @param in Stream to close, may be null.
+	 */
+	private void closeQuietly(InputStream in)
+	{
+		if(in == null)
+			return;
+		try
 		{
-			responseBundle.putString(EXTRA_ERR_MSG, "No result from service call.");
-			responseBundle.putInt(EXTRA_ERR_CODE, ERR_CODE_NO_RESULTS);
-			return responseBundle;
+			in.close();
+		}
+		catch(IOException e)
+		{
+			if(isLoggable(LOG_TYPE_ERROR))
+				log(LOG_TYPE_ERROR, "Failed to close stream: "+e.getMessage());
+		}
+	}
+	
+	/**
+	 * Finish reading an entity so that its connection is released back to the connection pool.
+	 * @param entity Entity to consume, may be null.
+	 */
+	private void consumeEntity(HttpEntity entity)
+	{
+		if(entity == null)
+			return;
+		try
+		{
+			entity.consumeContent();
+		}
+		catch(IOException e)
+		{
+			if(isLoggable(LOG_TYPE_ERROR))
+				log(LOG_TYPE_ERROR, "Failed to release connection: "+e.getMessage());
 		}
 	}
 	
@@ -337,19 +1157,98 @@ public class AsyncServiceCallTask extends AsyncTask<Void, String, Bundle>
 	}
 	
 	@Override
-	protected void onPostExecute(Bundle result)
+	protected void onPostExecute(ServiceResult result)
 	{
-		String errMsg = result.getString(EXTRA_ERR_MSG);
-		if(errMsg == null)
+		if(result.isSuccess())
+			mMetrics.mOutcome = ServiceCallMetrics.OUTCOME_SUCCESS;
+		else
 		{
-			mAsyncServiceListener.onServiceCallSuccess(result);
+			mMetrics.mOutcome = ServiceCallMetrics.OUTCOME_FAILURE;
+			mMetrics.mErrorCode = result.getError().getCode();
 		}
+		reportMetrics();
+		if(result.isSuccess())
+			mTracer.trace(mCallId, ServiceTracer.PHASE_SUCCESS, 0, mMetrics.mTotalTime);
 		else
+			mTracer.trace(mCallId, ServiceTracer.PHASE_FAILURE, mMetrics.mErrorCode, mMetrics.mTotalTime);
+		deliver(mAsyncServiceListener, result);
+		mRunning = false;
+		finished();
+	}
+	
+	/**
+	 * Add something that should run on the main thread once this task completed or was cancelled.
+	 * Must be called from the main thread.
+	 * @param onFinished Runnable to run once.
+	 */
+	void addOnFinished(Runnable onFinished)
+	{
+		if(mOnFinished == null)
+			mOnFinished = new ArrayList<Runnable>(2);
+		mOnFinished.add(onFinished);
+	}
+	
+	private void finished()
+	{
+		ArrayList<Runnable> onFinished = mOnFinished;
+		mOnFinished = null;
+		if(onFinished != null)
 		{
-			int errCd = result.getInt(EXTRA_ERR_CODE,ERR_CODE_MISSING_ERR_CODE);
-			mAsyncServiceListener.onServiceCallFailure(errMsg, errCd);
+			for(Runnable runnable : onFinished)
+				runnable.run();
 		}
-		mRunning = false;
+	}
+	
+	/**
+	 * Hand the metrics of the completed call to {@link ServiceMetrics}.
+	 */
+	private void reportMetrics()
+	{
+		mMetrics.mTotalTime = SystemClock.elapsedRealtime() - mExecutedAt;
+		ServiceMetrics.getDefault().record(mService, mMetrics);
+	}
+	
+	/**
+	 * Hand a success or failure result to a listener. A success Bundle is only built for listeners that need one.
+	 * @param listener Listener to call back.
+	 * @param result A success or failure result.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	static void deliver(AsyncServiceListener listener, ServiceResult result)
+	{
+		if(listener instanceof ServiceResultListener)
+		{
+			((ServiceResultListener)listener).onServiceResult(result);
+			return;
+		}
+		if(result.isSuccess())
+		{
+			Object value = result.getResult();
+			if(value != null && !(value instanceof Serializable))
+			{
+				ArrayList wrapped = new ArrayList(1);
+				wrapped.add(value);
+				value = wrapped;
+			}
+			Bundle success = new Bundle();
+			success.putSerializable(EXTRA_SERVICE_RESULT, (Serializable)value);
+			listener.onServiceCallSuccess(success);
+		}
+		else
+		{
+			ServiceError error = result.getError();
+			listener.onServiceCallFailure(error.getMessage(), error.getCode());
+		}
+	}
+	
+	/**
+	 * Check if a message of a log type would be logged, so messages are only built when they are.
+	 * @param logType {@link #LOG_TYPE_DEBUG} or {@link #LOG_TYPE_ERROR}
+	 * @return true if the message would be logged.
+	 */
+	private static boolean isLoggable(int logType)
+	{
+		return mLogLevel == LOGGING_ON_ALL || (mLogLevel == LOGGING_ONLY_ERRORS && logType == LOG_TYPE_ERROR);
 	}
 	
 	/**
@@ -375,12 +1274,16 @@ public class AsyncServiceCallTask extends AsyncTask<Void, String, Bundle>
 	@Override
 	protected void onCancelled() {
 		mRunning = false;
+		mMetrics.mOutcome = ServiceCallMetrics.OUTCOME_CANCELLED;
+		reportMetrics();
+		mTracer.trace(mCallId, ServiceTracer.PHASE_CANCELLED, 0, mMetrics.mTotalTime);
+		finished();
 		super.onCancelled();
 	}
 	
 	/**
 	 * Check if the service call is running or not.
-	 * It would not be running if it has completed {@link AsyncServiceCallTask#onPostExecute(Bundle)} or was canceled.
+	 * It would not be running if it has completed {@link AsyncServiceCallTask#onPostExecute(ServiceResult)} or was canceled.
 	 * @return true if is running, false if not.
 	 */
 	public boolean isRunning()
@@ -0,0 +1,50 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.apache.http.HttpEntity;
+
+/**
+ * Encodes the calls of a batch into a single request to a batch endpoint and splits its response back into one part per call.
+ * Implement this to match the batch format of a server, {@link JsonBatchCodec} is used by default.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public interface BatchCodec
+{
+	/**
+	 * Encode the calls of a batch into the body of the batch request. This is called on a background thread for every attempt.
+	 * @param requests Calls of the batch, in order.
+	 * @return The body of the batch request.
+	 * @throws IOException if the calls could not be encoded.
+	 */
+	public HttpEntity encode(List<BatchRequest> requests) throws IOException;
+
+	/**
+	 * Split the response of a batch request into one part per call. This is called on a background thread.
+	 * @param is Body of the batch response.
+	 * @param count Number of calls in the batch.
+	 * @return The response of every call, in the same order as the requests.
+	 * @throws IOException if the response could not be read or is not a batch response.
+	 */
+	public List<BatchPart> decode(InputStream is, int count) throws IOException;
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+/**
+ * The response to one service call of a batch, as decoded by a {@link BatchCodec}.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public class BatchPart
+{
+	private final int mStatus;
+	private final byte[] mBody;
+
+	/**
+	 * @param status HTTP status code of the call.
+	 * @param body Body of the call's response, or null if it has none.
+	 */
+	public BatchPart(int status, byte[] body)
+	{
+		mStatus = status;
+		mBody = body;
+	}
+
+	/**
+	 * Get the HTTP status code of the call.
+	 * @return the status code
+	 */
+	public int getStatus()
+	{
+		return mStatus;
+	}
+
+	/**
+	 * Get the body of the call's response.
+	 * @return the body, or null if it has none.
+	 */
+	public byte[] getBody()
+	{
+		return mBody;
+	}
+}
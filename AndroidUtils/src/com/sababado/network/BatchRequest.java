@@ -0,0 +1,75 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+/**
+ * One service call of a batch, as handed to a {@link BatchCodec} to be encoded.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public class BatchRequest
+{
+	private final String mMethod;
+	private final String mUrl;
+	private final String mContentType;
+	private final byte[] mBody;
+
+	BatchRequest(String method, String url, String contentType, byte[] body)
+	{
+		mMethod = method;
+		mUrl = url;
+		mContentType = contentType;
+		mBody = body;
+	}
+
+	/**
+	 * Get the HTTP method of the call.
+	 * @return <code>GET</code>, <code>POST</code>, <code>PUT</code> or <code>DELETE</code>.
+	 */
+	public String getMethod()
+	{
+		return mMethod;
+	}
+
+	/**
+	 * Get the full url of the call, including the query string.
+	 * @return the url
+	 */
+	public String getUrl()
+	{
+		return mUrl;
+	}
+
+	/**
+	 * Get the content type of the body.
+	 * @return the content type, or null if there is no body or it has no content type.
+	 */
+	public String getContentType()
+	{
+		return mContentType;
+	}
+
+	/**
+	 * Get the body of the call.
+	 * @return the body, or null if the call has no body.
+	 */
+	public byte[] getBody()
+	{
+		return mBody;
+	}
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import android.os.SystemClock;
+
+/**
+ * <p>Stops calls to a host that keeps failing so they fail fast with {@link AsyncServiceCallTask#ERR_CODE_CIRCUIT_OPEN} instead of
+ * spending every attempt and a worker thread on a backend that is down. Breakers are created per host by a {@link CircuitBreakerRegistry}.</p>
+ * <p>A breaker is in one of three states:
+ * <ul>
+ * <li>{@link #STATE_CLOSED}: requests are made. The outcomes of the most recent requests are kept and the breaker opens when
+ * the share of failed or of slow requests reaches its threshold.</li>
+ * <li>{@link #STATE_OPEN}: requests are not made. After the open duration the breaker goes half open.</li>
+ * <li>{@link #STATE_HALF_OPEN}: a few trial requests are made. If all of them succeed in time the breaker closes,
+ * otherwise it opens again.</li>
+ * </ul>
+ * A request failed if it could not get a response or the response is a server error (5xx). A request is slow if getting the response
+ * took at least the slow call duration of the registry.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public class CircuitBreaker
+{
+	/**
+	 * Requests are made and their outcomes are counted.
+	 */
+	public static final int STATE_CLOSED = 0;
+	/**
+	 * Requests fail fast.
+	 */
+	public static final int STATE_OPEN = 1;
+	/**
+	 * A limited number of trial requests are made to see if the host has recovered.
+	 */
+	public static final int STATE_HALF_OPEN = 2;
+
+	//Outcome flags kept in the window.
+	private static final byte OUTCOME_FAILED = 1;
+	private static final byte OUTCOME_SLOW = 2;
+
+	private final String mHost;
+	private final CircuitBreakerRegistry mRegistry;
+	private int mState = STATE_CLOSED;
+	//Outcomes of the most recent requests while closed, a ring buffer.
+	private final byte[] mWindow;
+	private int mWindowNext;
+	private int mWindowCount;
+	private int mFailedCount;
+	private int mSlowCount;
+	//Time the breaker opened based on SystemClock.elapsedRealtime().
+	private long mOpenedAt;
+	//Trial requests that may still start while half open.
+	private int mTrialPermits;
+	//Trial requests that succeeded in time while half open.
+	private int mTrialSuccesses;
+
+	CircuitBreaker(String host, CircuitBreakerRegistry registry)
+	{
+		mHost = host;
+		mRegistry = registry;
+		mWindow = new byte[registry.getWindowSize()];
+	}
+
+	/**
+	 * Get the host of this breaker.
+	 */
+	public String getHost()
+	{
+		return mHost;
+	}
+
+	/**
+	 * Get the state of this breaker. An open breaker whose open duration is over reports {@link #STATE_OPEN} until a request is tried.
+	 * @return a CircuitBreaker.STATE_* constant.
+	 */
+	public synchronized int getState()
+	{
+		return mState;
+	}
+
+	/**
+	 * Get the share of failed requests among the most recent requests while closed.
+	 * @return the failure rate from 0 to 1.
+	 */
+	public synchronized float getFailureRate()
+	{
+		return mWindowCount == 0 ? 0 : (float)mFailedCount / mWindowCount;
+	}
+
+	/**
+	 * Get the share of slow requests among the most recent requests while closed.
+	 * @return the slow call rate from 0 to 1.
+	 */
+	public synchronized float getSlowCallRate()
+	{
+		return mWindowCount == 0 ? 0 : (float)mSlowCount / mWindowCount;
+	}
+
+	/**
+	 * Close the breaker and forget the outcomes of past requests.
+	 */
+	public void reset()
+	{
+		int oldState;
+		synchronized(this)
+		{
+			oldState = mState;
+			close();
+		}
+		notifyStateChanged(oldState, STATE_CLOSED);
+	}
+
+	/**
+	 * Ask to make a request.
+	 * @return true if the request may be made. If so it must be followed by {@link #onResult(boolean, long)} or {@link #release()}.
+	 */
+	boolean tryAcquire()
+	{
+		int oldState;
+		synchronized(this)
+		{
+			oldState = mState;
+			if(mState == STATE_CLOSED)
+				return true;
+			if(mState == STATE_OPEN)
+			{
+				if(SystemClock.elapsedRealtime() - mOpenedAt < mRegistry.getOpenDuration())
+					return false;
+				mState = STATE_HALF_OPEN;
+				mTrialPermits = mRegistry.getHalfOpenCalls();
+				mTrialSuccesses = 0;
+			}
+			if(mTrialPermits == 0)
+				return false;
+			mTrialPermits--;
+		}
+		if(oldState != STATE_HALF_OPEN)
+			notifyStateChanged(oldState, STATE_HALF_OPEN);
+		return true;
+	}
+
+	/**
+	 * Give back a request that was allowed but has no outcome, for example because its call was cancelled.
+	 */
+	synchronized void release()
+	{
+		if(mState == STATE_HALF_OPEN && mTrialPermits < mRegistry.getHalfOpenCalls() - mTrialSuccesses)
+			mTrialPermits++;
+	}
+
+	/**
+	 * Record the outcome of a request.
+	 * @param failed true if there was no response or the response is a server error.
+	 * @param duration Time in milliseconds it took to get the response.
+	 */
+	void onResult(boolean failed, long duration)
+	{
+		boolean slow = duration >= mRegistry.getSlowCallDuration();
+		int oldState;
+		int newState;
+		synchronized(this)
+		{
+			oldState = mState;
+			if(mState == STATE_CLOSED)
+			{
+				record((byte)((failed ? OUTCOME_FAILED : 0) | (slow ? OUTCOME_SLOW : 0)));
+				if(mWindowCount >= mRegistry.getMinimumCalls()
+						&& (mFailedCount >= mRegistry.getFailureRateThreshold() * mWindowCount
+						|| mSlowCount >= mRegistry.getSlowCallRateThreshold() * mWindowCount))
+					open();
+			}
+			else if(mState == STATE_HALF_OPEN)
+			{
+				if(failed || slow)
+					open();
+				else if(++mTrialSuccesses >= mRegistry.getHalfOpenCalls())
+					close();
+			}
+			//outcomes of requests that started before the breaker opened do not change an open breaker.
+			newState = mState;
+		}
+		if(oldState != newState)
+			notifyStateChanged(oldState, newState);
+	}
+
+	private void record(byte outcome)
+	{
+		if(mWindowCount == mWindow.length)
+		{
+			//drop the oldest outcome.
+			byte oldest = mWindow[mWindowNext];
+			if((oldest & OUTCOME_FAILED) != 0)
+				mFailedCount--;
+			if((oldest & OUTCOME_SLOW) != 0)
+				mSlowCount--;
+		}
+		else
+			mWindowCount++;
+		mWindow[mWindowNext] = outcome;
+		mWindowNext = (mWindowNext + 1) % mWindow.length;
+		if((outcome & OUTCOME_FAILED) != 0)
+			mFailedCount++;
+		if((outcome & OUTCOME_SLOW) != 0)
+			mSlowCount++;
+	}
+
+	private void open()
+	{
+		mState = STATE_OPEN;
+		mOpenedAt = SystemClock.elapsedRealtime();
+	}
+
+	private void close()
+	{
+		mState = STATE_CLOSED;
+		mWindowNext = 0;
+		mWindowCount = 0;
+		mFailedCount = 0;
+		mSlowCount = 0;
+	}
+
+	private void notifyStateChanged(int oldState, int newState)
+	{
+		if(oldState != newState)
+			mRegistry.notifyStateChanged(this, oldState, newState);
+	}
+
+	@Override
+	public String toString()
+	{
+		return mHost+": "+getState();
+	}
+}
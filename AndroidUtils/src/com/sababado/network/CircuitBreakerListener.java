@@ -0,0 +1,34 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+/**
+ * Receives the state changes of the {@link CircuitBreaker}s of a {@link CircuitBreakerRegistry}.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public interface CircuitBreakerListener
+{
+	/**
+	 * Called when a breaker changes state. Called on the worker thread of the call that caused the change.
+	 * @param breaker The breaker.
+	 * @param oldState Previous CircuitBreaker.STATE_* constant.
+	 * @param newState New CircuitBreaker.STATE_* constant.
+	 */
+	public void onStateChanged(CircuitBreaker breaker, int oldState, int newState);
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <p>Holds a {@link CircuitBreaker} per host, all with the same thresholds. Service calls use the default registry
+ * from {@link #getDefault()}, which can be replaced with one that has other thresholds or turned off with {@link #setEnabled(boolean)}.</p>
+ * <p>State changes of every breaker are handed to the registered {@link CircuitBreakerListener}s.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public class CircuitBreakerRegistry
+{
+	/**
+	 * Default number of most recent requests the failure and slow call rates are computed from.
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 20;
+	/**
+	 * Default number of requests that must be in the window before a breaker can open.
+	 */
+	public static final int DEFAULT_MINIMUM_CALLS = 10;
+	/**
+	 * Default share of failed requests that opens a breaker.
+	 */
+	public static final float DEFAULT_FAILURE_RATE_THRESHOLD = 0.5f;
+	/**
+	 * Default share of slow requests that opens a breaker.
+	 */
+	public static final float DEFAULT_SLOW_CALL_RATE_THRESHOLD = 0.8f;
+	/**
+	 * Default time in milliseconds after which a request is slow.
+	 */
+	public static final long DEFAULT_SLOW_CALL_DURATION = 10000;
+	/**
+	 * Default time in milliseconds a breaker stays open before it tries requests again.
+	 */
+	public static final long DEFAULT_OPEN_DURATION = 30000;
+	/**
+	 * Default number of trial requests made while half open.
+	 */
+	public static final int DEFAULT_HALF_OPEN_CALLS = 3;
+
+	private static CircuitBreakerRegistry sDefault;
+
+	private final int mWindowSize;
+	private final int mMinimumCalls;
+	private final float mFailureRateThreshold;
+	private final float mSlowCallRateThreshold;
+	private final long mSlowCallDuration;
+	private final long mOpenDuration;
+	private final int mHalfOpenCalls;
+	private volatile boolean mEnabled = true;
+	private final HashMap<String, CircuitBreaker> mBreakers = new HashMap<String, CircuitBreaker>();
+	private final List<CircuitBreakerListener> mListeners = new CopyOnWriteArrayList<CircuitBreakerListener>();
+
+	/**
+	 * Create a registry with the default thresholds.
+	 */
+	public CircuitBreakerRegistry()
+	{
+		this(DEFAULT_WINDOW_SIZE, DEFAULT_MINIMUM_CALLS, DEFAULT_FAILURE_RATE_THRESHOLD, DEFAULT_SLOW_CALL_RATE_THRESHOLD,
+				DEFAULT_SLOW_CALL_DURATION, DEFAULT_OPEN_DURATION, DEFAULT_HALF_OPEN_CALLS);
+	}
+
+	/**
+	 * Create a registry.
+	 * @param windowSize Number of most recent requests the failure and slow call rates are computed from.
+	 * @param minimumCalls Number of requests that must be in the window before a breaker can open.
+	 * @param failureRateThreshold Share of failed requests, from 0 to 1, that opens a breaker.
+	 * @param slowCallRateThreshold Share of slow requests, from 0 to 1, that opens a breaker. Use a value above 1 to ignore slow requests.
+	 * @param slowCallDuration Time in milliseconds after which a request is slow.
+	 * @param openDuration Time in milliseconds a breaker stays open before it tries requests again.
+	 * @param halfOpenCalls Number of trial requests made while half open, all of them must succeed to close the breaker.
+	 */
+	public CircuitBreakerRegistry(int windowSize, int minimumCalls, float failureRateThreshold, float slowCallRateThreshold,
+			long slowCallDuration, long openDuration, int halfOpenCalls)
+	{
+		if(windowSize < 1 || minimumCalls < 1 || halfOpenCalls < 1)
+			throw new IllegalArgumentException("The window size, minimum calls and half open calls must be at least 1.");
+		if(minimumCalls > windowSize)
+			throw new IllegalArgumentException("The minimum calls can not be more than the window size.");
+		if(failureRateThreshold <= 0 || slowCallRateThreshold <= 0 || slowCallDuration <= 0 || openDuration < 0)
+			throw new IllegalArgumentException("The thresholds must be positive.");
+		mWindowSize = windowSize;
+		mMinimumCalls = minimumCalls;
+		mFailureRateThreshold = failureRateThreshold;
+		mSlowCallRateThreshold = slowCallRateThreshold;
+		mSlowCallDuration = slowCallDuration;
+		mOpenDuration = openDuration;
+		mHalfOpenCalls = halfOpenCalls;
+	}
+
+	/**
+	 * Get the registry service calls use.
+	 * @return the default registry.
+	 */
+	public static synchronized CircuitBreakerRegistry getDefault()
+	{
+		if(sDefault == null)
+			sDefault = new CircuitBreakerRegistry();
+		return sDefault;
+	}
+
+	/**
+	 * Replace the registry service calls use.
+	 * @param registry Registry to use, or null to go back to a new default registry.
+	 */
+	public static synchronized void setDefault(CircuitBreakerRegistry registry)
+	{
+		sDefault = registry;
+	}
+
+	/**
+	 * Turn the breakers of this registry on or off. They are on by default. While off every request is made and nothing is counted.
+	 * @param enabled true to use the breakers.
+	 */
+	public void setEnabled(boolean enabled)
+	{
+		mEnabled = enabled;
+	}
+
+	/**
+	 * Check if the breakers of this registry are used.
+	 */
+	public boolean isEnabled()
+	{
+		return mEnabled;
+	}
+
+	/**
+	 * Get the breaker of a host, it is created the first time it is asked for.
+	 * @param host Host name.
+	 * @return the breaker.
+	 */
+	public synchronized CircuitBreaker get(String host)
+	{
+		CircuitBreaker breaker = mBreakers.get(host);
+		if(breaker == null)
+		{
+			breaker = new CircuitBreaker(host, this);
+			mBreakers.put(host, breaker);
+		}
+		return breaker;
+	}
+
+	/**
+	 * Get the breakers of every host requests were made to.
+	 */
+	public synchronized List<CircuitBreaker> getBreakers()
+	{
+		return new ArrayList<CircuitBreaker>(mBreakers.values());
+	}
+
+	/**
+	 * Close every breaker and forget the outcomes of past requests.
+	 */
+	public void resetAll()
+	{
+		for(CircuitBreaker breaker : getBreakers())
+			breaker.reset();
+	}
+
+	/**
+	 * Add a listener that is told when any breaker changes state.
+	 * @param listener Listener to add.
+	 */
+	public void addListener(CircuitBreakerListener listener)
+	{
+		mListeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener.
+	 * @param listener Listener to remove.
+	 */
+	public void removeListener(CircuitBreakerListener listener)
+	{
+		mListeners.remove(listener);
+	}
+
+	void notifyStateChanged(CircuitBreaker breaker, int oldState, int newState)
+	{
+		for(CircuitBreakerListener listener : mListeners)
+			listener.onStateChanged(breaker, oldState, newState);
+	}
+
+	int getWindowSize()
+	{
+		return mWindowSize;
+	}
+
+	int getMinimumCalls()
+	{
+		return mMinimumCalls;
+	}
+
+	float getFailureRateThreshold()
+	{
+		return mFailureRateThreshold;
+	}
+
+	float getSlowCallRateThreshold()
+	{
+		return mSlowCallRateThreshold;
+	}
+
+	long getSlowCallDuration()
+	{
+		return mSlowCallDuration;
+	}
+
+	long getOpenDuration()
+	{
+		return mOpenDuration;
+	}
+
+	int getHalfOpenCalls()
+	{
+		return mHalfOpenCalls;
+	}
+}
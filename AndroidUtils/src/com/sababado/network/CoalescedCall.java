@@ -0,0 +1,219 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * A single in-flight service call shared by every {@link AsyncServiceListener} that asked for the same request.
+ * The call is made and parsed once and the result is handed to each subscriber.
+ * <br/>Parsed item batches are forwarded to subscribers that are {@link StreamingServiceListener}s; subscribers that join late miss
+ * the batches delivered before they joined but still get the complete result.
+ * <br/>Only used from the main thread.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.2
+ * @updates
+ * 1.2 finishes when the shared task is cancelled, and remembers the priority of the shared call so a subscriber with a higher priority can raise it.<br/>
+ * 1.1 hands the {@link ServiceResult} to each subscriber so typed subscribers get it without a Bundle.<br/>
+ */
+class CoalescedCall implements StreamingServiceListener, ServiceResultListener
+{
+	//Request key of the shared call.
+	private final String mKey;
+	//In-flight calls of the executor, this call removes itself when it completes.
+	private final Map<String, CoalescedCall> mInFlight;
+	//Handles of the subscribers still waiting for a result.
+	private final ArrayList<ServiceCall> mSubscribers = new ArrayList<ServiceCall>();
+	//Handle of the call that actually runs.
+	private ServiceCall mCall;
+	//Priority the shared call runs with, the highest of its subscribers.
+	private int mPriority = ServiceExecutor.PRIORITY_USER_VISIBLE;
+	//true once a result was delivered or the call was cancelled.
+	private boolean mDone;
+	//true if any subscriber wants parsed items while parsing, read from the parsing thread.
+	private volatile boolean mHasStreamingSubscribers;
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+	//Runs when the shared task completed or was cancelled.
+	private final Runnable mTaskFinished = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			if(mDone)
+				return;
+			//the task was cancelled without delivering a result, new requests must not join it.
+			if(mInFlight.get(mKey) == CoalescedCall.this)
+				mInFlight.remove(mKey);
+			//a failure for the cancellation, such as a rejection by the executor, is posted after this runs.
+			mMainHandler.post(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					if(!mDone)
+						onServiceResult(AsyncServiceCallTask.errorResult("Service call cancelled.", AsyncServiceCallTask.ERR_CODE_MAX_ATTEMPTS_REACHED));
+				}
+			});
+		}
+	};
+
+	CoalescedCall(String key, Map<String, CoalescedCall> inFlight)
+	{
+		mKey = key;
+		mInFlight = inFlight;
+	}
+
+	/**
+	 * Set the handle of the call that runs on behalf of all subscribers.
+	 */
+	void setCall(ServiceCall call)
+	{
+		mCall = call;
+		call.getTask().addOnFinished(mTaskFinished);
+	}
+
+	/**
+	 * Get the handle of the call that runs on behalf of all subscribers.
+	 */
+	ServiceCall getCall()
+	{
+		return mCall;
+	}
+
+	/**
+	 * Get the priority the shared call runs with.
+	 */
+	int getPriority()
+	{
+		return mPriority;
+	}
+
+	/**
+	 * Set the priority the shared call runs with.
+	 */
+	void setPriority(int priority)
+	{
+		mPriority = priority;
+	}
+
+	/**
+	 * Add a listener to this call.
+	 * @param listener Listener to receive the shared result.
+	 * @return A handle for the subscriber, cancelling it only unsubscribes the listener.
+	 */
+	ServiceCall subscribe(AsyncServiceListener listener)
+	{
+		ServiceCall subscriber = new ServiceCall(this, listener);
+		mSubscribers.add(subscriber);
+		if(listener instanceof StreamingServiceListener)
+			mHasStreamingSubscribers = true;
+		return subscriber;
+	}
+
+	/**
+	 * Remove a subscriber. The shared call is cancelled when the last subscriber leaves.
+	 * @param subscriber Subscriber to remove.
+	 * @return true if the subscriber was removed, false if the result was already delivered.
+	 */
+	boolean unsubscribe(ServiceCall subscriber)
+	{
+		if(mDone || !mSubscribers.remove(subscriber))
+			return false;
+		if(mSubscribers.isEmpty())
+		{
+			finish();
+			if(mCall != null)
+				mCall.cancel();
+		}
+		return true;
+	}
+
+	/**
+	 * Check if a result was delivered or every subscriber cancelled.
+	 */
+	boolean isDone()
+	{
+		return mDone;
+	}
+
+	/**
+	 * Check if any subscriber wants parsed items while parsing.
+	 */
+	boolean hasStreamingSubscribers()
+	{
+		return mHasStreamingSubscribers;
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	public void onServiceCallItems(ArrayList items)
+	{
+		for(ServiceCall subscriber : new ArrayList<ServiceCall>(mSubscribers))
+		{
+			if(subscriber.getListener() instanceof StreamingServiceListener)
+				((StreamingServiceListener)subscriber.getListener()).onServiceCallItems(items);
+		}
+	}
+
+	@Override
+	public void onServiceCallProgressUpdate(String[] progress)
+	{
+		for(ServiceCall subscriber : new ArrayList<ServiceCall>(mSubscribers))
+			subscriber.getListener().onServiceCallProgressUpdate(progress);
+	}
+
+	@Override
+	public void onServiceResult(ServiceResult result)
+	{
+		for(ServiceCall subscriber : finish())
+			AsyncServiceCallTask.deliver(subscriber.getListener(), result);
+	}
+
+	@Override
+	public void onServiceCallSuccess(Bundle success)
+	{
+		for(ServiceCall subscriber : finish())
+			subscriber.getListener().onServiceCallSuccess(success);
+	}
+
+	@Override
+	public void onServiceCallFailure(String errMsg, int errCode)
+	{
+		for(ServiceCall subscriber : finish())
+			subscriber.getListener().onServiceCallFailure(errMsg, errCode);
+	}
+
+	/**
+	 * Mark this call as done so new requests start a new call.
+	 * @return The subscribers that were waiting.
+	 */
+	private ArrayList<ServiceCall> finish()
+	{
+		mDone = true;
+		if(mInFlight.get(mKey) == this)
+			mInFlight.remove(mKey);
+		ArrayList<ServiceCall> subscribers = new ArrayList<ServiceCall>(mSubscribers);
+		mSubscribers.clear();
+		return subscribers;
+	}
+}
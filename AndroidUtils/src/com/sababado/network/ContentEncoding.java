@@ -0,0 +1,116 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpRequest;
+
+/**
+ * Negotiates compressed responses and decompresses them as they are read, so a body is never buffered in full.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.1
+ * @updates
+ * 1.1 closing an inflated body ends its {@link Inflater} so its native memory is freed right away.<br/>
+ */
+final class ContentEncoding
+{
+	//Size of the buffers used to decompress.
+	private static final int BUFFER_SIZE = 8192;
+
+	private ContentEncoding()
+	{
+	}
+
+	/**
+	 * Ask the server for a gzip or deflate compressed response.
+	 * @param request Request to add the header to.
+	 */
+	static void acceptCompressed(HttpRequest request)
+	{
+		request.setHeader("Accept-Encoding", "gzip, deflate");
+	}
+
+	/**
+	 * Wrap a response body so it is decompressed according to the entity's <code>Content-Encoding</code>.
+	 * @param entity Entity of the response.
+	 * @param body Raw body of the entity.
+	 * @return A stream of the decompressed body, or <code>body</code> if it is not compressed.
+	 * @throws IOException if the compressed stream can not be read.
+	 */
+	static InputStream decode(HttpEntity entity, InputStream body) throws IOException
+	{
+		Header contentEncoding = entity.getContentEncoding();
+		if(contentEncoding == null)
+			return body;
+		for(HeaderElement element : contentEncoding.getElements())
+		{
+			String coding = element.getName();
+			if("gzip".equalsIgnoreCase(coding) || "x-gzip".equalsIgnoreCase(coding))
+				return new GZIPInputStream(body, BUFFER_SIZE);
+			if("deflate".equalsIgnoreCase(coding))
+				return inflate(body);
+		}
+		return body;
+	}
+
+	/**
+	 * Inflate a deflate coded body. Some servers send raw deflate data instead of the zlib format the spec asks for, so the
+	 * first byte is checked for a zlib header.
+	 */
+	private static InputStream inflate(InputStream body) throws IOException
+	{
+		BufferedInputStream buffered = new BufferedInputStream(body, BUFFER_SIZE);
+		buffered.mark(2);
+		int cmf = buffered.read();
+		int flg = buffered.read();
+		buffered.reset();
+		//a zlib header uses the deflate method (8) and the two bytes are a multiple of 31.
+		boolean zlib = cmf != -1 && flg != -1 && (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+		final Inflater inflater = new Inflater(!zlib);
+		//an InflaterInputStream only ends the inflaters it creates itself.
+		return new InflaterInputStream(buffered, inflater, BUFFER_SIZE)
+		{
+			private boolean mClosed;
+
+			@Override
+			public void close() throws IOException
+			{
+				if(mClosed)
+					return;
+				mClosed = true;
+				try
+				{
+					super.close();
+				}
+				finally
+				{
+					inflater.end();
+				}
+			}
+		};
+	}
+}
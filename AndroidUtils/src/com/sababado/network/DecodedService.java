@@ -0,0 +1,71 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * A {@link Service} whose response is parsed by a {@link ResponseDecoder} instead of a hand written {@link #parseResults(InputStream)}.
+ * Items are handed to a {@link StreamingServiceListener} as they are decoded.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public class DecodedService extends Service
+{
+	private final ResponseDecoder mDecoder;
+
+	/**
+	 * Initialize the service call with data
+	 * @param url Example: <code>http://www.exampleurl.com/path/to/servicecall</code>
+	 * @param callType Use public int types from the {@link Service} class like {@link Service#CALL_TYPE_GET}
+	 * @param paramNames an array containing parameter names
+	 * @param paramValues an array containing corresponding parameter values
+	 * @param decoder Decoder of the response, it can be shared by any number of services.
+	 */
+	public DecodedService(String url, int callType, String[] paramNames, String[] paramValues, ResponseDecoder decoder)
+	{
+		super(url, callType, paramNames, paramValues);
+		mDecoder = decoder;
+	}
+
+	/**
+	 * Get the decoder of the response.
+	 */
+	public ResponseDecoder getDecoder()
+	{
+		return mDecoder;
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	public ArrayList parseResults(InputStream is) throws XmlPullParserException, IOException
+	{
+		return mDecoder.decode(this, is, null);
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	public ArrayList parseResults(InputStream is, ServiceItemEmitter emitter) throws XmlPullParserException, IOException
+	{
+		return mDecoder.decode(this, is, emitter);
+	}
+}
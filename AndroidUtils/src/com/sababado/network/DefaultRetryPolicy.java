@@ -0,0 +1,213 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Date;
+import java.util.Random;
+
+import javax.net.ssl.SSLException;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.http.impl.cookie.DateUtils;
+
+/**
+ * <p>The {@link RetryPolicy} used by default. It retries:</p>
+ * <ul>
+ * <li>connect and read timeouts, refused or reset connections and servers that closed the connection without responding</li>
+ * <li><code>502 Bad Gateway</code>, <code>503 Service Unavailable</code> and <code>504 Gateway Timeout</code> responses</li>
+ * </ul>
+ * <p>Other failures, like unknown hosts, SSL errors or other status codes, are not retried.</p>
+ * <p>Calls that are not {@link Service#isIdempotent() idempotent}, by default every POST, PUT and DELETE, are only retried when the request
+ * never reached the server: a connect timeout, a refused connection or a <code>503</code> with a <code>Retry-After</code> header.
+ * A read timeout or a gateway error may come after the server made the change, retrying would make it twice.
+ * The task applies this rule before asking its retry policy, so it holds for every policy.</p>
+ * <p>Retries wait with exponential backoff and full jitter: a random time between 0 and <code>baseDelay * 2^(attempts-1)</code>,
+ * capped at <code>maxDelay</code>. A <code>Retry-After</code> header is honored if it asks for a longer wait, unless it asks for more than
+ * <code>maxRetryAfter</code> in which case the call is not retried. Every retry must also be allowed by a {@link RetryBudget}.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.1
+ * @updates
+ * 1.1 added the rule for calls that are not idempotent.<br/>
+ */
+public class DefaultRetryPolicy implements RetryPolicy
+{
+	/**
+	 * Default base delay in milliseconds.
+	 */
+	public static final long DEFAULT_BASE_DELAY = 250;
+	/**
+	 * Default maximum delay in milliseconds.
+	 */
+	public static final long DEFAULT_MAX_DELAY = 10000;
+	/**
+	 * Default longest <code>Retry-After</code> in milliseconds that will be waited for.
+	 */
+	public static final long DEFAULT_MAX_RETRY_AFTER = 30000;
+	
+	private final long mBaseDelay;
+	private final long mMaxDelay;
+	private final long mMaxRetryAfter;
+	private final RetryBudget mBudget;
+	private final Random mRandom = new Random();
+	
+	/**
+	 * Create a policy with the default delays and a default {@link RetryBudget}.
+	 */
+	public DefaultRetryPolicy()
+	{
+		this(DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY, DEFAULT_MAX_RETRY_AFTER, new RetryBudget());
+	}
+	
+	/**
+	 * Create a policy.
+	 * @param baseDelay Base delay in milliseconds of the exponential backoff.
+	 * @param maxDelay Maximum delay in milliseconds of the exponential backoff.
+	 * @param maxRetryAfter Longest <code>Retry-After</code> in milliseconds that will be waited for.
+	 * @param budget Budget shared by all calls using this policy, or null to not limit retries.
+	 */
+	public DefaultRetryPolicy(long baseDelay, long maxDelay, long maxRetryAfter, RetryBudget budget)
+	{
+		mBaseDelay = baseDelay;
+		mMaxDelay = maxDelay;
+		mMaxRetryAfter = maxRetryAfter;
+		mBudget = budget;
+	}
+	
+	@Override
+	public void onCallStarted()
+	{
+		if(mBudget != null)
+			mBudget.deposit();
+	}
+	
+	@Override
+	public long getRetryDelay(int attempts, IOException error, HttpResponse response)
+	{
+		long retryAfter = 0;
+		if(error != null)
+		{
+			if(!isRetriable(error))
+				return -1;
+		}
+		else
+		{
+			if(!isRetriable(response.getStatusLine().getStatusCode()))
+				return -1;
+			retryAfter = getRetryAfter(response);
+			if(retryAfter > mMaxRetryAfter)
+				return -1;
+		}
+		if(mBudget != null && !mBudget.tryWithdraw())
+			return -1;
+		return Math.max(retryAfter, backoff(attempts));
+	}
+	
+	/**
+	 * Check if an exception is worth retrying.
+	 * @param error Exception of the failed attempt.
+	 * @return true if the attempt can be retried.
+	 */
+	protected boolean isRetriable(IOException error)
+	{
+		if(error instanceof SSLException)
+			return false;
+		return error instanceof ConnectTimeoutException
+				|| error instanceof SocketTimeoutException
+				|| error instanceof NoHttpResponseException
+				|| error instanceof ConnectException
+				|| error instanceof SocketException;
+	}
+	
+	/**
+	 * Check if a response status is worth retrying.
+	 * @param statusCode Status code of the response.
+	 * @return true if the attempt can be retried.
+	 */
+	protected boolean isRetriable(int statusCode)
+	{
+		return statusCode == HttpStatus.SC_BAD_GATEWAY
+				|| statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE
+				|| statusCode == HttpStatus.SC_GATEWAY_TIMEOUT;
+	}
+	
+	/**
+	 * Check if a failed attempt never reached the server, so that even a call that is not idempotent can be retried.
+	 * @param error The exception of the attempt, or null if a response was received.
+	 * @param response The response of the attempt, or null if there was an exception.
+	 * @return true if the server did not process the request.
+	 */
+	static boolean neverReachedServer(IOException error, HttpResponse response)
+	{
+		if(error != null)
+			return error instanceof ConnectTimeoutException || error instanceof ConnectException;
+		return response != null && response.getStatusLine().getStatusCode() == HttpStatus.SC_SERVICE_UNAVAILABLE
+				&& response.getFirstHeader("Retry-After") != null;
+	}
+	
+	/**
+	 * Get a random backoff between 0 and the exponential delay for a number of attempts.
+	 */
+	private long backoff(int attempts)
+	{
+		long ceiling = mBaseDelay << Math.min(attempts - 1, 30);
+		if(ceiling <= 0 || ceiling > mMaxDelay)
+			ceiling = mMaxDelay;
+		synchronized(mRandom)
+		{
+			return (long)(mRandom.nextDouble() * ceiling);
+		}
+	}
+	
+	/**
+	 * Read the <code>Retry-After</code> header of a response, either a number of seconds or an HTTP date.
+	 * @param response Response to read.
+	 * @return The time in milliseconds to wait, 0 if there is no valid header.
+	 */
+	static long getRetryAfter(HttpResponse response)
+	{
+		Header header = response.getFirstHeader("Retry-After");
+		if(header == null)
+			return 0;
+		String value = header.getValue().trim();
+		try
+		{
+			return Math.max(0, Long.parseLong(value) * 1000);
+		}
+		catch(NumberFormatException e)
+		{
+			try
+			{
+				Date date = DateUtils.parseDate(value);
+				return Math.max(0, date.getTime() - System.currentTimeMillis());
+			}
+			catch(DateParseException e1)
+			{
+				return 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+/**
+ * Implement this interface and set it on a {@link DownloadService} to follow the progress of a download.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public interface DownloadProgressListener
+{
+	/**
+	 * Called on the main thread as the download is written to its file. Updates are throttled, the last update of a complete download
+	 * always has <code>bytesDownloaded == totalBytes</code>.
+	 * @param service The download.
+	 * @param bytesDownloaded Number of bytes in the file so far, including bytes of an earlier attempt that was resumed.
+	 * @param totalBytes Size of the complete file, or -1 if the server did not say.
+	 */
+	public void onDownloadProgress(DownloadService service, long bytesDownloaded, long totalBytes);
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * <p>A {@link Service} that downloads its response into a file instead of parsing it. The body is copied from the connection to the file through
+ * NIO channels with a direct buffer that is reused by each worker thread, so the payload is never held in memory.
+ * The success bundle's result list holds the downloaded {@link File}.</p>
+ * <p>The download is written to <code>&lt;destination&gt;.part</code> and renamed to the destination when it is complete.
+ * If a download is interrupted the partial file is kept, and the next call for the same destination asks the server for the rest
+ * with a <code>Range</code> request. An <code>If-Range</code> validator (the <code>ETag</code> or <code>Last-Modified</code> of the first response)
+ * makes the server send the whole file again if it changed in between.</p>
+ * <p>Responses are requested without compression so that byte ranges line up with the file. Large downloads can be held until the device is on Wi-Fi
+ * with {@link #setNetworkPolicy(int)}.</p>
+ * <p>A download has {@link Service#NO_DEADLINE no deadline} by default since it can take as long as the file is big, stalled connections are still
+ * caught by the read timeout. Set a deadline with {@link #setDeadline(long)} to limit the total time.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.1
+ * @updates
+ * 1.1 has no deadline by default and the destination is part of the request key.<br/>
+ */
+public class DownloadService extends Service
+{
+	/**
+	 * Size of the buffer used to copy the body to the file.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/**
+	 * Minimum time in milliseconds between progress updates.
+	 */
+	private static final long PROGRESS_INTERVAL = 100;
+
+	//One direct buffer per worker thread, reused by every download made on that thread.
+	private static final ThreadLocal<ByteBuffer> sBuffer = new ThreadLocal<ByteBuffer>()
+	{
+		@Override
+		protected ByteBuffer initialValue()
+		{
+			return ByteBuffer.allocateDirect(BUFFER_SIZE);
+		}
+	};
+
+	private final File mDestination;
+	private final File mPartFile;
+	//Holds the validator of the partial file.
+	private final File mValidatorFile;
+	private DownloadProgressListener mProgressListener;
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * Initialize the download.
+	 * @param url Example: <code>http://www.exampleurl.com/path/to/file</code>
+	 * @param paramNames an array containing parameter names
+	 * @param paramValues an array containing corresponding parameter values
+	 * @param destination File to download to. It is replaced when the download completes.
+	 */
+	public DownloadService(String url, String[] paramNames, String[] paramValues, File destination)
+	{
+		super(url, CALL_TYPE_GET, paramNames, paramValues);
+		mDestination = destination;
+		mPartFile = new File(destination.getPath() + ".part");
+		mValidatorFile = new File(destination.getPath() + ".part.validator");
+		setAcceptCompressedResponse(false);
+		setResponseCacheable(false);
+		setDeadline(NO_DEADLINE);
+	}
+
+	/**
+	 * Get the file the download is written to.
+	 * @return the destination
+	 */
+	public File getDestination()
+	{
+		return mDestination;
+	}
+
+	/**
+	 * Get a key that identifies the request and the file it is downloaded to. Downloads of the same url to different files are
+	 * separate calls, only downloads to the same file are coalesced.
+	 * @return the request key
+	 */
+	@Override
+	public String getRequestKey()
+	{
+		return super.getRequestKey() + "\n>" + mDestination.getAbsolutePath();
+	}
+
+	/**
+	 * Set a listener for the progress of the download.
+	 * @param progressListener Listener, or null.
+	 */
+	public void setProgressListener(DownloadProgressListener progressListener)
+	{
+		mProgressListener = progressListener;
+	}
+
+	/**
+	 * Delete the partial file of an interrupted download so the next call starts from the beginning.
+	 */
+	public void discardPartial()
+	{
+		mPartFile.delete();
+		mValidatorFile.delete();
+	}
+
+	/**
+	 * Ask for the part of the file that is missing, if an earlier attempt left a partial file that can be resumed.
+	 * @param request Request of the download.
+	 */
+	void addRangeHeaders(HttpRequest request)
+	{
+		request.setHeader("Accept-Encoding", "identity");
+		long length = mPartFile.length();
+		String validator = readValidator();
+		if(length > 0 && validator != null)
+		{
+			request.setHeader("Range", "bytes=" + length + "-");
+			request.setHeader("If-Range", validator);
+		}
+	}
+
+	/**
+	 * Write a <code>200 OK</code> or <code>206 Partial Content</code> response to the file.
+	 * @param response The response.
+	 * @return the downloaded file.
+	 * @throws IOException if the download could not be written or was interrupted. A partial download is kept to be resumed.
+	 */
+	File download(HttpResponse response) throws IOException
+	{
+		HttpEntity entity = response.getEntity();
+		boolean partial = response.getStatusLine().getStatusCode() == HttpStatus.SC_PARTIAL_CONTENT;
+		long offset = 0;
+		long total = entity.getContentLength();
+		if(partial)
+		{
+			long[] range = parseContentRange(response.getFirstHeader("Content-Range"));
+			if(range == null || range[0] != mPartFile.length())
+			{
+				//the range does not continue the partial file.
+				discardPartial();
+				throw new IOException("Unexpected Content-Range, the download will start over.");
+			}
+			offset = range[0];
+			total = range[1];
+		}
+		else
+		{
+			//a full response replaces whatever was downloaded before.
+			discardPartial();
+		}
+		InputStream body = ContentEncoding.decode(entity, entity.getContent());
+		Header encoding = entity.getContentEncoding();
+		boolean resumable = encoding == null || "identity".equalsIgnoreCase(encoding.getValue());
+		if(!partial)
+			writeValidator(resumable ? getValidator(response) : null);
+		return write(body, offset, resumable ? total : -1);
+	}
+
+	/**
+	 * Download a body that did not come with a response, it can not be resumed.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Override
+	public ArrayList parseResults(InputStream is) throws IOException
+	{
+		discardPartial();
+		ArrayList result = new ArrayList(1);
+		result.add(write(is, 0, -1));
+		return result;
+	}
+
+	/**
+	 * Copy a body to the end of the partial file and move it to the destination when it is complete.
+	 * @param body Body to copy, it is closed.
+	 * @param offset Number of bytes already in the partial file.
+	 * @param total Size of the complete file, or -1 if it is not known.
+	 * @return the destination.
+	 */
+	private File write(InputStream body, long offset, long total) throws IOException
+	{
+		ReadableByteChannel in = Channels.newChannel(body);
+		FileOutputStream out = new FileOutputStream(mPartFile, offset > 0);
+		FileChannel fileChannel = out.getChannel();
+		ByteBuffer buffer = sBuffer.get();
+		long written = offset;
+		long lastUpdate = 0;
+		try
+		{
+			buffer.clear();
+			while(in.read(buffer) != -1)
+			{
+				if(isCancelled())
+					throw new InterruptedIOException("The download was cancelled.");
+				buffer.flip();
+				while(buffer.hasRemaining())
+					written += fileChannel.write(buffer);
+				buffer.clear();
+				long now = SystemClock.elapsedRealtime();
+				if(now - lastUpdate >= PROGRESS_INTERVAL)
+				{
+					lastUpdate = now;
+					postProgress(written, total);
+				}
+			}
+			fileChannel.force(false);
+		}
+		finally
+		{
+			buffer.clear();
+			fileChannel.close();
+			out.close();
+			in.close();
+		}
+		if(total >= 0 && written != total)
+			throw new IOException("Downloaded "+written+" of "+total+" bytes.");
+		if(mDestination.exists() && !mDestination.delete())
+			throw new IOException("Could not replace "+mDestination);
+		if(!mPartFile.renameTo(mDestination))
+			throw new IOException("Could not move the download to "+mDestination);
+		mValidatorFile.delete();
+		postProgress(written, written);
+		return mDestination;
+	}
+
+	private void postProgress(final long bytesDownloaded, final long totalBytes)
+	{
+		final DownloadProgressListener listener = mProgressListener;
+		if(listener == null)
+			return;
+		mMainHandler.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				listener.onDownloadProgress(DownloadService.this, bytesDownloaded, totalBytes);
+			}
+		});
+	}
+
+	/**
+	 * Get the validator that identifies the version of the file in a response.
+	 * @return the strong ETag, or the Last-Modified date, or null if there is neither.
+	 */
+	private static String getValidator(HttpResponse response)
+	{
+		Header etag = response.getFirstHeader("ETag");
+		//weak validators can not be used with If-Range.
+		if(etag != null && !etag.getValue().startsWith("W/"))
+			return etag.getValue();
+		Header lastModified = response.getFirstHeader("Last-Modified");
+		return lastModified == null ? null : lastModified.getValue();
+	}
+
+	/**
+	 * Parse a <code>Content-Range: bytes start-end/total</code> header.
+	 * @return the start and the total (-1 if unknown), or null if the header is missing or invalid.
+	 */
+	private static long[] parseContentRange(Header header)
+	{
+		if(header == null)
+			return null;
+		String value = header.getValue().trim();
+		if(!value.startsWith("bytes "))
+			return null;
+		try
+		{
+			int dash = value.indexOf('-');
+			int slash = value.indexOf('/');
+			if(dash < 0 || slash < dash)
+				return null;
+			long start = Long.parseLong(value.substring(6, dash).trim());
+			String total = value.substring(slash + 1).trim();
+			return new long[] { start, "*".equals(total) ? -1 : Long.parseLong(total) };
+		}
+		catch(NumberFormatException e)
+		{
+			return null;
+		}
+	}
+
+	private String readValidator()
+	{
+		if(!mValidatorFile.exists())
+			return null;
+		try
+		{
+			BufferedReader reader = new BufferedReader(new FileReader(mValidatorFile));
+			try
+			{
+				return reader.readLine();
+			}
+			finally
+			{
+				reader.close();
+			}
+		}
+		catch(IOException e)
+		{
+			return null;
+		}
+	}
+
+	private void writeValidator(String validator) throws IOException
+	{
+		if(validator == null)
+		{
+			mValidatorFile.delete();
+			return;
+		}
+		Writer writer = new FileWriter(mValidatorFile);
+		try
+		{
+			writer.write(validator);
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+/**
+ * Sets one field of a decoded item from its text in the response, see {@link ItemMapping#map(String, FieldSetter)}.
+ * <br/>Implement it with a plain assignment, for example <code>item.title = value;</code>, so no reflection is involved while decoding.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ * @param <T> Type of the decoded item.
+ */
+public interface FieldSetter<T>
+{
+	/**
+	 * Set the field.
+	 * @param item Item being decoded.
+	 * @param value Text of the field, <code>null</code> for a JSON <code>null</code>. Numbers and booleans are given as their text.
+	 */
+	public void set(T item, String value);
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.message.BasicHeader;
+
+/**
+ * Wraps a request body so that it is gzip compressed as it is written to the connection. The compressed length is not known
+ * up front, so the body is sent with chunked transfer encoding.
+ * <br/>Only use this if the server accepts <code>Content-Encoding: gzip</code> request bodies.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public class GzipRequestEntity extends HttpEntityWrapper
+{
+	/**
+	 * Compress an entity.
+	 * @param wrapped The uncompressed request body.
+	 */
+	public GzipRequestEntity(HttpEntity wrapped)
+	{
+		super(wrapped);
+	}
+
+	@Override
+	public Header getContentEncoding()
+	{
+		return new BasicHeader("Content-Encoding", "gzip");
+	}
+
+	@Override
+	public long getContentLength()
+	{
+		return -1;
+	}
+
+	@Override
+	public boolean isChunked()
+	{
+		return true;
+	}
+
+	@Override
+	public void writeTo(OutputStream outstream) throws IOException
+	{
+		GZIPOutputStream gzip = new GZIPOutputStream(outstream);
+		wrappedEntity.writeTo(gzip);
+		//finish writes the gzip trailer without closing the connection's stream.
+		gzip.finish();
+	}
+}
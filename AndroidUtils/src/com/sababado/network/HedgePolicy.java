@@ -0,0 +1,136 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.util.HashMap;
+
+/**
+ * <p>Decides when a hedged {@link Service} call sends a second, identical request. A call is hedged when the first request has not
+ * responded within the observed latency percentile of its host (the 95th by default). Until enough latencies have been observed
+ * a fixed delay is used.</p>
+ * <p>Hedges are limited to a fraction of calls by a {@link RetryBudget} so they can not add more than a few percent of load.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ * @see Service#setHedgingEnabled(boolean)
+ */
+public class HedgePolicy
+{
+	/**
+	 * Default latency percentile after which a hedge is sent.
+	 */
+	public static final double DEFAULT_PERCENTILE = 0.95;
+	/**
+	 * Default delay in milliseconds used until enough latencies have been observed.
+	 */
+	public static final long DEFAULT_FALLBACK_DELAY = 500;
+	/**
+	 * Default shortest delay in milliseconds before a hedge is sent.
+	 */
+	public static final long DEFAULT_MIN_DELAY = 50;
+	/**
+	 * Default fraction of calls that may be hedged.
+	 */
+	public static final float DEFAULT_MAX_HEDGE_RATIO = 0.05f;
+
+	//Number of latencies kept per host.
+	private static final int SAMPLE_SIZE = 100;
+	//Number of latencies needed before the percentile is trusted.
+	private static final int MIN_SAMPLES = 20;
+
+	private final double mPercentile;
+	private final long mFallbackDelay;
+	private final long mMinDelay;
+	private final RetryBudget mBudget;
+	private final HashMap<String, LatencySampler> mSamplers = new HashMap<String, LatencySampler>();
+
+	/**
+	 * Create a policy with the default percentile, delays and hedge ratio.
+	 */
+	public HedgePolicy()
+	{
+		this(DEFAULT_PERCENTILE, DEFAULT_FALLBACK_DELAY, DEFAULT_MIN_DELAY, DEFAULT_MAX_HEDGE_RATIO);
+	}
+
+	/**
+	 * Create a policy.
+	 * @param percentile Latency percentile between 0 and 1 after which a hedge is sent.
+	 * @param fallbackDelay Delay in milliseconds used until enough latencies have been observed.
+	 * @param minDelay Shortest delay in milliseconds before a hedge is sent.
+	 * @param maxHedgeRatio Fraction of calls that may be hedged.
+	 */
+	public HedgePolicy(double percentile, long fallbackDelay, long minDelay, float maxHedgeRatio)
+	{
+		if(percentile <= 0 || percentile > 1)
+			throw new IllegalArgumentException("The percentile must be greater than 0 and at most 1.");
+		mPercentile = percentile;
+		mFallbackDelay = fallbackDelay;
+		mMinDelay = minDelay;
+		mBudget = new RetryBudget(maxHedgeRatio, 1);
+	}
+
+	/**
+	 * Record the time it took a host to respond to a request.
+	 * @param host Host of the request.
+	 * @param latency Time in milliseconds until the response headers were received.
+	 */
+	public void recordLatency(String host, long latency)
+	{
+		getSampler(host).record(latency);
+	}
+
+	/**
+	 * Get how long to wait for the first request before hedging.
+	 * @param host Host of the request.
+	 * @return delay in milliseconds.
+	 */
+	public long getHedgeDelay(String host)
+	{
+		LatencySampler sampler = getSampler(host);
+		if(sampler.getCount() < MIN_SAMPLES)
+			return mFallbackDelay;
+		return Math.max(mMinDelay, sampler.getPercentile(mPercentile));
+	}
+
+	/**
+	 * Record that a hedgeable call started. This earns hedging budget.
+	 */
+	void onCallStarted()
+	{
+		mBudget.deposit();
+	}
+
+	/**
+	 * Try to spend budget on a hedge.
+	 * @return true if a hedge may be sent.
+	 */
+	boolean tryHedge()
+	{
+		return mBudget.tryWithdraw();
+	}
+
+	private synchronized LatencySampler getSampler(String host)
+	{
+		LatencySampler sampler = mSamplers.get(host);
+		if(sampler == null)
+		{
+			sampler = new LatencySampler(SAMPLE_SIZE);
+			mSamplers.put(host, sampler);
+		}
+		return sampler;
+	}
+}
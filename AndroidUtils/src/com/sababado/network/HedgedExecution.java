@@ -0,0 +1,167 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * Makes a request and, if it has not responded within a delay, an identical hedge request. The first response wins and the other request is aborted.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+final class HedgedExecution
+{
+	private static ExecutorService sExecutor;
+
+	private HedgedExecution()
+	{
+	}
+
+	/**
+	 * Execute a request, hedging it if it is slow.
+	 * @param client Client to execute the requests with.
+	 * @param primary The first request.
+	 * @param hedge An identical request to send if the first one is slow.
+	 * @param delay Time in milliseconds to wait for the first request before hedging.
+	 * @param policy Policy whose budget limits how many calls are hedged.
+	 * @return The first response received.
+	 * @throws IOException if every request that was sent failed.
+	 */
+	static HttpResponse execute(HttpClient client, HttpUriRequest primary, HttpUriRequest hedge, long delay, HedgePolicy policy) throws IOException
+	{
+		AtomicBoolean won = new AtomicBoolean();
+		CompletionService<HttpResponse> completion = new ExecutorCompletionService<HttpResponse>(getExecutor());
+		Future<HttpResponse> primaryFuture = completion.submit(new Attempt(client, primary, won));
+		int pending = 1;
+		IOException failure = null;
+		try
+		{
+			Future<HttpResponse> done = completion.poll(delay, TimeUnit.MILLISECONDS);
+			if(done == null && policy.tryHedge())
+			{
+				completion.submit(new Attempt(client, hedge, won));
+				pending++;
+			}
+			while(pending > 0)
+			{
+				if(done == null)
+					done = completion.take();
+				pending--;
+				try
+				{
+					HttpResponse response = done.get();
+					if(response != null)
+					{
+						//stop the loser.
+						if(done == primaryFuture)
+							hedge.abort();
+						else
+							primary.abort();
+						return response;
+					}
+				}
+				catch(ExecutionException e)
+				{
+					if(e.getCause() instanceof IOException)
+					{
+						if(failure == null)
+							failure = (IOException)e.getCause();
+					}
+					else if(e.getCause() instanceof RuntimeException)
+						throw (RuntimeException)e.getCause();
+					else
+						throw new RuntimeException(e.getCause());
+				}
+				done = null;
+			}
+		}
+		catch(InterruptedException e)
+		{
+			primary.abort();
+			hedge.abort();
+			throw new InterruptedIOException("Hedged request interrupted.");
+		}
+		throw failure != null ? failure : new IOException("No response from hedged request.");
+	}
+
+	private static synchronized ExecutorService getExecutor()
+	{
+		if(sExecutor == null)
+		{
+			sExecutor = Executors.newCachedThreadPool(new ThreadFactory()
+			{
+				private final AtomicInteger mCount = new AtomicInteger(1);
+
+				@Override
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r, "HedgedExecution #"+mCount.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return sExecutor;
+	}
+
+	/**
+	 * Executes one of the requests. A response that arrives after the other request already won is released.
+	 */
+	private static class Attempt implements Callable<HttpResponse>
+	{
+		private final HttpClient mClient;
+		private final HttpUriRequest mRequest;
+		private final AtomicBoolean mWon;
+
+		Attempt(HttpClient client, HttpUriRequest request, AtomicBoolean won)
+		{
+			mClient = client;
+			mRequest = request;
+			mWon = won;
+		}
+
+		@Override
+		public HttpResponse call() throws IOException
+		{
+			HttpResponse response = mClient.execute(mRequest);
+			if(mWon.compareAndSet(false, true))
+				return response;
+			HttpEntity entity = response.getEntity();
+			if(entity != null)
+				entity.consumeContent();
+			return null;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.util.ArrayList;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Collects items emitted by a parsing {@link Service} and delivers them to a {@link StreamingServiceListener} on the main thread,
+ * in batches bounded by a number of items and by how long the first item of a batch can wait.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+class ItemBatcher implements ServiceItemEmitter
+{
+	private final AsyncServiceCallTask mTask;
+	private final StreamingServiceListener mListener;
+	private final int mMaxItems;
+	private final long mMaxDelay;
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+	//Items waiting to be delivered, guarded by this.
+	@SuppressWarnings("rawtypes")
+	private ArrayList mBatch;
+	//Delivers the current batch once it has waited long enough.
+	private final Runnable mDelayedFlush = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			flush();
+		}
+	};
+
+	/**
+	 * @param task Task doing the parsing, batches are dropped once it is cancelled.
+	 * @param listener Listener to deliver batches to.
+	 * @param maxItems Maximum number of items in a batch.
+	 * @param maxDelay Maximum time in milliseconds an item waits before its batch is delivered.
+	 */
+	ItemBatcher(AsyncServiceCallTask task, StreamingServiceListener listener, int maxItems, long maxDelay)
+	{
+		mTask = task;
+		mListener = listener;
+		mMaxItems = maxItems;
+		mMaxDelay = maxDelay;
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Override
+	public void emit(Object item)
+	{
+		ArrayList full = null;
+		synchronized(this)
+		{
+			if(mBatch == null)
+			{
+				mBatch = new ArrayList(mMaxItems);
+				mMainHandler.postDelayed(mDelayedFlush, mMaxDelay);
+			}
+			mBatch.add(item);
+			if(mBatch.size() >= mMaxItems)
+			{
+				full = mBatch;
+				mBatch = null;
+			}
+		}
+		if(full != null)
+		{
+			mMainHandler.removeCallbacks(mDelayedFlush);
+			deliver(full);
+		}
+	}
+
+	/**
+	 * Deliver whatever is left. Called once parsing is done, before the result is posted.
+	 */
+	void finish()
+	{
+		mMainHandler.removeCallbacks(mDelayedFlush);
+		flush();
+	}
+
+	@SuppressWarnings("rawtypes")
+	private void flush()
+	{
+		ArrayList batch;
+		synchronized(this)
+		{
+			batch = mBatch;
+			mBatch = null;
+		}
+		if(batch != null)
+			deliver(batch);
+	}
+
+	@SuppressWarnings("rawtypes")
+	private void deliver(final ArrayList batch)
+	{
+		mMainHandler.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if(!mTask.isCancelled())
+					mListener.onServiceCallItems(batch);
+			}
+		});
+	}
+}
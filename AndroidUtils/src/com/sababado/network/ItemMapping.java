@@ -0,0 +1,107 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.util.HashMap;
+
+/**
+ * <p>Declares how the items of a response map to objects: how an item is created and which field of the response sets which field of the item.</p>
+ * <p>For example
+ * <pre>
+ * ItemMapping&lt;Post&gt; posts = new ItemMapping&lt;Post&gt;()
+ * {
+ * 	public Post create()
+ * 	{
+ * 		return new Post();
+ * 	}
+ * }
+ * .map("title", new FieldSetter&lt;Post&gt;()
+ * {
+ * 	public void set(Post post, String value)
+ * 	{
+ * 		post.title = value;
+ * 	}
+ * });
+ * </pre></p>
+ * <p>Fields that are not mapped are skipped. A mapping is set up once, typically in a static field, and can then be shared
+ * by every call and thread.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ * @param <T> Type of the decoded item.
+ */
+public abstract class ItemMapping<T>
+{
+	private final HashMap<String, FieldSetter<? super T>> mFields = new HashMap<String, FieldSetter<? super T>>();
+	private final HashMap<String, FieldSetter<? super T>> mAttributes = new HashMap<String, FieldSetter<? super T>>();
+
+	/**
+	 * Create an empty item.
+	 * @return a new item.
+	 */
+	public abstract T create();
+
+	/**
+	 * Map a field of the response: a member of a JSON item or a child element of an XML item.
+	 * @param name Name of the field in the response.
+	 * @param setter Sets the field of the item.
+	 * @return this mapping.
+	 */
+	public ItemMapping<T> map(String name, FieldSetter<? super T> setter)
+	{
+		mFields.put(name, setter);
+		return this;
+	}
+
+	/**
+	 * Map an attribute of the element of an XML item. JSON decoders ignore attributes.
+	 * @param name Name of the attribute.
+	 * @param setter Sets the field of the item.
+	 * @return this mapping.
+	 */
+	public ItemMapping<T> mapAttribute(String name, FieldSetter<? super T> setter)
+	{
+		mAttributes.put(name, setter);
+		return this;
+	}
+
+	/**
+	 * Get the setter of a field.
+	 * @return the setter, or null if the field is not mapped.
+	 */
+	FieldSetter<? super T> getField(String name)
+	{
+		return mFields.get(name);
+	}
+
+	/**
+	 * Get the setter of an attribute.
+	 * @return the setter, or null if the attribute is not mapped.
+	 */
+	FieldSetter<? super T> getAttribute(String name)
+	{
+		return mAttributes.get(name);
+	}
+
+	/**
+	 * Check if any attribute is mapped.
+	 */
+	boolean hasAttributes()
+	{
+		return !mAttributes.isEmpty();
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.StringEntity;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Base64;
+
+/**
+ * A {@link BatchCodec} for a JSON batch endpoint. Requests are sent as
+ * <pre>{"requests":[{"method":"GET","url":"http://...","contentType":"...","body":"..."}, ...]}</pre>
+ * and the response is expected as
+ * <pre>{"responses":[{"status":200,"body":...}, ...]}</pre>
+ * with one response per request in the same order. A response body can be a string or any JSON value, which is handed to the service as its JSON text.
+ * Text request bodies in UTF-8 are sent as text. Any other body is sent Base64 encoded and marked with <code>"bodyEncoding":"base64"</code>.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.1
+ * @updates
+ * 1.1 bodies that are not UTF-8 text are sent Base64 encoded instead of being decoded as text.<br/>
+ */
+public class JsonBatchCodec implements BatchCodec
+{
+	private static final String CHARSET = "UTF-8";
+
+	@Override
+	public HttpEntity encode(List<BatchRequest> requests) throws IOException
+	{
+		try
+		{
+			JSONArray array = new JSONArray();
+			for(BatchRequest request : requests)
+			{
+				JSONObject json = new JSONObject();
+				json.put("method", request.getMethod());
+				json.put("url", request.getUrl());
+				if(request.getBody() != null)
+				{
+					if(request.getContentType() != null)
+						json.put("contentType", request.getContentType());
+					String text = toText(request.getContentType(), request.getBody());
+					if(text != null)
+						json.put("body", text);
+					else
+					{
+						json.put("body", Base64.encodeToString(request.getBody(), Base64.NO_WRAP));
+						json.put("bodyEncoding", "base64");
+					}
+				}
+				array.put(json);
+			}
+			JSONObject batch = new JSONObject();
+			batch.put("requests", array);
+			StringEntity entity = new StringEntity(batch.toString(), CHARSET);
+			entity.setContentType("application/json; charset=utf-8");
+			return entity;
+		}
+		catch(JSONException e)
+		{
+			throw toIOException(e);
+		}
+	}
+
+	@Override
+	public List<BatchPart> decode(InputStream is, int count) throws IOException
+	{
+		try
+		{
+			JSONArray array = new JSONObject(readText(is)).getJSONArray("responses");
+			if(array.length() != count)
+				throw new IOException("Expected "+count+" batch responses but got "+array.length());
+			List<BatchPart> parts = new ArrayList<BatchPart>(count);
+			for(int i=0; i<count; i++)
+			{
+				JSONObject json = array.getJSONObject(i);
+				Object body = json.opt("body");
+				byte[] bytes = null;
+				if(body != null && body != JSONObject.NULL)
+					bytes = body.toString().getBytes(CHARSET);
+				parts.add(new BatchPart(json.getInt("status"), bytes));
+			}
+			return parts;
+		}
+		catch(JSONException e)
+		{
+			throw toIOException(e);
+		}
+	}
+
+	/**
+	 * Get a body as text if it can be sent as text without changing it.
+	 * @param contentType Content type of the body, may be null.
+	 * @param body The body.
+	 * @return the text, or null if the body is not UTF-8 text.
+	 */
+	private static String toText(String contentType, byte[] body)
+	{
+		if(contentType == null)
+			return null;
+		String type = contentType.toLowerCase();
+		int parameters = type.indexOf(';');
+		String mimeType = (parameters < 0 ? type : type.substring(0, parameters)).trim();
+		boolean text = mimeType.startsWith("text/") || mimeType.endsWith("/json") || mimeType.endsWith("+json")
+				|| mimeType.endsWith("/xml") || mimeType.endsWith("+xml") || mimeType.equals("application/x-www-form-urlencoded");
+		int charset = type.indexOf("charset=", Math.max(parameters, 0));
+		if(!text || (parameters >= 0 && charset >= 0 && !type.substring(charset + 8).trim().replace("\"", "").startsWith("utf-8")))
+			return null;
+		try
+		{
+			//reports malformed input instead of replacing it.
+			return Charset.forName(CHARSET).newDecoder().decode(ByteBuffer.wrap(body)).toString();
+		}
+		catch(CharacterCodingException e)
+		{
+			return null;
+		}
+	}
+
+	private static String readText(InputStream is) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while((read = is.read(buffer)) != -1)
+			out.write(buffer, 0, read);
+		return new String(out.toByteArray(), CHARSET);
+	}
+
+	private static IOException toIOException(JSONException e)
+	{
+		IOException ioe = new IOException("Invalid batch: "+e.getMessage());
+		ioe.initCause(e);
+		return ioe;
+	}
+}
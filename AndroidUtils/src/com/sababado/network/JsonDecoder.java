@@ -0,0 +1,133 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+
+/**
+ * <p>A {@link ResponseDecoder} for JSON responses whose items are the objects of an array, either the whole response
+ * <pre>[{"id":1,"title":"Hello"}, ...]</pre>
+ * or an array member of the response object
+ * <pre>{"total":120,"posts":[{"id":1,"title":"Hello"}, ...]}</pre>
+ * The members of each object are set with an {@link ItemMapping}. Members that are not mapped, and mapped members whose value is an
+ * array or object, are skipped.</p>
+ * <p>The response is read token by token as it arrives, nothing is built for the parts of the response that are not mapped.
+ * Each worker thread keeps one reader with its buffers and reuses it for every call.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ * @param <T> Type of the decoded items.
+ */
+public class JsonDecoder<T> implements ResponseDecoder
+{
+	private static final ThreadLocal<JsonTokenizer> sTokenizer = new ThreadLocal<JsonTokenizer>()
+	{
+		@Override
+		protected JsonTokenizer initialValue()
+		{
+			return new JsonTokenizer();
+		}
+	};
+
+	private final String mItemsName;
+	private final ItemMapping<T> mMapping;
+
+	/**
+	 * Create a decoder for a response that is an array of items.
+	 * @param mapping How an item object maps to an item.
+	 */
+	public JsonDecoder(ItemMapping<T> mapping)
+	{
+		this(null, mapping);
+	}
+
+	/**
+	 * Create a decoder for a response object that holds the array of items.
+	 * @param itemsName Name of the member of the response object that holds the items, or null if the response is the array.
+	 * @param mapping How an item object maps to an item.
+	 */
+	public JsonDecoder(String itemsName, ItemMapping<T> mapping)
+	{
+		mItemsName = itemsName;
+		mMapping = mapping;
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	public ArrayList decode(Service service, InputStream is, ServiceItemEmitter emitter) throws IOException
+	{
+		JsonTokenizer json = sTokenizer.get();
+		json.reset(new InputStreamReader(is, "UTF-8"));
+		try
+		{
+			ArrayList result = new ArrayList();
+			if(mItemsName == null)
+				readItems(json, service, result, emitter);
+			else
+			{
+				json.beginObject();
+				while(json.hasNext() && !service.isCancelled())
+				{
+					if(mItemsName.equals(json.nextName()) && json.peek() == JsonTokenizer.BEGIN_ARRAY)
+						readItems(json, service, result, emitter);
+					else
+						json.skipValue();
+				}
+			}
+			return result;
+		}
+		finally
+		{
+			//do not keep the stream of this call alive through the shared reader.
+			json.reset(null);
+		}
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void readItems(JsonTokenizer json, Service service, ArrayList result, ServiceItemEmitter emitter) throws IOException
+	{
+		json.beginArray();
+		while(json.hasNext() && !service.isCancelled())
+		{
+			if(json.peek() != JsonTokenizer.BEGIN_OBJECT)
+			{
+				json.skipValue();
+				continue;
+			}
+			T item = mMapping.create();
+			json.beginObject();
+			while(json.hasNext())
+			{
+				FieldSetter<? super T> setter = mMapping.getField(json.nextName());
+				int value = json.peek();
+				if(setter == null || value == JsonTokenizer.BEGIN_ARRAY || value == JsonTokenizer.BEGIN_OBJECT)
+					json.skipValue();
+				else
+					setter.set(item, json.nextString());
+			}
+			json.endObject();
+			result.add(item);
+			if(emitter != null)
+				emitter.emit(item);
+		}
+		if(!service.isCancelled())
+			json.endArray();
+	}
+}
@@ -0,0 +1,432 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A streaming JSON reader in the manner of <code>android.util.JsonReader</code>, which is not available before Honeycomb.
+ * <br/>It reads through a reusable character buffer and hands values over as strings. Member names are kept in a small table
+ * so the same names in every item of a response are not allocated again. An instance is reused for many responses with
+ * {@link #reset(Reader)} and is not thread safe.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+final class JsonTokenizer
+{
+	static final int BEGIN_ARRAY = 1;
+	static final int END_ARRAY = 2;
+	static final int BEGIN_OBJECT = 3;
+	static final int END_OBJECT = 4;
+	static final int NAME = 5;
+	static final int STRING = 6;
+	//A number, true or false.
+	static final int LITERAL = 7;
+	static final int NULL = 8;
+	static final int END_DOCUMENT = 9;
+
+	private static final int PEEKED_NONE = 0;
+
+	//What comes next in an enclosing scope.
+	private static final int EMPTY_ARRAY = 1;
+	private static final int NONEMPTY_ARRAY = 2;
+	private static final int EMPTY_OBJECT = 3;
+	private static final int DANGLING_NAME = 4;
+	private static final int NONEMPTY_OBJECT = 5;
+	private static final int EMPTY_DOCUMENT = 6;
+	private static final int NONEMPTY_DOCUMENT = 7;
+
+	private static final int NAME_TABLE_SIZE = 64;
+
+	private Reader mIn;
+	private final char[] mBuffer = new char[1024];
+	private int mPos;
+	private int mLimit;
+	private int[] mStack = new int[32];
+	private int mStackSize;
+	private int mPeeked;
+	//Text of the string or literal being read.
+	private final StringBuilder mText = new StringBuilder();
+	//Names already seen, by hash.
+	private final String[] mNames = new String[NAME_TABLE_SIZE];
+
+	/**
+	 * Start reading a new document.
+	 * @param in Reader of the document, or null to let go of the last one.
+	 */
+	void reset(Reader in)
+	{
+		mIn = in;
+		mPos = 0;
+		mLimit = 0;
+		mStackSize = 0;
+		push(EMPTY_DOCUMENT);
+		mPeeked = PEEKED_NONE;
+		mText.setLength(0);
+	}
+
+	/**
+	 * Get the type of the next token without consuming it.
+	 * @return one of the token constants of this class.
+	 */
+	int peek() throws IOException
+	{
+		if(mPeeked == PEEKED_NONE)
+			mPeeked = doPeek();
+		return mPeeked;
+	}
+
+	void beginArray() throws IOException
+	{
+		expect(BEGIN_ARRAY);
+		push(EMPTY_ARRAY);
+	}
+
+	void endArray() throws IOException
+	{
+		expect(END_ARRAY);
+		mStackSize--;
+	}
+
+	void beginObject() throws IOException
+	{
+		expect(BEGIN_OBJECT);
+		push(EMPTY_OBJECT);
+	}
+
+	void endObject() throws IOException
+	{
+		expect(END_OBJECT);
+		mStackSize--;
+	}
+
+	/**
+	 * Check if the current array or object has another element.
+	 */
+	boolean hasNext() throws IOException
+	{
+		int peeked = peek();
+		return peeked != END_ARRAY && peeked != END_OBJECT && peeked != END_DOCUMENT;
+	}
+
+	/**
+	 * Read the name of the next member of an object.
+	 * @return the name, the same instance for names that were read before.
+	 */
+	String nextName() throws IOException
+	{
+		expect(NAME);
+		readString();
+		int length = mText.length();
+		int hash = 0;
+		for(int i=0; i<length; i++)
+			hash = 31 * hash + mText.charAt(i);
+		int index = (hash ^ (hash >>> 16)) & (NAME_TABLE_SIZE - 1);
+		String name = mNames[index];
+		if(name == null || !contentEquals(name))
+		{
+			name = mText.toString();
+			mNames[index] = name;
+		}
+		return name;
+	}
+
+	/**
+	 * Read a string, number or boolean as text.
+	 * @return the text, or <code>null</code> for a JSON <code>null</code>.
+	 */
+	String nextString() throws IOException
+	{
+		int peeked = peek();
+		mPeeked = PEEKED_NONE;
+		if(peeked == STRING)
+		{
+			readString();
+			return mText.toString();
+		}
+		if(peeked == LITERAL)
+			return mText.toString();
+		if(peeked == NULL)
+			return null;
+		throw syntaxError("Expected a value");
+	}
+
+	/**
+	 * Skip the next value, including everything in it if it is an array or object.
+	 */
+	void skipValue() throws IOException
+	{
+		int depth = 0;
+		do
+		{
+			int peeked = peek();
+			if(peeked == BEGIN_ARRAY)
+			{
+				beginArray();
+				depth++;
+			}
+			else if(peeked == BEGIN_OBJECT)
+			{
+				beginObject();
+				depth++;
+			}
+			else if(peeked == END_ARRAY)
+			{
+				endArray();
+				depth--;
+			}
+			else if(peeked == END_OBJECT)
+			{
+				endObject();
+				depth--;
+			}
+			else if(peeked == NAME || peeked == STRING)
+			{
+				mPeeked = PEEKED_NONE;
+				readString();
+			}
+			else if(peeked == LITERAL || peeked == NULL)
+				mPeeked = PEEKED_NONE;
+			else
+				throw syntaxError("Expected a value");
+		}
+		while(depth > 0);
+	}
+
+	private int doPeek() throws IOException
+	{
+		int scope = mStack[mStackSize - 1];
+		if(scope == EMPTY_ARRAY)
+			mStack[mStackSize - 1] = NONEMPTY_ARRAY;
+		else if(scope == NONEMPTY_ARRAY)
+		{
+			int c = nextNonWhitespace(true);
+			if(c == ']')
+				return END_ARRAY;
+			if(c != ',')
+				throw syntaxError("Unterminated array");
+		}
+		else if(scope == EMPTY_OBJECT || scope == NONEMPTY_OBJECT)
+		{
+			mStack[mStackSize - 1] = DANGLING_NAME;
+			if(scope == NONEMPTY_OBJECT)
+			{
+				int c = nextNonWhitespace(true);
+				if(c == '}')
+					return END_OBJECT;
+				if(c != ',')
+					throw syntaxError("Unterminated object");
+			}
+			int c = nextNonWhitespace(true);
+			if(c == '"')
+				return NAME;
+			if(c == '}' && scope == EMPTY_OBJECT)
+				return END_OBJECT;
+			throw syntaxError("Expected a name");
+		}
+		else if(scope == DANGLING_NAME)
+		{
+			mStack[mStackSize - 1] = NONEMPTY_OBJECT;
+			if(nextNonWhitespace(true) != ':')
+				throw syntaxError("Expected ':'");
+		}
+		else if(scope == EMPTY_DOCUMENT)
+			mStack[mStackSize - 1] = NONEMPTY_DOCUMENT;
+		else if(scope == NONEMPTY_DOCUMENT)
+		{
+			if(nextNonWhitespace(false) == -1)
+				return END_DOCUMENT;
+			throw syntaxError("Expected the end of the document");
+		}
+
+		int c = nextNonWhitespace(true);
+		switch(c)
+		{
+			case ']':
+				if(scope == EMPTY_ARRAY)
+					return END_ARRAY;
+				throw syntaxError("Expected a value");
+			case '[':
+				return BEGIN_ARRAY;
+			case '{':
+				return BEGIN_OBJECT;
+			case '"':
+				return STRING;
+			default:
+				mPos--;
+				return readLiteral();
+		}
+	}
+
+	/**
+	 * Read a number, true, false or null into the text buffer.
+	 */
+	private int readLiteral() throws IOException
+	{
+		mText.setLength(0);
+		while(true)
+		{
+			if(mPos == mLimit && !fill())
+				break;
+			char c = mBuffer[mPos];
+			if(c == ',' || c == '}' || c == ']' || c == ':' || c == ' ' || c == '\t' || c == '\n' || c == '\r')
+				break;
+			mText.append(c);
+			mPos++;
+		}
+		if(mText.length() == 0)
+			throw syntaxError("Expected a value");
+		if(contentEquals("null"))
+			return NULL;
+		char first = mText.charAt(0);
+		if(first == '-' || (first >= '0' && first <= '9') || contentEquals("true") || contentEquals("false"))
+			return LITERAL;
+		throw syntaxError("Unexpected value "+mText);
+	}
+
+	/**
+	 * Read a string, the opening quote has been consumed, into the text buffer.
+	 */
+	private void readString() throws IOException
+	{
+		mText.setLength(0);
+		while(true)
+		{
+			int start = mPos;
+			while(mPos < mLimit)
+			{
+				char c = mBuffer[mPos++];
+				if(c == '"')
+				{
+					mText.append(mBuffer, start, mPos - start - 1);
+					return;
+				}
+				if(c == '\\')
+				{
+					mText.append(mBuffer, start, mPos - start - 1);
+					mText.append(readEscape());
+					start = mPos;
+				}
+			}
+			mText.append(mBuffer, start, mPos - start);
+			if(!fill())
+				throw syntaxError("Unterminated string");
+		}
+	}
+
+	private char readEscape() throws IOException
+	{
+		if(mPos == mLimit && !fill())
+			throw syntaxError("Unterminated escape sequence");
+		char escaped = mBuffer[mPos++];
+		switch(escaped)
+		{
+			case 'u':
+				int c = 0;
+				for(int i=0; i<4; i++)
+				{
+					if(mPos == mLimit && !fill())
+						throw syntaxError("Unterminated escape sequence");
+					int digit = Character.digit(mBuffer[mPos++], 16);
+					if(digit < 0)
+						throw syntaxError("Malformed unicode escape");
+					c = (c << 4) | digit;
+				}
+				return (char)c;
+			case 't':
+				return '\t';
+			case 'b':
+				return '\b';
+			case 'n':
+				return '\n';
+			case 'r':
+				return '\r';
+			case 'f':
+				return '\f';
+			default:
+				//'"', '\\' and '/' stand for themselves.
+				return escaped;
+		}
+	}
+
+	/**
+	 * Get the next character that is not whitespace and consume it.
+	 * @return the character, or -1 at the end of the document.
+	 */
+	private int nextNonWhitespace(boolean throwOnEof) throws IOException
+	{
+		while(mPos < mLimit || fill())
+		{
+			char c = mBuffer[mPos++];
+			if(c != ' ' && c != '\t' && c != '\n' && c != '\r')
+				return c;
+		}
+		if(throwOnEof)
+			throw syntaxError("Unexpected end of document");
+		return -1;
+	}
+
+	/**
+	 * Read more characters into the buffer, the buffer must have been consumed.
+	 * @return false at the end of the document.
+	 */
+	private boolean fill() throws IOException
+	{
+		int read = mIn.read(mBuffer, 0, mBuffer.length);
+		mPos = 0;
+		mLimit = read < 0 ? 0 : read;
+		return read > 0;
+	}
+
+	private void expect(int token) throws IOException
+	{
+		if(peek() != token)
+			throw syntaxError("Unexpected token");
+		mPeeked = PEEKED_NONE;
+	}
+
+	private void push(int scope)
+	{
+		if(mStackSize == mStack.length)
+		{
+			int[] stack = new int[mStackSize * 2];
+			System.arraycopy(mStack, 0, stack, 0, mStackSize);
+			mStack = stack;
+		}
+		mStack[mStackSize++] = scope;
+	}
+
+	private boolean contentEquals(String s)
+	{
+		int length = s.length();
+		if(length != mText.length())
+			return false;
+		for(int i=0; i<length; i++)
+		{
+			if(s.charAt(i) != mText.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	private IOException syntaxError(String message)
+	{
+		return new IOException(message+" in the JSON response.");
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent latency samples of an endpoint in a fixed size ring and answers percentile queries over them.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+class LatencySampler
+{
+	private final long[] mSamples;
+	//Index the next sample is written to.
+	private int mNext;
+	//Number of samples held, at most mSamples.length.
+	private int mCount;
+
+	/**
+	 * @param capacity Number of recent samples to keep.
+	 */
+	LatencySampler(int capacity)
+	{
+		mSamples = new long[capacity];
+	}
+
+	/**
+	 * Record a sample, replacing the oldest one if the ring is full.
+	 * @param latency Latency in milliseconds.
+	 */
+	synchronized void record(long latency)
+	{
+		mSamples[mNext] = latency;
+		mNext = (mNext + 1) % mSamples.length;
+		if(mCount < mSamples.length)
+			mCount++;
+	}
+
+	/**
+	 * Get the number of samples held.
+	 */
+	synchronized int getCount()
+	{
+		return mCount;
+	}
+
+	/**
+	 * Get a percentile of the samples held.
+	 * @param percentile Percentile between 0 and 1, for example 0.95.
+	 * @return The latency at that percentile, or -1 if there are no samples.
+	 */
+	synchronized long getPercentile(double percentile)
+	{
+		if(mCount == 0)
+			return -1;
+		long[] sorted = Arrays.copyOf(mSamples, mCount);
+		Arrays.sort(sorted);
+		int index = (int)Math.ceil(percentile * mCount) - 1;
+		return sorted[Math.max(0, Math.min(mCount - 1, index))];
+	}
+}
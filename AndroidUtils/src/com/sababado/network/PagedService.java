@@ -0,0 +1,323 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * <p>A {@link Service} for an endpoint that returns its results one page at a time. Each page is loaded with its own copy of the
+ * service that has the paging parameters added to its parameters, see {@link #forPage(int, String)}.</p>
+ * <p>Pages are addressed in one of three ways:
+ * <ul>
+ * <li>{@link #PAGING_PAGE}: a page number and a page size, for example <code>?page=2&amp;per_page=20</code>.</li>
+ * <li>{@link #PAGING_OFFSET}: an item offset and a page size, for example <code>?offset=40&amp;limit=20</code>.</li>
+ * <li>{@link #PAGING_CURSOR}: a cursor returned with the previous page and a page size, for example <code>?cursor=abc&amp;limit=20</code>.
+ * {@link #parseResults(java.io.InputStream)} must call {@link #setNextCursor(String)} with the cursor of the next page.</li>
+ * </ul></p>
+ * <p>A page shorter than the page size is the last page. A parser can also end paging with {@link #setLastPage(boolean)}.</p>
+ * <p>The result of a page is a {@link PageResult}, which carries the cursor of the next page and whether there is one.
+ * A page served from the {@link ServiceResultCache} or shared with an identical call is not parsed by the copy that asked for it,
+ * so read these from the result rather than from the copy.</p>
+ * <p>Use a {@link com.sababado.widget.PagedListLoader} to load pages into a list as it scrolls.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.2
+ * @updates
+ * 1.2 the result of a page is a {@link PageResult} that carries the next cursor and whether there is a next page.<br/>
+ * 1.1 the paging parameters are added to the call's parameters so the url is built with the shared {@link RequestTemplate}.<br/>
+ */
+public abstract class PagedService extends Service implements Cloneable
+{
+	/**
+	 * Pages are addressed by page number.
+	 */
+	public static final int PAGING_PAGE = 0;
+	/**
+	 * Pages are addressed by the offset of their first item.
+	 */
+	public static final int PAGING_OFFSET = 1;
+	/**
+	 * Pages are addressed by a cursor returned with the previous page.
+	 */
+	public static final int PAGING_CURSOR = 2;
+
+	private int mPaging = PAGING_PAGE;
+	private int mPageSize;
+	private String mPositionParamName = "page";
+	private String mSizeParamName = "per_page";
+	private int mFirstPage = 1;
+	//Page this copy loads, -1 for the template.
+	private int mPage = -1;
+	private String mCursor;
+	private String mNextCursor;
+	private boolean mLastPage;
+
+	/**
+	 * The items of a page, with what is needed to load the page after it.
+	 */
+	public static class PageResult extends ArrayList<Object>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final boolean mHasNextPage;
+		private final String mNextCursor;
+
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		PageResult(ArrayList items, boolean hasNextPage, String nextCursor)
+		{
+			super(items);
+			mHasNextPage = hasNextPage;
+			mNextCursor = nextCursor;
+		}
+
+		/**
+		 * Check if there are more pages after this one.
+		 * @return true if another page can be loaded.
+		 */
+		public boolean hasNextPage()
+		{
+			return mHasNextPage;
+		}
+
+		/**
+		 * Get the cursor of the next page.
+		 * @return the cursor, or null if there is none.
+		 */
+		public String getNextCursor()
+		{
+			return mNextCursor;
+		}
+	}
+
+	/**
+	 * Initialize the service call with data
+	 * @param url Example: <code>http://www.exampleurl.com/path/to/servicecall</code>
+	 * @param callType Use public int types from the {@link Service} class like {@link Service#CALL_TYPE_GET}
+	 * @param paramNames an array containing parameter names
+	 * @param paramValues an array containing corresponding parameter values
+	 * @param pageSize Number of items in a page.
+	 */
+	public PagedService(String url, int callType, String[] paramNames, String[] paramValues, int pageSize)
+	{
+		super(url, callType, paramNames, paramValues);
+		if(pageSize < 1)
+			throw new IllegalArgumentException("A page must hold at least 1 item.");
+		mPageSize = pageSize;
+	}
+
+	/**
+	 * Set how pages are addressed.
+	 * @param paging {@link #PAGING_PAGE}, {@link #PAGING_OFFSET} or {@link #PAGING_CURSOR}
+	 * @param positionParamName Name of the page number, offset or cursor parameter.
+	 * @param sizeParamName Name of the page size parameter, or null if the endpoint has a fixed page size.
+	 */
+	public void setPaging(int paging, String positionParamName, String sizeParamName)
+	{
+		if(paging != PAGING_PAGE && paging != PAGING_OFFSET && paging != PAGING_CURSOR)
+			throw new IllegalArgumentException("Inappropriate use of paging. Use a PagedService.PAGING_* constant");
+		mPaging = paging;
+		mPositionParamName = positionParamName;
+		mSizeParamName = sizeParamName;
+	}
+
+	/**
+	 * Set the number of the first page when pages are addressed by page number. It is 1 by default.
+	 * @param firstPage Number of the first page, usually 0 or 1.
+	 */
+	public void setFirstPage(int firstPage)
+	{
+		mFirstPage = firstPage;
+	}
+
+	/**
+	 * Get how pages are addressed.
+	 * @return A PagedService.PAGING_* constant.
+	 */
+	public int getPaging()
+	{
+		return mPaging;
+	}
+
+	/**
+	 * Get the number of items in a page.
+	 * @return the page size
+	 */
+	public int getPageSize()
+	{
+		return mPageSize;
+	}
+
+	/**
+	 * Get the index of the page this copy loads, starting at 0.
+	 * @return the page index, or -1 if this is not a copy made by {@link #forPage(int, String)}.
+	 */
+	public int getPage()
+	{
+		return mPage;
+	}
+
+	/**
+	 * Get the cursor of the page this copy loads.
+	 * @return the cursor, or null for the first page.
+	 */
+	public String getCursor()
+	{
+		return mCursor;
+	}
+
+	/**
+	 * Set the cursor of the next page. Parsers of {@link #PAGING_CURSOR} services call this while parsing a page.
+	 * @param nextCursor Cursor of the next page, or null if this is the last page.
+	 */
+	protected void setNextCursor(String nextCursor)
+	{
+		mNextCursor = nextCursor;
+	}
+
+	/**
+	 * Get the cursor of the page after the one this copy loaded.
+	 * @return the cursor, or null if there is none.
+	 */
+	public String getNextCursor()
+	{
+		return mNextCursor;
+	}
+
+	/**
+	 * Mark the page this copy loaded as the last page.
+	 * @param lastPage true if there are no more pages.
+	 */
+	protected void setLastPage(boolean lastPage)
+	{
+		mLastPage = lastPage;
+	}
+
+	/**
+	 * Check if there are more pages after the one this copy loaded.
+	 * @param itemCount Number of items the page had.
+	 * @return true if another page can be loaded.
+	 */
+	public boolean hasNextPage(int itemCount)
+	{
+		if(mLastPage || itemCount < mPageSize)
+			return false;
+		return mPaging != PAGING_CURSOR || mNextCursor != null;
+	}
+
+	/**
+	 * Make a copy of this service that loads one page.
+	 * @param page Index of the page, starting at 0.
+	 * @param cursor Cursor of the page for {@link #PAGING_CURSOR} services, null for the first page.
+	 * @return The copy for the page.
+	 */
+	public PagedService forPage(int page, String cursor)
+	{
+		PagedService copy;
+		try
+		{
+			copy = (PagedService)clone();
+		}
+		catch(CloneNotSupportedException e)
+		{
+			throw new IllegalStateException(e.getMessage());
+		}
+		copy.mPage = page;
+		copy.mCursor = cursor;
+		copy.mNextCursor = null;
+		copy.mLastPage = false;
+		return copy;
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	Object parseBody(InputStream is, ServiceItemEmitter emitter) throws XmlPullParserException, IOException
+	{
+		ArrayList items = (ArrayList)super.parseBody(is, emitter);
+		if(items == null)
+			items = new ArrayList();
+		return new PageResult(items, hasNextPage(items.size()), mNextCursor);
+	}
+
+	@Override
+	String[] getCallParamNames()
+	{
+		String[] pagingNames = getPagingParamNames();
+		return pagingNames == null ? super.getCallParamNames() : concat(super.getCallParamNames(), pagingNames);
+	}
+
+	@Override
+	String[] getCallParamValues()
+	{
+		String[] pagingNames = getPagingParamNames();
+		if(pagingNames == null)
+			return super.getCallParamValues();
+		String position = null;
+		switch(mPaging)
+		{
+			case PAGING_PAGE:
+				position = String.valueOf(mFirstPage + mPage);
+				break;
+			case PAGING_OFFSET:
+				position = String.valueOf(mPage * mPageSize);
+				break;
+			case PAGING_CURSOR:
+				position = mCursor;
+				break;
+		}
+		String[] pagingValues;
+		if(position == null)
+			pagingValues = new String[] { String.valueOf(mPageSize) };
+		else if(mSizeParamName == null)
+			pagingValues = new String[] { position };
+		else
+			pagingValues = new String[] { position, String.valueOf(mPageSize) };
+		return concat(super.getCallParamValues(), pagingValues);
+	}
+
+	/**
+	 * Get the names of the paging parameters of this copy, in the same order as their values.
+	 * @return the names, or null if there are none.
+	 */
+	private String[] getPagingParamNames()
+	{
+		if(mPage < 0)
+			return null;
+		//the first page of a cursor has no cursor.
+		boolean hasPosition = mPaging != PAGING_CURSOR || mCursor != null;
+		if(hasPosition && mSizeParamName != null)
+			return new String[] { mPositionParamName, mSizeParamName };
+		if(hasPosition)
+			return new String[] { mPositionParamName };
+		if(mSizeParamName != null)
+			return new String[] { mSizeParamName };
+		return null;
+	}
+
+	private static String[] concat(String[] first, String[] second)
+	{
+		if(first == null)
+			return second;
+		String[] C = new String[first.length + second.length];
+		System.arraycopy(first, 0, C, 0, first.length);
+		System.arraycopy(second, 0, C, first.length, second.length);
+		return C;
+	}
+}
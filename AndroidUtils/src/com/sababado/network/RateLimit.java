@@ -0,0 +1,136 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import android.os.SystemClock;
+
+/**
+ * <p>Client side limits for the calls to a host or of a {@link Service} class: a token bucket that allows a steady number of requests
+ * per second with short bursts, and a cap on the number of calls running at the same time. Either limit can be left out.</p>
+ * <p>Limits are registered with a {@link RateLimiter} and checked by the {@link ServiceExecutor} before a call is dispatched.
+ * Calls over a limit wait in the executor until they are allowed, they do not fail. A <code>429 Too Many Requests</code> response pauses
+ * the limit for its <code>Retry-After</code> time.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public class RateLimit
+{
+	/**
+	 * Returned by {@link #tryAcquire()} when a call must wait for a running call to finish.
+	 */
+	static final long WAIT_FOR_RELEASE = Long.MAX_VALUE;
+
+	private final double mPermitsPerSecond;
+	private final int mBurst;
+	private final int mMaxConcurrent;
+	//Requests currently allowed, refilled at mPermitsPerSecond up to mBurst.
+	private double mTokens;
+	//Last time the tokens were refilled based on SystemClock.elapsedRealtime().
+	private long mLastRefill;
+	private int mInFlight;
+	//Time until which no call may start based on SystemClock.elapsedRealtime().
+	private long mPausedUntil;
+
+	/**
+	 * Create a limit.
+	 * @param permitsPerSecond Requests allowed per second on average, 0 for no rate limit.
+	 * @param burst Requests allowed at once after a quiet period, at least 1 if there is a rate limit. The bucket starts full.
+	 * @param maxConcurrent Calls allowed to run at the same time, 0 for no cap.
+	 */
+	public RateLimit(double permitsPerSecond, int burst, int maxConcurrent)
+	{
+		if(permitsPerSecond < 0 || maxConcurrent < 0)
+			throw new IllegalArgumentException("The rate and the concurrency cap can not be negative.");
+		if(permitsPerSecond > 0 && burst < 1)
+			throw new IllegalArgumentException("The burst must be at least 1.");
+		mPermitsPerSecond = permitsPerSecond;
+		mBurst = burst;
+		mMaxConcurrent = maxConcurrent;
+		mTokens = burst;
+		mLastRefill = SystemClock.elapsedRealtime();
+	}
+
+	/**
+	 * Create a cap on the number of calls running at the same time, without a rate limit.
+	 * @param maxConcurrent Calls allowed to run at the same time.
+	 * @return the limit.
+	 */
+	public static RateLimit concurrency(int maxConcurrent)
+	{
+		if(maxConcurrent < 1)
+			throw new IllegalArgumentException("At least 1 call must be allowed to run.");
+		return new RateLimit(0, 0, maxConcurrent);
+	}
+
+	/**
+	 * Get the number of calls of this limit that are running.
+	 */
+	public synchronized int getInFlight()
+	{
+		return mInFlight;
+	}
+
+	/**
+	 * Stop calls from starting for a while, for example when the server answered <code>429 Too Many Requests</code>.
+	 * The bucket is emptied so calls do not all start at once when the pause is over.
+	 * @param millis Time in milliseconds to pause.
+	 */
+	public synchronized void pause(long millis)
+	{
+		long now = SystemClock.elapsedRealtime();
+		mPausedUntil = Math.max(mPausedUntil, now + millis);
+		mTokens = 0;
+		mLastRefill = mPausedUntil;
+	}
+
+	/**
+	 * Try to start a call.
+	 * @return 0 if the call may start, in which case {@link #release()} must be called when it is done. Otherwise the time in milliseconds
+	 * to wait before trying again, or {@link #WAIT_FOR_RELEASE} if a running call has to finish first.
+	 */
+	synchronized long tryAcquire()
+	{
+		long now = SystemClock.elapsedRealtime();
+		if(now < mPausedUntil)
+			return mPausedUntil - now;
+		if(mMaxConcurrent > 0 && mInFlight >= mMaxConcurrent)
+			return WAIT_FOR_RELEASE;
+		if(mPermitsPerSecond > 0)
+		{
+			if(now > mLastRefill)
+			{
+				mTokens = Math.min(mBurst, mTokens + (now - mLastRefill) * mPermitsPerSecond / 1000);
+				mLastRefill = now;
+			}
+			if(mTokens < 1)
+				return Math.max(1, (long)Math.ceil((1 - mTokens) * 1000 / mPermitsPerSecond));
+			mTokens -= 1;
+		}
+		mInFlight++;
+		return 0;
+	}
+
+	/**
+	 * Finish a call that was allowed to start.
+	 */
+	synchronized void release()
+	{
+		if(mInFlight > 0)
+			mInFlight--;
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.util.HashMap;
+
+/**
+ * <p>Holds the {@link RateLimit}s of hosts and {@link Service} classes. A call uses the limit of its service's class, or of the closest
+ * super class that has one, and otherwise the limit of its host. The {@link ServiceExecutor} checks the limit of the default
+ * limiter from {@link #getDefault()} before dispatching a call; calls made by executing an {@link AsyncServiceCallTask} directly are not limited.</p>
+ * <p>A <code>429 Too Many Requests</code> response pauses the call's limit for its <code>Retry-After</code> time, or for
+ * {@link #DEFAULT_TOO_MANY_REQUESTS_PAUSE} without one. A host without a limit gets one that only holds the pause.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public class RateLimiter
+{
+	/**
+	 * Time in milliseconds a limit is paused after a <code>429</code> response without a <code>Retry-After</code> header.
+	 */
+	public static final long DEFAULT_TOO_MANY_REQUESTS_PAUSE = 1000;
+
+	private static RateLimiter sDefault;
+
+	private final HashMap<String, RateLimit> mHostLimits = new HashMap<String, RateLimit>();
+	private final HashMap<Class<?>, RateLimit> mServiceLimits = new HashMap<Class<?>, RateLimit>();
+
+	/**
+	 * Get the limiter the {@link ServiceExecutor} checks.
+	 * @return the default limiter.
+	 */
+	public static synchronized RateLimiter getDefault()
+	{
+		if(sDefault == null)
+			sDefault = new RateLimiter();
+		return sDefault;
+	}
+
+	/**
+	 * Replace the limiter the {@link ServiceExecutor} checks.
+	 * @param limiter Limiter to use, or null to go back to a new limiter without limits.
+	 */
+	public static synchronized void setDefault(RateLimiter limiter)
+	{
+		sDefault = limiter;
+	}
+
+	/**
+	 * Limit the calls to a host.
+	 * @param host Host name, for example <code>api.example.com</code>.
+	 * @param limit Limit to use, or null to remove the limit.
+	 */
+	public synchronized void setHostLimit(String host, RateLimit limit)
+	{
+		if(limit == null)
+			mHostLimits.remove(host);
+		else
+			mHostLimits.put(host, limit);
+	}
+
+	/**
+	 * Limit the calls of a service class and its sub classes, whatever host they go to.
+	 * @param serviceClass Class of the services.
+	 * @param limit Limit to use, or null to remove the limit.
+	 */
+	public synchronized void setServiceLimit(Class<? extends Service> serviceClass, RateLimit limit)
+	{
+		if(limit == null)
+			mServiceLimits.remove(serviceClass);
+		else
+			mServiceLimits.put(serviceClass, limit);
+	}
+
+	/**
+	 * Get the limit a service's calls are held to.
+	 * @param service The service.
+	 * @return the limit, or null if its calls are not limited.
+	 */
+	public synchronized RateLimit getLimit(Service service)
+	{
+		if(!mServiceLimits.isEmpty())
+		{
+			for(Class<?> c = service.getClass(); c != Service.class; c = c.getSuperclass())
+			{
+				RateLimit limit = mServiceLimits.get(c);
+				if(limit != null)
+					return limit;
+			}
+		}
+		if(mHostLimits.isEmpty())
+			return null;
+		return mHostLimits.get(getHost(service.getUrl()));
+	}
+
+	/**
+	 * Pause the limit of a service after a <code>429 Too Many Requests</code> response.
+	 * @param service Service that got the response.
+	 * @param retryAfter Time in milliseconds from the <code>Retry-After</code> header, 0 if there was none.
+	 */
+	synchronized void onTooManyRequests(Service service, long retryAfter)
+	{
+		RateLimit limit = getLimit(service);
+		if(limit == null)
+		{
+			String host = getHost(service.getUrl());
+			if(host == null)
+				return;
+			limit = new RateLimit(0, 0, 0);
+			mHostLimits.put(host, limit);
+		}
+		limit.pause(retryAfter > 0 ? retryAfter : DEFAULT_TOO_MANY_REQUESTS_PAUSE);
+	}
+
+	/**
+	 * Get the host of a url without parsing the whole url.
+	 * @return the host, or null if the url has none.
+	 */
+	static String getHost(String url)
+	{
+		if(url == null)
+			return null;
+		int start = url.indexOf("://");
+		if(start < 0)
+			return null;
+		start += 3;
+		int end = start;
+		int length = url.length();
+		while(end < length)
+		{
+			char c = url.charAt(end);
+			if(c == '/' || c == '?' || c == '#')
+				break;
+			end++;
+		}
+		//leave out user info and port.
+		int at = url.lastIndexOf('@', end - 1);
+		if(at >= start)
+			start = at + 1;
+		int colon = url.indexOf(start < end && url.charAt(start) == '[' ? ']' : ':', start);
+		if(colon >= 0 && colon < end)
+			end = url.charAt(colon) == ']' ? colon + 1 : colon;
+		return end > start ? url.substring(start, end) : null;
+	}
+}
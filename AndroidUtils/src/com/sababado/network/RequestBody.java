@@ -0,0 +1,182 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicNameValuePair;
+
+/**
+ * <p>The body of a {@link Service#CALL_TYPE_POST} or {@link Service#CALL_TYPE_PUT} request, see {@link Service#setRequestBody(RequestBody)}.</p>
+ * <p>Streams and files are written to the connection as they are read, with chunked transfer encoding, so large uploads are never held in memory.
+ * A stream can only be read once, so a call with a stream body is not retried.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.1
+ * @updates
+ * 1.1 added {@link #getContentLength()} so callers can tell small bodies from large ones without creating the entity.<br/>
+ */
+public abstract class RequestBody
+{
+	/**
+	 * Create the entity to send. This is called for every attempt.
+	 * @return the entity
+	 * @throws IOException if the entity could not be created.
+	 */
+	public abstract HttpEntity createEntity() throws IOException;
+	
+	/**
+	 * Check if this body can be sent more than once.
+	 * @return true if the call can be retried with this body.
+	 */
+	public boolean isRepeatable()
+	{
+		return true;
+	}
+	
+	/**
+	 * Get the size of the body in bytes, if it is known without reading it.
+	 * @return the size, or -1 if it is not known, as for streams, files and custom bodies.
+	 */
+	public long getContentLength()
+	{
+		return -1;
+	}
+
+	/**
+	 * Create a form encoded (<code>application/x-www-form-urlencoded</code>) body.
+	 * @param names an array containing parameter names
+	 * @param values an array containing corresponding parameter values
+	 * @return the body
+	 */
+	public static RequestBody form(final String[] names, final String[] values)
+	{
+		if(names.length != values.length)
+			throw new IllegalArgumentException("Make sure the there are the same number of param names and values.");
+		return new RequestBody()
+		{
+			@Override
+			public HttpEntity createEntity() throws IOException
+			{
+				List<NameValuePair> nvPairs = new ArrayList<NameValuePair>(names.length);
+				for(int i=0; i<names.length; i++)
+					nvPairs.add(new BasicNameValuePair(names[i], values[i]));
+				return new UrlEncodedFormEntity(nvPairs, "UTF-8");
+			}
+
+			@Override
+			public long getContentLength()
+			{
+				try
+				{
+					return createEntity().getContentLength();
+				}
+				catch(IOException e)
+				{
+					return -1;
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Create a body of raw bytes.
+	 * @param data The bytes to send. The array is not copied.
+	 * @param contentType Content type of the bytes, for example <code>application/json</code>.
+	 * @return the body
+	 */
+	public static RequestBody bytes(final byte[] data, final String contentType)
+	{
+		return new RequestBody()
+		{
+			@Override
+			public HttpEntity createEntity()
+			{
+				ByteArrayEntity entity = new ByteArrayEntity(data);
+				entity.setContentType(contentType);
+				return entity;
+			}
+
+			@Override
+			public long getContentLength()
+			{
+				return data.length;
+			}
+		};
+	}
+	
+	/**
+	 * Create a body that is streamed from an {@link InputStream} with chunked transfer encoding.
+	 * The stream is read once and closed when it has been sent.
+	 * @param in Stream to send.
+	 * @param contentType Content type of the stream.
+	 * @return the body
+	 */
+	public static RequestBody stream(final InputStream in, final String contentType)
+	{
+		return new RequestBody()
+		{
+			@Override
+			public HttpEntity createEntity()
+			{
+				return chunked(new InputStreamEntity(in, -1), contentType);
+			}
+			
+			@Override
+			public boolean isRepeatable()
+			{
+				return false;
+			}
+		};
+	}
+	
+	/**
+	 * Create a body that is streamed from a file with chunked transfer encoding.
+	 * @param file File to send.
+	 * @param contentType Content type of the file.
+	 * @return the body
+	 */
+	public static RequestBody file(final File file, final String contentType)
+	{
+		return new RequestBody()
+		{
+			@Override
+			public HttpEntity createEntity()
+			{
+				return chunked(new FileEntity(file, contentType), contentType);
+			}
+		};
+	}
+	
+	private static HttpEntity chunked(AbstractHttpEntity entity, String contentType)
+	{
+		entity.setContentType(contentType);
+		entity.setChunked(true);
+		return entity;
+	}
+}
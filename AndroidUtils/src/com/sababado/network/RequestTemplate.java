@@ -0,0 +1,204 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+/**
+ * <p>The part of a request url that is the same for every call to an endpoint: the base url and the constant parameters, encoded once.</p>
+ * <p>Building the url of a call only encodes the call's own parameters, straight into a builder that each thread reuses, instead of
+ * creating a list of name value pairs and joining strings every time. A template is immutable and can be shared by every
+ * {@link Service} instance that calls the same endpoint, see {@link Service#setRequestTemplate(RequestTemplate)}.</p>
+ * <p>Parameters are form encoded in UTF-8 like {@link java.net.URLEncoder}, the call's parameters come before the constant ones.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public final class RequestTemplate
+{
+	//Builders larger than this are not kept for the next call.
+	private static final int MAX_KEPT_CAPACITY = 8 * 1024;
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	private static final ThreadLocal<StringBuilder> sBuilder = new ThreadLocal<StringBuilder>()
+	{
+		@Override
+		protected StringBuilder initialValue()
+		{
+			return new StringBuilder(256);
+		}
+	};
+
+	private final String mUrl;
+	private final String[] mConstantParamNames;
+	private final String[] mConstantParamValues;
+	//Encoded constant parameters, empty if there are none.
+	private final String mEncodedConstants;
+	//true if a '?' has to go between the url and the parameters.
+	private final boolean mNeedsSeparator;
+
+	/**
+	 * Create a template without constant parameters.
+	 * @param url Example: <code>http://www.exampleurl.com/path/to/servicecall</code>
+	 */
+	public RequestTemplate(String url)
+	{
+		this(url, null, null);
+	}
+
+	/**
+	 * Create a template and encode its constant parameters.
+	 * @param url Example: <code>http://www.exampleurl.com/path/to/servicecall</code>
+	 * @param constantParamNames Names of the parameters sent with every call, may be null.
+	 * @param constantParamValues Values of the constant parameters, may be null if there are no names.
+	 * @throws ArrayIndexOutOfBoundsException if there are more names than values.
+	 */
+	public RequestTemplate(String url, String[] constantParamNames, String[] constantParamValues)
+	{
+		mUrl = url;
+		mConstantParamNames = constantParamNames;
+		mConstantParamValues = constantParamValues;
+		mNeedsSeparator = url == null || !url.endsWith("?");
+		if(constantParamNames == null || constantParamNames.length == 0)
+			mEncodedConstants = "";
+		else
+		{
+			StringBuilder builder = new StringBuilder();
+			appendParams(builder, constantParamNames, constantParamValues);
+			mEncodedConstants = builder.toString();
+		}
+	}
+
+	/**
+	 * Get the base url.
+	 */
+	public String getUrl()
+	{
+		return mUrl;
+	}
+
+	/**
+	 * Get the names of the constant parameters.
+	 */
+	public String[] getConstantParamNames()
+	{
+		return mConstantParamNames;
+	}
+
+	/**
+	 * Get the values of the constant parameters.
+	 */
+	public String[] getConstantParamValues()
+	{
+		return mConstantParamValues;
+	}
+
+	/**
+	 * Build the url of a call.
+	 * @param paramNames Names of the call's parameters, may be null.
+	 * @param paramValues Values of the call's parameters, may be null if there are no names.
+	 * @return the url with the call's parameters and the constant parameters in the query string.
+	 * @throws ArrayIndexOutOfBoundsException if there are more names than values.
+	 */
+	public String build(String[] paramNames, String[] paramValues)
+	{
+		boolean hasParams = paramNames != null && paramNames.length > 0;
+		if(!hasParams && mEncodedConstants.length() == 0)
+			return mUrl;
+
+		StringBuilder builder = sBuilder.get();
+		builder.setLength(0);
+		builder.append(mUrl);
+		if(mNeedsSeparator)
+			builder.append('?');
+		if(hasParams)
+		{
+			appendParams(builder, paramNames, paramValues);
+			if(mEncodedConstants.length() > 0)
+				builder.append('&');
+		}
+		builder.append(mEncodedConstants);
+		String url = builder.toString();
+		if(builder.capacity() > MAX_KEPT_CAPACITY)
+			sBuilder.remove();
+		return url;
+	}
+
+	/**
+	 * Append form encoded name value pairs separated by '&amp;'.
+	 */
+	private static void appendParams(StringBuilder builder, String[] names, String[] values)
+	{
+		if(values == null || values.length < names.length)
+			throw new ArrayIndexOutOfBoundsException("Failed paring param names and values (Index out of bounds). Make sure the there are the same number of param names and values.");
+		for(int i=0; i<names.length; i++)
+		{
+			if(i > 0)
+				builder.append('&');
+			appendEncoded(builder, names[i]);
+			builder.append('=');
+			if(values[i] != null)
+				appendEncoded(builder, values[i]);
+		}
+	}
+
+	/**
+	 * Append a form encoded string, the same as {@link java.net.URLEncoder#encode(String, String)} with UTF-8 but without
+	 * creating intermediate strings.
+	 */
+	private static void appendEncoded(StringBuilder builder, String s)
+	{
+		int length = s.length();
+		for(int i=0; i<length; i++)
+		{
+			char c = s.charAt(i);
+			if((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '*' || c == '_')
+				builder.append(c);
+			else if(c == ' ')
+				builder.append('+');
+			else if(c < 0x80)
+				appendByte(builder, c);
+			else if(c < 0x800)
+			{
+				appendByte(builder, 0xC0 | (c >> 6));
+				appendByte(builder, 0x80 | (c & 0x3F));
+			}
+			else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1)))
+			{
+				int codePoint = Character.toCodePoint(c, s.charAt(++i));
+				appendByte(builder, 0xF0 | (codePoint >> 18));
+				appendByte(builder, 0x80 | ((codePoint >> 12) & 0x3F));
+				appendByte(builder, 0x80 | ((codePoint >> 6) & 0x3F));
+				appendByte(builder, 0x80 | (codePoint & 0x3F));
+			}
+			else if(Character.isHighSurrogate(c) || Character.isLowSurrogate(c))
+			{
+				//an unpaired surrogate can not be encoded, URLEncoder writes '?' instead.
+				appendByte(builder, '?');
+			}
+			else
+			{
+				appendByte(builder, 0xE0 | (c >> 12));
+				appendByte(builder, 0x80 | ((c >> 6) & 0x3F));
+				appendByte(builder, 0x80 | (c & 0x3F));
+			}
+		}
+	}
+
+	private static void appendByte(StringBuilder builder, int b)
+	{
+		builder.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+	}
+}
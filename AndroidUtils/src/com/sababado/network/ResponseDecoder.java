@@ -0,0 +1,48 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * Turns a response body into the list of items a {@link Service} returns, in place of a hand written
+ * {@link Service#parseResults(InputStream)}. Use it with a {@link DecodedService}.
+ * <br/>Decoders are used from the worker threads of service calls at the same time and must not keep per call state in fields.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ * @see XmlPullDecoder
+ * @see JsonDecoder
+ */
+public interface ResponseDecoder
+{
+	/**
+	 * Decode a response.
+	 * @param service Service the response belongs to, decoding should stop early once it is {@link Service#isCancelled() cancelled}.
+	 * @param is {@link InputStream} that contains the successful response from the service call
+	 * @param emitter Emitter to hand each item to as soon as it is decoded, or null.
+	 * @return An {@link ArrayList} of the decoded items.
+	 * @throws XmlPullParserException
+	 * @throws IOException
+	 */
+	@SuppressWarnings("rawtypes")
+	public ArrayList decode(Service service, InputStream is, ServiceItemEmitter emitter) throws XmlPullParserException, IOException;
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+/**
+ * <p>Limits retries to a fraction of the calls being made so that retries can not amplify the load on a struggling server.</p>
+ * <p>Every call deposits <code>retryRatio</code> of a token and every retry withdraws a whole token. The balance is capped so
+ * that only a small burst of retries is allowed after a quiet period.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public class RetryBudget
+{
+	/**
+	 * Default fraction of calls that may be retried.
+	 */
+	public static final float DEFAULT_RETRY_RATIO = 0.1f;
+	/**
+	 * Default maximum number of retries that can be saved up.
+	 */
+	public static final int DEFAULT_MAX_BALANCE = 10;
+	
+	private final float mRetryRatio;
+	private final float mMaxBalance;
+	//Number of retries currently allowed.
+	private float mBalance;
+	
+	/**
+	 * Create a budget with {@link #DEFAULT_RETRY_RATIO} and {@link #DEFAULT_MAX_BALANCE}.
+	 */
+	public RetryBudget()
+	{
+		this(DEFAULT_RETRY_RATIO, DEFAULT_MAX_BALANCE);
+	}
+	
+	/**
+	 * Create a budget.
+	 * @param retryRatio Fraction of calls that may be retried, for example 0.1 allows one retry for every 10 calls.
+	 * @param maxBalance Maximum number of retries that can be saved up. The budget starts full.
+	 */
+	public RetryBudget(float retryRatio, int maxBalance)
+	{
+		if(retryRatio < 0 || maxBalance < 0)
+			throw new IllegalArgumentException("The retry ratio and balance can not be negative.");
+		mRetryRatio = retryRatio;
+		mMaxBalance = maxBalance;
+		mBalance = maxBalance;
+	}
+	
+	/**
+	 * Record that a call was made.
+	 */
+	public synchronized void deposit()
+	{
+		mBalance = Math.min(mMaxBalance, mBalance + mRetryRatio);
+	}
+	
+	/**
+	 * Try to spend a retry.
+	 * @return true if the retry is allowed.
+	 */
+	public synchronized boolean tryWithdraw()
+	{
+		if(mBalance < 1)
+			return false;
+		mBalance -= 1;
+		return true;
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.IOException;
+
+import org.apache.http.HttpResponse;
+
+/**
+ * Decides if and when an {@link AsyncServiceCallTask} retries a failed attempt. The task never makes more attempts than its maximum number of attempts.
+ * <br/>Implementations are shared by tasks running on different threads and must be thread safe.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ * @see DefaultRetryPolicy
+ */
+public interface RetryPolicy
+{
+	/**
+	 * Called once when a service call makes its first attempt.
+	 */
+	public void onCallStarted();
+	
+	/**
+	 * Decide if a failed attempt should be retried.
+	 * @param attempts The number of attempts made so far, 1 after the first attempt.
+	 * @param error The exception of the attempt, or null if a response was received.
+	 * @param response The response of the attempt, or null if there was an exception. Its entity has not been consumed yet.
+	 * @return The time in milliseconds to wait before the next attempt, or a negative number to not retry.
+	 */
+	public long getRetryDelay(int attempts, IOException error, HttpResponse response);
+}
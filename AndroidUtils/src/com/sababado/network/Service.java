@@ -20,15 +20,37 @@ package com.sababado.network;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.xmlpull.v1.XmlPullParserException;
 
+import com.sababado.utils.ConnectivityMonitor;
+
 /**
  * Extend this class to define a service call which will be made by an {@link AsyncServiceCallTask}.
  * @author Robert J. Szabo
  * @since 11/21/2012
- * @version 1.1
+ * @version 1.19
  * @updates 
+ * 1.19 added {@link #setIdempotent(boolean)}, calls that are not idempotent are only retried when the request never reached the server.<br/>
+ * 1.18 subclasses that override {@link #getAllParamNames()} or {@link #getAllParamValues()} have their parameters in the url and request key again.<br/>
+ * 1.17 {@link #isCancelled()} answers for the call parsing on the current thread, so calls that share a service do not clear or set each other's cancellation.<br/>
+ * 1.16 added {@link #NO_DEADLINE} for calls that must not be limited by the default deadline.<br/>
+ * 1.15 the request key includes the service class, services that parse the same url differently no longer share calls or results.<br/>
+ * 1.14 the base url and constant parameters are encoded once in a {@link RequestTemplate} that instances can share.<br/>
+ * 1.13 the parsed result is handed to the task as it is, see {@link TypedService}.<br/>
+ * 1.12 added {@link #isCancelled()} so long parses can stop when their call is cancelled.<br/>
+ * 1.11 added a network policy to hold calls until an allowed network, such as Wi-Fi, is available.<br/>
+ * 1.10 mutating calls can be queued in the {@link ServiceOutbox} when there is no network.<br/>
+ * 1.9 added request bodies for POST and PUT calls.<br/>
+ * 1.8 added hedging for latency critical GET calls.<br/>
+ * 1.7 added connect, read and total deadline timeouts.<br/>
+ * 1.6 added options for compressed responses and gzip compressed request bodies.<br/>
+ * 1.5 added {@link #parseResults(InputStream, ServiceItemEmitter)} to hand over items while they are parsed.<br/>
+ * 1.4 added a time to live for parsed results in the {@link ServiceResultCache}.<br/>
+ * 1.3 added the option to keep the response out of the {@link ServiceResponseCache}.<br/>
+ * 1.2 added a request key to identify identical requests.<br/>
  * 1.1 added constant parameters.<br/>
  */
 public abstract class Service
@@ -39,11 +61,32 @@ public abstract class Service
 	private String[] paramValues;
 	private String[] constantParamNames;
 	private String[] constantParamValues;
+	private boolean responseCacheable = true;
+	private long resultCacheTtl;
+	private boolean acceptCompressedResponse = true;
+	private boolean compressRequestBody;
+	private int connectTimeout;
+	private int readTimeout;
+	private long deadline;
+	private boolean hedgingEnabled;
+	//null to decide by the call type.
+	private Boolean idempotent;
+	private RequestBody requestBody;
+	private boolean paramsInBody;
+	private boolean queueWhenOffline;
+	private int networkPolicy = ConnectivityMonitor.POLICY_ANY;
+	private RequestTemplate requestTemplate;
+	//Whether a service class overrides getAllParamNames() or getAllParamValues(), by class.
+	private static final ConcurrentHashMap<Class<?>, Boolean> sOverridesAllParams = new ConcurrentHashMap<Class<?>, Boolean>();
 	
 	public static final int CALL_TYPE_GET = 0;
 	public static final int CALL_TYPE_POST = 1;
 	public static final int CALL_TYPE_DELETE = 2;
 	public static final int CALL_TYPE_PUT = 3;
+	/**
+	 * Deadline of a call that can take as long as it needs, see {@link #setDeadline(long)}.
+	 */
+	public static final long NO_DEADLINE = -1;
 	
 	/**
 	 * Initialize the service call with data
@@ -78,6 +121,7 @@ public abstract class Service
 	public void setUrl(String url)
 	{
 		this.url = url;
+		requestTemplate = null;
 	}
 	
 	/**
@@ -153,6 +197,36 @@ public abstract class Service
 	{
 		this.constantParamNames = paramNames;
 		this.constantParamValues = paramValues;
+		requestTemplate = null;
+	}
+	
+	/**
+	 * Use an already encoded url and constant parameters. This sets the url and constant parameters of this service to those of the template.
+	 * <br/>Services created for every call to the same endpoint should share one template so the constant parameters are only encoded once.
+	 * @param requestTemplate Template to use.
+	 */
+	public void setRequestTemplate(RequestTemplate requestTemplate)
+	{
+		this.url = requestTemplate.getUrl();
+		this.constantParamNames = requestTemplate.getConstantParamNames();
+		this.constantParamValues = requestTemplate.getConstantParamValues();
+		this.requestTemplate = requestTemplate;
+	}
+	
+	/**
+	 * Get the template of the url and constant parameters, it is created the first time it is needed.
+	 * @return the request template.
+	 * @throws ArrayIndexOutOfBoundsException if there are not the same number of constant param names and values.
+	 */
+	public RequestTemplate getRequestTemplate()
+	{
+		RequestTemplate template = requestTemplate;
+		if(template == null)
+		{
+			template = new RequestTemplate(url, constantParamNames, constantParamValues);
+			requestTemplate = template;
+		}
+		return template;
 	}
 
 	/**
@@ -170,6 +244,7 @@ public abstract class Service
 	 */
 	public String[] getAllParamNames()
 	{
+		String[] paramNames = getCallParamNames();
 		if(constantParamNames == null)
 			return paramNames;
 		if(paramNames == null)
@@ -186,6 +261,7 @@ public abstract class Service
 	 */
 	public String[] getAllParamValues()
 	{
+		String[] paramValues = getCallParamValues();
 		if(constantParamValues == null)
 			return paramValues;
 		if(paramValues == null)
@@ -196,7 +272,396 @@ public abstract class Service
 		return C;
 	}
 	
+	/**
+	 * Get the names of the parameters of this call, not including the constant parameters.
+	 * @return the names, the array is not copied.
+	 */
+	String[] getCallParamNames()
+	{
+		return paramNames;
+	}
+	
+	/**
+	 * Get the values of the parameters of this call, not including the constant parameters.
+	 * @return the values, the array is not copied.
+	 */
+	String[] getCallParamValues()
+	{
+		return paramValues;
+	}
+	
+	/**
+	 * Check if the response of this service can be stored in the installed {@link ServiceResponseCache}. Only GET calls are cached.
+	 * @return true if the response can be cached, true by default.
+	 */
+	public boolean isResponseCacheable()
+	{
+		return responseCacheable;
+	}
+
+	/**
+	 * Set if the response of this service can be stored in the installed {@link ServiceResponseCache}.
+	 * @param responseCacheable false to always go to the network.
+	 */
+	public void setResponseCacheable(boolean responseCacheable)
+	{
+		this.responseCacheable = responseCacheable;
+	}
+	
+	/**
+	 * Get how long the parsed results of this service stay in the {@link ServiceResultCache}.
+	 * @return time to live in milliseconds, 0 (the default) if results are not cached.
+	 */
+	public long getResultCacheTtl()
+	{
+		return resultCacheTtl;
+	}
+
+	/**
+	 * Set how long the parsed results of this service stay in the {@link ServiceResultCache}. Only GET calls are cached.
+	 * @param resultCacheTtl time to live in milliseconds, 0 to not cache results.
+	 */
+	public void setResultCacheTtl(long resultCacheTtl)
+	{
+		this.resultCacheTtl = resultCacheTtl;
+	}
+	
+	/**
+	 * Check if the server may send a gzip or deflate compressed response. Compressed responses are decompressed
+	 * as they are read, before they reach {@link #parseResults(InputStream)}.
+	 * @return true if compressed responses are accepted, true by default.
+	 */
+	public boolean isAcceptCompressedResponse()
+	{
+		return acceptCompressedResponse;
+	}
+
+	/**
+	 * Set if the server may send a gzip or deflate compressed response.
+	 * @param acceptCompressedResponse false to ask for an uncompressed response.
+	 */
+	public void setAcceptCompressedResponse(boolean acceptCompressedResponse)
+	{
+		this.acceptCompressedResponse = acceptCompressedResponse;
+	}
+
+	/**
+	 * Check if the request body is sent gzip compressed.
+	 * @return true if the request body is compressed, false by default.
+	 */
+	public boolean isCompressRequestBody()
+	{
+		return compressRequestBody;
+	}
+
+	/**
+	 * Set if the request body should be sent gzip compressed, see {@link GzipRequestEntity}. The server must accept
+	 * <code>Content-Encoding: gzip</code> request bodies.
+	 * @param compressRequestBody true to compress the request body.
+	 */
+	public void setCompressRequestBody(boolean compressRequestBody)
+	{
+		this.compressRequestBody = compressRequestBody;
+	}
 	
+	/**
+	 * Get the time to wait for a connection to be established.
+	 * @return the connect timeout in milliseconds, 0 to use {@link AsyncServiceCallTask#setDefaultTimeouts(int, int, long) the default}.
+	 */
+	public int getConnectTimeout()
+	{
+		return connectTimeout;
+	}
+
+	/**
+	 * Get the time to wait for data while reading the response.
+	 * @return the read timeout in milliseconds, 0 to use {@link AsyncServiceCallTask#setDefaultTimeouts(int, int, long) the default}.
+	 */
+	public int getReadTimeout()
+	{
+		return readTimeout;
+	}
+
+	/**
+	 * Set the connect and read timeouts of this service call. Each attempt uses these timeouts, shortened if less time is left before the deadline.
+	 * @param connectTimeout Time in milliseconds to wait for a connection to be established, 0 to use the default.
+	 * @param readTimeout Time in milliseconds to wait for data while reading the response, 0 to use the default.
+	 */
+	public void setTimeouts(int connectTimeout, int readTimeout)
+	{
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * Get the total time this service call can take, including every retry and parsing the response.
+	 * @return the deadline in milliseconds, 0 to use {@link AsyncServiceCallTask#setDefaultTimeouts(int, int, long) the default}
+	 * or {@link #NO_DEADLINE} if the call has no deadline.
+	 */
+	public long getDeadline()
+	{
+		return deadline;
+	}
+
+	/**
+	 * Set the total time this service call can take, including every retry and parsing the response. The time starts when the call starts
+	 * running, time spent waiting in a {@link ServiceExecutor} queue does not count.
+	 * @param deadline Time in milliseconds, 0 to use the default or {@link #NO_DEADLINE} for no deadline at all.
+	 */
+	public void setDeadline(long deadline)
+	{
+		if(deadline < NO_DEADLINE)
+			throw new IllegalArgumentException("A deadline can not be negative, use Service.NO_DEADLINE for no deadline.");
+		this.deadline = deadline;
+	}
+	
+	/**
+	 * Check if slow requests of this service are hedged.
+	 * @return true if hedging is enabled, false by default.
+	 */
+	public boolean isHedgingEnabled()
+	{
+		return hedgingEnabled;
+	}
+
+	/**
+	 * Enable hedging for a latency critical GET service. If the first request has not responded within the delay of the
+	 * {@link AsyncServiceCallTask#getHedgePolicy() hedge policy}, a second identical request is sent, the first response wins and the other is aborted.
+	 * <br/>Only GET calls are hedged since the request is sent twice.
+	 * @param hedgingEnabled true to hedge slow requests.
+	 */
+	public void setHedgingEnabled(boolean hedgingEnabled)
+	{
+		this.hedgingEnabled = hedgingEnabled;
+	}
+	
+	/**
+	 * Check if making this call twice has the same effect as making it once. Failed attempts of a call that is not idempotent
+	 * are only retried if the request never reached the server, so a write the server may already have made is not made again.
+	 * @return true if the call is idempotent, by default only GET calls are.
+	 */
+	public boolean isIdempotent()
+	{
+		if(idempotent == null)
+			return callType == CALL_TYPE_GET;
+		return idempotent.booleanValue();
+	}
+
+	/**
+	 * Set if making this call twice has the same effect as making it once, for example a PUT that replaces a resource or a POST with
+	 * an idempotency key. Idempotent calls are retried like GET calls, see {@link DefaultRetryPolicy}.
+	 * @param idempotent true if the call can safely be made more than once.
+	 */
+	public void setIdempotent(boolean idempotent)
+	{
+		this.idempotent = Boolean.valueOf(idempotent);
+	}
+	
+	/**
+	 * Get the body sent with a POST or PUT call.
+	 * @return the request body, or null if there is none.
+	 */
+	public RequestBody getRequestBody()
+	{
+		return requestBody;
+	}
+
+	/**
+	 * Set the body sent with a POST or PUT call. The body is ignored for other call types.
+	 * @param requestBody Body to send, see the {@link RequestBody} factory methods.
+	 */
+	public void setRequestBody(RequestBody requestBody)
+	{
+		this.requestBody = requestBody;
+	}
+
+	/**
+	 * Check if the parameters of a POST or PUT call are sent form encoded in the request body instead of the url.
+	 * @return true if the parameters are sent in the body, false by default.
+	 */
+	public boolean isParamsInBody()
+	{
+		return paramsInBody;
+	}
+
+	/**
+	 * Set if the parameters (user defined plus constant) of a POST or PUT call are sent form encoded in the request body instead of the url.
+	 * This only applies if no {@link #setRequestBody(RequestBody) request body} is set.
+	 * @param paramsInBody true to send the parameters in the body.
+	 */
+	public void setParamsInBody(boolean paramsInBody)
+	{
+		this.paramsInBody = paramsInBody;
+	}
+
+	/**
+	 * Check if this call is queued in the {@link ServiceOutbox} when there is no network.
+	 * @return true if the call is queued, false by default.
+	 */
+	public boolean isQueueWhenOffline()
+	{
+		return queueWhenOffline;
+	}
+
+	/**
+	 * Set if a POST, PUT or DELETE call is queued in the installed {@link ServiceOutbox} when there is no network, instead of failing.
+	 * The queued call is made when the network is back, even if the app was restarted in between, and its result goes to the outbox's
+	 * {@link ServiceOutboxListener}. The listener of the original call fails with {@link AsyncServiceCallTask#ERR_CODE_QUEUED_OFFLINE}.
+	 * <br/>To be recreated after the app restarts the service class must have a public constructor without parameters, and its request body
+	 * must be repeatable. Only the url, call type, parameters, request body, compression, timeout and deadline settings are restored.
+	 * @param queueWhenOffline true to queue the call when there is no network.
+	 * @throws IllegalStateException if the service class has no public constructor without parameters.
+	 */
+	public void setQueueWhenOffline(boolean queueWhenOffline)
+	{
+		if(queueWhenOffline)
+		{
+			try
+			{
+				getClass().getConstructor();
+			}
+			catch(NoSuchMethodException e)
+			{
+				throw new IllegalStateException(getClass().getName()+" needs a public constructor without parameters to be queued offline.");
+			}
+		}
+		this.queueWhenOffline = queueWhenOffline;
+	}
+
+	/**
+	 * Get the networks this call may be made on.
+	 * @return A ConnectivityMonitor.POLICY_* constant, {@link ConnectivityMonitor#POLICY_ANY} by default.
+	 */
+	public int getNetworkPolicy()
+	{
+		return networkPolicy;
+	}
+
+	/**
+	 * Set the networks this call may be made on. A {@link ServiceExecutor} holds the call until the active network is allowed,
+	 * for example to defer large downloads until the device is on Wi-Fi with {@link ConnectivityMonitor#POLICY_UNMETERED}.
+	 * @param networkPolicy A ConnectivityMonitor.POLICY_* constant.
+	 */
+	public void setNetworkPolicy(int networkPolicy)
+	{
+		if(networkPolicy != ConnectivityMonitor.POLICY_ANY && networkPolicy != ConnectivityMonitor.POLICY_NOT_ROAMING && networkPolicy != ConnectivityMonitor.POLICY_UNMETERED)
+			throw new IllegalArgumentException("Inappropriate use of network policy. Use a ConnectivityMonitor.POLICY_* constant");
+		this.networkPolicy = networkPolicy;
+	}
+
+	/**
+	 * Check if the call making this service was cancelled. Parsers that do a lot of work should check this now and then
+	 * and stop early, returning what they have, when it is true. The response stream is also closed when a call is cancelled,
+	 * so reading from it fails.
+	 * <br/>The answer is for the call running on the current thread, so it is only meaningful while parsing or downloading.
+	 * A service instance can be used by several calls and each parser sees the cancellation of its own call.
+	 * @return true if the call was cancelled, false if it was not or no call is running on this thread.
+	 */
+	public boolean isCancelled()
+	{
+		return AsyncServiceCallTask.isRunningCallCancelled();
+	}
+
+	/**
+	 * Get the body that will be sent with this call, including parameters that are sent in the body.
+	 * @return the body, or null if the call has no body.
+	 */
+	RequestBody getEffectiveRequestBody()
+	{
+		if(callType != CALL_TYPE_POST && callType != CALL_TYPE_PUT)
+			return null;
+		if(requestBody != null)
+			return requestBody;
+		String[] names = getAllParamNames();
+		if(paramsInBody && names != null && names.length > 0)
+			return RequestBody.form(names, getAllParamValues());
+		return null;
+	}
+	
+	/**
+	 * Build the full url of the request, with the parameters (user defined plus constant) in the query string.
+	 * @param paramsInBody true if the parameters are sent in the request body and should be left out of the url.
+	 * @return the url
+	 * @throws ArrayIndexOutOfBoundsException if there are not the same number of param names and values.
+	 */
+	String buildRequestUrl(boolean paramsInBody)
+	{
+		//the constant parameters go in the body too.
+		if(paramsInBody)
+			return url;
+		//parameters added by an override can not use the encoded constants.
+		if(overridesAllParams())
+			return new RequestTemplate(url).build(getAllParamNames(), getAllParamValues());
+		return getRequestTemplate().build(getCallParamNames(), getCallParamValues());
+	}
+	
+	/**
+	 * Check if this service's class overrides {@link #getAllParamNames()} or {@link #getAllParamValues()}, for example to add a signature.
+	 * The parameters are then read from those methods instead of being put together from the call's and the constant parameters.
+	 * @return true if either method is overridden.
+	 */
+	private boolean overridesAllParams()
+	{
+		Class<?> serviceClass = getClass();
+		Boolean overrides = sOverridesAllParams.get(serviceClass);
+		if(overrides == null)
+		{
+			try
+			{
+				overrides = serviceClass.getMethod("getAllParamNames").getDeclaringClass() != Service.class
+						|| serviceClass.getMethod("getAllParamValues").getDeclaringClass() != Service.class;
+			}
+			catch(NoSuchMethodException e)
+			{
+				overrides = Boolean.TRUE;
+			}
+			sOverridesAllParams.put(serviceClass, overrides);
+		}
+		return overrides;
+	}
+	
+	/**
+	 * Get a key that identifies the request this service makes. Services of the same class with the same call type, url and
+	 * parameters (user defined plus constant, in any order) have the same key. The class is part of the key because it decides
+	 * how the response is parsed, so identical requests of different classes do not share a call or a cached result.
+	 * @return the request key
+	 */
+	public String getRequestKey()
+	{
+		String[] names;
+		String[] values;
+		String[] constantNames = null;
+		String[] constantValues = null;
+		if(overridesAllParams())
+		{
+			names = getAllParamNames();
+			values = getAllParamValues();
+		}
+		else
+		{
+			names = getCallParamNames();
+			values = getCallParamValues();
+			constantNames = constantParamNames;
+			constantValues = constantParamValues;
+		}
+		int count = names == null ? 0 : names.length;
+		int constantCount = constantNames == null ? 0 : constantNames.length;
+		StringBuilder key = new StringBuilder();
+		key.append(getClass().getName()).append(' ').append(callType).append(' ').append(url);
+		if(count + constantCount > 0)
+		{
+			//sort the pairs so that the parameter order does not matter
+			String[] pairs = new String[count + constantCount];
+			for(int i=0; i<count; i++)
+				pairs[i] = names[i].length()+":"+names[i]+"="+values[i];
+			for(int i=0; i<constantCount; i++)
+				pairs[count + i] = constantNames[i].length()+":"+constantNames[i]+"="+constantValues[i];
+			Arrays.sort(pairs);
+			for(String pair : pairs)
+				key.append('\n').append(pair);
+		}
+		return key.toString();
+	}
 	
 	/**
 	 * Define parsing logic here
@@ -207,4 +672,33 @@ public abstract class Service
 	 */
 	@SuppressWarnings("rawtypes")
 	public abstract ArrayList parseResults(InputStream is) throws XmlPullParserException, IOException;
+	
+	/**
+	 * Define parsing logic that hands over each item as soon as it is parsed. This is used when the listener is a {@link StreamingServiceListener}.
+	 * <br/>Override this to call {@link ServiceItemEmitter#emit(Object)} for every parsed item, in order, and still return the complete result.
+	 * By default this calls {@link #parseResults(InputStream)} and emits nothing.
+	 * @param is {@link InputStream} that contains the successful response from the service call
+	 * @param emitter Emitter to hand parsed items to
+	 * @return An {@link ArrayList} of any type containing all of the parsed results.
+	 * @throws XmlPullParserException
+	 * @throws IOException
+	 */
+	@SuppressWarnings("rawtypes")
+	public ArrayList parseResults(InputStream is, ServiceItemEmitter emitter) throws XmlPullParserException, IOException
+	{
+		return parseResults(is);
+	}
+	
+	/**
+	 * Parse a successful response into the result handed to the listener.
+	 * @param is {@link InputStream} that contains the successful response from the service call
+	 * @param emitter Emitter to hand parsed items to, or null if nobody wants them while parsing.
+	 * @return The parsed result.
+	 * @throws XmlPullParserException
+	 * @throws IOException
+	 */
+	Object parseBody(InputStream is, ServiceItemEmitter emitter) throws XmlPullParserException, IOException
+	{
+		return emitter == null ? parseResults(is) : parseResults(is, emitter);
+	}
 }
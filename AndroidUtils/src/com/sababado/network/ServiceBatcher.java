@@ -0,0 +1,444 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.util.EntityUtils;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.sababado.utils.ConnectivityMonitor;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * <p>Collects the service calls submitted within a short window and makes them in a single request to a batch endpoint.
+ * The batch response is split back into one response per call, which is parsed by the call's own {@link Service} and delivered to its own listener,
+ * so a screen that fires several small calls to the same host pays for one round trip instead of one per call.</p>
+ * <p>A batch is sent when the window after its first call has passed, when it reaches its maximum size or when {@link #flush()} is called.
+ * To send a group of calls together, submit them and then call {@link #flush()}.</p>
+ * <p>The {@link BatchCodec} decides what the batch request and response look like, by default it is a {@link JsonBatchCodec}.
+ * If the batch endpoint answers with <code>400</code>, <code>404</code>, <code>405</code> or <code>501</code>, or with a response the codec cannot decode,
+ * the batcher assumes the server does not support batching and makes every call after it individually.
+ * The calls of a batch the server rejected, or that was never sent, are made individually. If a batch fails in a way that the server may
+ * already have run it, for example a <code>5xx</code>, a timeout or an undecodable response, only its GET calls are made again individually;
+ * the other calls fail with the batch's error so that their writes are not made twice.</p>
+ * <p>Calls whose results are in the {@link ServiceResultCache}, calls with a streamed or file body or a body larger than
+ * {@link #MAX_BATCHED_BODY_SIZE}, and a batch of a single call are made individually with the {@link ServiceExecutor}, so large uploads are
+ * still streamed instead of being held in memory inside the batch.
+ * A batch with a call that is not {@link Service#isIdempotent() idempotent} is itself only retried if it never reached the server. Batched calls do not use the {@link ServiceResponseCache} and are not streamed;
+ * their listeners get the complete result. Identical GET calls in the same batch are made once.</p>
+ * <p>Only use a batcher from the main thread.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.1
+ * @updates
+ * 1.1 only GET calls are made again when a batch fails after it may have reached the server, the batch request itself is not retried
+ * once it may have reached the server unless all of its calls are idempotent, and large or streamed bodies are not batched.<br/>
+ */
+public class ServiceBatcher
+{
+	/**
+	 * Default time in milliseconds calls are collected before a batch is sent.
+	 */
+	public static final long DEFAULT_WINDOW = 20;
+	/**
+	 * Default maximum number of calls in a batch.
+	 */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 10;
+	/**
+	 * Largest request body in bytes of a call that is batched.
+	 */
+	public static final int MAX_BATCHED_BODY_SIZE = 16 * 1024;
+
+	private final String mBatchUrl;
+	private final BatchCodec mCodec;
+	private final long mWindow;
+	private final int mMaxBatchSize;
+	private final ServiceExecutor mExecutor;
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+	//Calls waiting for their batch to be sent or for their result, by request key.
+	private final Map<String, CoalescedCall> mCalls = new HashMap<String, CoalescedCall>();
+	//Calls of the batch being collected, null if there is none.
+	private ArrayList<Member> mPending;
+	//Makes unique keys for calls that must not be shared.
+	private int mSequence;
+	//true once the server showed it does not support batching.
+	private boolean mUnsupported;
+	//Sends the batch being collected when its window has passed.
+	private final Runnable mFlush = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			flush();
+		}
+	};
+
+	/**
+	 * Create a batcher with a {@link JsonBatchCodec}, the default window and batch size, and the {@link ServiceExecutor#getDefault() default executor}.
+	 * @param batchUrl Url of the batch endpoint.
+	 */
+	public ServiceBatcher(String batchUrl)
+	{
+		this(batchUrl, new JsonBatchCodec(), DEFAULT_WINDOW, DEFAULT_MAX_BATCH_SIZE, ServiceExecutor.getDefault());
+	}
+
+	/**
+	 * Create a batcher.
+	 * @param batchUrl Url of the batch endpoint.
+	 * @param codec Encodes and decodes batches for the endpoint.
+	 * @param window Time in milliseconds calls are collected before a batch is sent.
+	 * @param maxBatchSize Maximum number of calls in a batch, a full batch is sent right away.
+	 * @param executor Executor that makes the batch requests and the individual calls.
+	 */
+	public ServiceBatcher(String batchUrl, BatchCodec codec, long window, int maxBatchSize, ServiceExecutor executor)
+	{
+		if(maxBatchSize < 1)
+			throw new IllegalArgumentException("A batch must hold at least 1 call.");
+		mBatchUrl = batchUrl;
+		mCodec = codec;
+		mWindow = window;
+		mMaxBatchSize = maxBatchSize;
+		mExecutor = executor;
+	}
+
+	/**
+	 * Submit a service call to be made in the next batch.
+	 * @param asyncServiceListener Callback listener for the call
+	 * @param service Service to execute
+	 * @param ctx Invoking context
+	 * @return A handle that can be used to cancel the call.
+	 */
+	public ServiceCall submit(AsyncServiceListener asyncServiceListener, Service service, Context ctx)
+	{
+		if(!canBatch(service))
+			return mExecutor.submit(asyncServiceListener, service, ctx);
+
+		String key = service.getRequestKey();
+		if(service.getCallType() != Service.CALL_TYPE_GET)
+			key += "#" + (mSequence++);
+		CoalescedCall call = mCalls.get(key);
+		if(call != null)
+			return call.subscribe(asyncServiceListener);
+
+		call = new CoalescedCall(key, mCalls);
+		mCalls.put(key, call);
+		ServiceCall subscriber = call.subscribe(asyncServiceListener);
+		if(mPending == null)
+		{
+			mPending = new ArrayList<Member>(mMaxBatchSize);
+			mMainHandler.postDelayed(mFlush, mWindow);
+		}
+		mPending.add(new Member(service, call, ctx));
+		if(mPending.size() >= mMaxBatchSize)
+			flush();
+		return subscriber;
+	}
+
+	/**
+	 * Send the calls collected so far without waiting for the window to pass.
+	 */
+	public void flush()
+	{
+		mMainHandler.removeCallbacks(mFlush);
+		ArrayList<Member> batch = mPending;
+		mPending = null;
+		if(batch == null)
+			return;
+
+		//leave out calls whose listeners all cancelled while they waited.
+		ArrayList<Member> members = new ArrayList<Member>(batch.size());
+		for(Member member : batch)
+		{
+			if(!member.mCall.isDone())
+				members.add(member);
+		}
+		if(members.isEmpty())
+			return;
+		if(members.size() == 1 || mUnsupported)
+		{
+			sendIndividually(members);
+			return;
+		}
+
+		BatchService batchService = new BatchService(mBatchUrl, mCodec, members);
+		mExecutor.execute(new AsyncServiceCallTask(new BatchListener(batchService), batchService, members.get(0).mContext), ServiceExecutor.PRIORITY_USER_VISIBLE);
+	}
+
+	/**
+	 * Check if the batch endpoint is believed to support batching.
+	 * @return false once the endpoint rejected a batch, calls are then made individually.
+	 */
+	public boolean isBatchingSupported()
+	{
+		return !mUnsupported;
+	}
+
+	private boolean canBatch(Service service)
+	{
+		//calls held for another network are made on their own when that network is available.
+		if(mUnsupported || service.getNetworkPolicy() != ConnectivityMonitor.POLICY_ANY || ServiceResultCache.getDefault().get(service) != null)
+			return false;
+		//downloads stream to a file and can be resumed, neither works inside a batch.
+		if(service instanceof DownloadService)
+			return false;
+		RequestBody requestBody = service.getEffectiveRequestBody();
+		if(requestBody == null)
+			return true;
+		//a body of unknown size is streamed, loading it into the batch would hold it in memory.
+		long length = requestBody.getContentLength();
+		return requestBody.isRepeatable() && length >= 0 && length <= MAX_BATCHED_BODY_SIZE;
+	}
+
+	/**
+	 * Make each call with its own request.
+	 */
+	private void sendIndividually(List<Member> members)
+	{
+		for(Member member : members)
+		{
+			if(!member.mCall.isDone())
+				member.mCall.setCall(mExecutor.execute(new AsyncServiceCallTask(member.mCall, member.mService, member.mContext), ServiceExecutor.PRIORITY_USER_VISIBLE));
+		}
+	}
+
+	/**
+	 * A call waiting in a batch.
+	 */
+	private static class Member
+	{
+		private final Service mService;
+		//Delivers the call's result to its subscribers.
+		private final CoalescedCall mCall;
+		private final Context mContext;
+
+		Member(Service service, CoalescedCall call, Context ctx)
+		{
+			mService = service;
+			mCall = call;
+			mContext = ctx;
+		}
+	}
+
+	/**
+	 * Hands the outcome of a batch to the calls in it.
+	 */
+	private class BatchListener implements ServiceResultListener
+	{
+		private final BatchService mBatchService;
+
+		BatchListener(BatchService batchService)
+		{
+			mBatchService = batchService;
+		}
+
+		@Override
+		public void onServiceCallProgressUpdate(String[] progress)
+		{
+			for(Member member : mBatchService.mMembers)
+				member.mCall.onServiceCallProgressUpdate(progress);
+		}
+
+		@Override
+		public void onServiceResult(ServiceResult result)
+		{
+			if(result.isSuccess())
+				onServiceCallSuccess(null);
+			else
+				onServiceCallFailure(result.getError().getMessage(), result.getError().getCode());
+		}
+
+		@Override
+		public void onServiceCallSuccess(Bundle success)
+		{
+			ServiceResult[] outcomes = mBatchService.mOutcomes;
+			for(int i=0; i<outcomes.length; i++)
+				AsyncServiceCallTask.deliver(mBatchService.mMembers.get(i).mCall, outcomes[i]);
+		}
+
+		@Override
+		public void onServiceCallFailure(String errMsg, int errCode)
+		{
+			//the server refused the batch before running any of its calls.
+			boolean rejected = !mBatchService.mUndecodable && (errCode == HttpStatus.SC_BAD_REQUEST || errCode == HttpStatus.SC_NOT_FOUND
+					|| errCode == HttpStatus.SC_METHOD_NOT_ALLOWED || errCode == HttpStatus.SC_NOT_IMPLEMENTED);
+			if(rejected || mBatchService.mUndecodable)
+				mUnsupported = true;
+			boolean neverSent = rejected || errCode == AsyncServiceCallTask.ERR_CODE_NO_NETWORK
+					|| errCode == AsyncServiceCallTask.ERR_CODE_REJECTED || errCode == AsyncServiceCallTask.ERR_CODE_CIRCUIT_OPEN;
+			if(neverSent)
+			{
+				sendIndividually(mBatchService.mMembers);
+				return;
+			}
+			//the server may have run the batch, only calls that can safely be made twice are made again.
+			List<Member> resend = new ArrayList<Member>(mBatchService.mMembers.size());
+			for(Member member : mBatchService.mMembers)
+			{
+				if(member.mService.getCallType() == Service.CALL_TYPE_GET)
+					resend.add(member);
+				else
+					AsyncServiceCallTask.deliver(member.mCall, AsyncServiceCallTask.errorResult(errMsg, errCode));
+			}
+			sendIndividually(resend);
+		}
+	}
+
+	/**
+	 * The single POST to the batch endpoint. Parsing its response splits it and parses each part with the service of its call.
+	 */
+	private static class BatchService extends Service
+	{
+		private final BatchCodec mCodec;
+		private final List<Member> mMembers;
+		//Success or failure result of every call, set once the response is parsed.
+		private volatile ServiceResult[] mOutcomes;
+		//true if the codec could not decode the response.
+		private volatile boolean mUndecodable;
+
+		BatchService(String batchUrl, BatchCodec codec, List<Member> members)
+		{
+			super(batchUrl, CALL_TYPE_POST, null, null);
+			mCodec = codec;
+			mMembers = members;
+			setResponseCacheable(false);
+			//a retry after the batch reached the server would make the writes in it again.
+			boolean idempotent = true;
+			for(Member member : members)
+				idempotent &= member.mService.isIdempotent();
+			setIdempotent(idempotent);
+			setRequestBody(new RequestBody()
+			{
+				@Override
+				public HttpEntity createEntity() throws IOException
+				{
+					return mCodec.encode(createRequests());
+				}
+			});
+		}
+
+		/**
+		 * Describe each call of the batch for the codec.
+		 */
+		private List<BatchRequest> createRequests() throws IOException
+		{
+			List<BatchRequest> requests = new ArrayList<BatchRequest>(mMembers.size());
+			for(Member member : mMembers)
+			{
+				Service service = member.mService;
+				RequestBody requestBody = service.getEffectiveRequestBody();
+				boolean paramsInBody = requestBody != null && service.getRequestBody() == null;
+				String contentType = null;
+				byte[] body = null;
+				if(requestBody != null)
+				{
+					HttpEntity entity = requestBody.createEntity();
+					Header contentTypeHeader = entity.getContentType();
+					if(contentTypeHeader != null)
+						contentType = contentTypeHeader.getValue();
+					body = EntityUtils.toByteArray(entity);
+				}
+				requests.add(new BatchRequest(getMethod(service.getCallType()), service.buildRequestUrl(paramsInBody), contentType, body));
+			}
+			return requests;
+		}
+
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		@Override
+		public ArrayList parseResults(InputStream is) throws XmlPullParserException, IOException
+		{
+			List<BatchPart> parts;
+			try
+			{
+				parts = mCodec.decode(is, mMembers.size());
+				if(parts == null || parts.size() != mMembers.size())
+					throw new IOException("The batch response does not have a part for every call.");
+			}
+			catch(IOException e)
+			{
+				mUndecodable = true;
+				throw e;
+			}
+
+			ServiceResult[] outcomes = new ServiceResult[parts.size()];
+			for(int i=0; i<outcomes.length; i++)
+				outcomes[i] = parsePart(mMembers.get(i).mService, parts.get(i));
+			mOutcomes = outcomes;
+
+			ArrayList result = new ArrayList(outcomes.length);
+			for(ServiceResult outcome : outcomes)
+				result.add(outcome);
+			return result;
+		}
+
+		/**
+		 * Parse the response of one call with its service.
+		 * @return A success or failure result.
+		 */
+		private static ServiceResult parsePart(Service service, BatchPart part)
+		{
+			if(part.getStatus() != HttpStatus.SC_OK)
+				return AsyncServiceCallTask.errorResult("Service Failed: "+part.getStatus()+": "+service.getUrl(), part.getStatus());
+			try
+			{
+				Object result = service.parseBody(new ByteArrayInputStream(part.getBody() == null ? new byte[0] : part.getBody()), null);
+				ServiceResultCache.getDefault().put(service, result);
+				return AsyncServiceCallTask.successResult(result);
+			}
+			catch (IllegalStateException e)
+			{
+				return AsyncServiceCallTask.errorResult("IllegalStateException: "+e.getMessage(), AsyncServiceCallTask.ERR_CODE_PARSE_ILLEGAL_STATE);
+			}
+			catch (IOException e)
+			{
+				return AsyncServiceCallTask.errorResult("IOException: "+e.getMessage(), AsyncServiceCallTask.ERR_CODE_PARSE_IOEXCEPTION);
+			}
+			catch (XmlPullParserException e)
+			{
+				return AsyncServiceCallTask.errorResult("XmlPullParserException: "+e.getMessage(), AsyncServiceCallTask.ERR_CODE_XML_PULLPARSER_EXCEPTION);
+			}
+		}
+
+		private static String getMethod(int callType)
+		{
+			switch(callType)
+			{
+				case CALL_TYPE_POST:
+					return "POST";
+				case CALL_TYPE_PUT:
+					return "PUT";
+				case CALL_TYPE_DELETE:
+					return "DELETE";
+				default:
+					return "GET";
+			}
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import android.os.Handler;
+
+/**
+ * Handle to a service call submitted to a {@link ServiceExecutor}. Use it to cancel the call.
+ * <br/>If the call was coalesced with an identical in-flight call then cancelling it only stops this handle's listener from
+ * receiving the result; the shared call is cancelled when all of its listeners have cancelled.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.2
+ * @updates
+ * 1.2 {@link #getTask()} no longer hands out the task shared by coalesced subscribers.<br/>
+ * 1.1 the executor can requeue the call with a higher priority.<br/>
+ */
+public class ServiceCall
+{
+	//Task making the call, null if this is a subscriber of a coalesced call.
+	private final AsyncServiceCallTask mTask;
+	//Shared call this handle subscribes to, null if this handle owns its task.
+	private final CoalescedCall mCoalescedCall;
+	//Listener of a coalesced subscriber.
+	private final AsyncServiceListener mListener;
+	//true if a coalesced subscriber or a cached delivery was cancelled.
+	private boolean mCancelled;
+	//Handler a cached result is posted to, null if the result was not cached.
+	private final Handler mDeliveryHandler;
+	//Delivers a cached result.
+	private final Runnable mDelivery;
+	//true once a cached result was delivered.
+	private boolean mDelivered;
+	//Executor the call is queued on, null if it was not queued.
+	private ServiceExecutor mExecutor;
+	//The queued work of the task.
+	private ServiceExecutor.PrioritizedCall mQueuedCall;
+
+	ServiceCall(AsyncServiceCallTask task)
+	{
+		mTask = task;
+		mCoalescedCall = null;
+		mListener = null;
+		mDeliveryHandler = null;
+		mDelivery = null;
+	}
+	
+	ServiceCall(CoalescedCall coalescedCall, AsyncServiceListener listener)
+	{
+		mTask = null;
+		mCoalescedCall = coalescedCall;
+		mListener = listener;
+		mDeliveryHandler = null;
+		mDelivery = null;
+	}
+	
+	/**
+	 * Create a call that delivers an already available result on a handler.
+	 * @param handler Handler of the main thread.
+	 * @param listener Listener to deliver the result to.
+	 * @param success Success result to deliver.
+	 */
+	ServiceCall(Handler handler, final AsyncServiceListener listener, final ServiceResult success)
+	{
+		mTask = null;
+		mCoalescedCall = null;
+		mListener = listener;
+		mDeliveryHandler = handler;
+		mDelivery = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				mDelivered = true;
+				AsyncServiceCallTask.deliver(listener, success);
+			}
+		};
+		mDeliveryHandler.post(mDelivery);
+	}
+	
+	/**
+	 * Get the listener of a coalesced subscriber.
+	 */
+	AsyncServiceListener getListener()
+	{
+		return mListener;
+	}
+
+	/**
+	 * Remember where the call is queued so it can be removed from the queue when it is cancelled.
+	 */
+	void setQueued(ServiceExecutor executor, ServiceExecutor.PrioritizedCall queuedCall)
+	{
+		mExecutor = executor;
+		mQueuedCall = queuedCall;
+	}
+
+	/**
+	 * Get the queued work of the task.
+	 * @return the queued work, or null if it was not queued.
+	 */
+	ServiceExecutor.PrioritizedCall getQueuedCall()
+	{
+		return mQueuedCall;
+	}
+
+	/**
+	 * Cancel the call. A queued call is removed from the queue, a running call is aborted, see {@link AsyncServiceCallTask#cancelCall()}.
+	 * The listener will not receive a success or failure callback after a call is cancelled.
+	 * @return false if the call could not be cancelled, typically because it has already completed.
+	 */
+	public boolean cancel()
+	{
+		if(mCoalescedCall != null)
+		{
+			mCancelled = mCoalescedCall.unsubscribe(this) || mCancelled;
+			return mCancelled;
+		}
+		if(mDelivery != null)
+		{
+			if(mDelivered)
+				return false;
+			mDeliveryHandler.removeCallbacks(mDelivery);
+			mCancelled = true;
+			return true;
+		}
+		boolean cancelled = mTask.cancelCall();
+		if(cancelled && mExecutor != null)
+			mExecutor.remove(mQueuedCall);
+		return cancelled;
+	}
+
+	/**
+	 * Check if this call has been cancelled.
+	 * @return true if it was cancelled.
+	 */
+	public boolean isCancelled()
+	{
+		if(mTask == null)
+			return mCancelled;
+		return mTask.isCancelled();
+	}
+
+	/**
+	 * Get the task that makes this call. Use {@link #cancel()} rather than cancelling the task.
+	 * @return the task, or null if the result came from the {@link ServiceResultCache} or the call is shared with other
+	 * listeners, since the task of a shared call belongs to all of them.
+	 */
+	public AsyncServiceCallTask getTask()
+	{
+		return mTask;
+	}
+}
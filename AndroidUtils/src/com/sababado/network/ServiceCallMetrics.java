@@ -0,0 +1,189 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+/**
+ * Timings and outcome of a single service call, reported to {@link ServiceMetricsListener}s when the call completes.
+ * Times are in milliseconds, a time that was not measured is -1.
+ * <br/>The connect time is only measured with the {@link ServiceHttpClient#getSharedClient() default shared client} and not for hedged calls,
+ * for other calls the time to first byte includes connecting.
+ * Because a response is parsed while it is downloaded, the download time is the time spent waiting for data while parsing and the parse time is the rest.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public class ServiceCallMetrics
+{
+	/**
+	 * The call completed successfully.
+	 */
+	public static final int OUTCOME_SUCCESS = 0;
+	/**
+	 * The call failed, see {@link #getErrorCode()}.
+	 */
+	public static final int OUTCOME_FAILURE = 1;
+	/**
+	 * The call was cancelled.
+	 */
+	public static final int OUTCOME_CANCELLED = 2;
+
+	/**
+	 * The response came from the network.
+	 */
+	public static final int SOURCE_NETWORK = 0;
+	/**
+	 * The parsed result came from the {@link ServiceResultCache}.
+	 */
+	public static final int SOURCE_RESULT_CACHE = 1;
+	/**
+	 * The response came from the {@link ServiceResponseCache}, either fresh or revalidated.
+	 */
+	public static final int SOURCE_RESPONSE_CACHE = 2;
+
+	String mEndpoint;
+	int mCallType;
+	long mQueueWait = -1;
+	long mConnectTime = -1;
+	long mTimeToFirstByte = -1;
+	long mDownloadTime = -1;
+	long mParseTime = -1;
+	long mTotalTime = -1;
+	int mAttempts;
+	int mOutcome = OUTCOME_CANCELLED;
+	int mErrorCode;
+	int mSource = SOURCE_NETWORK;
+
+	ServiceCallMetrics()
+	{
+	}
+
+	/**
+	 * Get the endpoint of the call, its host and path without the query string.
+	 * @return the endpoint
+	 */
+	public String getEndpoint()
+	{
+		return mEndpoint;
+	}
+
+	/**
+	 * Get the call type of the service.
+	 * @return A Service.CALL_TYPE_* constant.
+	 */
+	public int getCallType()
+	{
+		return mCallType;
+	}
+
+	/**
+	 * Get the time the call waited to start after it was executed, for example in the queue of a {@link ServiceExecutor}.
+	 * @return the queue wait
+	 */
+	public long getQueueWait()
+	{
+		return mQueueWait;
+	}
+
+	/**
+	 * Get the time it took to get a connection to the server for the attempt that got the response, including the TCP and TLS handshakes of a new connection.
+	 * @return the connect time
+	 */
+	public long getConnectTime()
+	{
+		return mConnectTime;
+	}
+
+	/**
+	 * Get the time from sending the request of the attempt that got the response until its headers were received.
+	 * @return the time to first byte
+	 */
+	public long getTimeToFirstByte()
+	{
+		return mTimeToFirstByte;
+	}
+
+	/**
+	 * Get the time spent waiting for the response body.
+	 * @return the download time
+	 */
+	public long getDownloadTime()
+	{
+		return mDownloadTime;
+	}
+
+	/**
+	 * Get the time spent in {@link Service#parseResults(java.io.InputStream)}, not counting the download time.
+	 * @return the parse time
+	 */
+	public long getParseTime()
+	{
+		return mParseTime;
+	}
+
+	/**
+	 * Get the time from executing the call until it completed.
+	 * @return the total time
+	 */
+	public long getTotalTime()
+	{
+		return mTotalTime;
+	}
+
+	/**
+	 * Get the number of requests made, 0 if the call was served from a cache without a request.
+	 * @return the number of attempts
+	 */
+	public int getAttempts()
+	{
+		return mAttempts;
+	}
+
+	/**
+	 * Get how the call ended.
+	 * @return An OUTCOME_* constant.
+	 */
+	public int getOutcome()
+	{
+		return mOutcome;
+	}
+
+	/**
+	 * Get the error code of a failed call.
+	 * @return An AsyncServiceCallTask.ERR_CODE_* constant or an HTTP status code, 0 if the call did not fail.
+	 */
+	public int getErrorCode()
+	{
+		return mErrorCode;
+	}
+
+	/**
+	 * Get where the result came from.
+	 * @return A SOURCE_* constant.
+	 */
+	public int getSource()
+	{
+		return mSource;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "ServiceCallMetrics [endpoint=" + mEndpoint + ", outcome=" + mOutcome + ", errorCode=" + mErrorCode + ", source=" + mSource
+				+ ", attempts=" + mAttempts + ", queueWait=" + mQueueWait + ", connect=" + mConnectTime + ", ttfb=" + mTimeToFirstByte
+				+ ", download=" + mDownloadTime + ", parse=" + mParseTime + ", total=" + mTotalTime + "]";
+	}
+}
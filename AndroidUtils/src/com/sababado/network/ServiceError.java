@@ -0,0 +1,72 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+/**
+ * Why a service call failed. Typed listeners receive this instead of a message and code pair.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public final class ServiceError
+{
+	private final int mCode;
+	private final String mMessage;
+
+	/**
+	 * Create an error.
+	 * @param code An AsyncServiceCallTask.ERR_CODE_* constant or the HTTP status code of the response.
+	 * @param message The fail message.
+	 */
+	public ServiceError(int code, String message)
+	{
+		mCode = code;
+		mMessage = message;
+	}
+
+	/**
+	 * Get the error code.
+	 * @return An AsyncServiceCallTask.ERR_CODE_* constant or the HTTP status code of the response.
+	 */
+	public int getCode()
+	{
+		return mCode;
+	}
+
+	/**
+	 * Get the fail message.
+	 */
+	public String getMessage()
+	{
+		return mMessage;
+	}
+
+	/**
+	 * Check if the server answered with an error status.
+	 * @return true if {@link #getCode()} is an HTTP status code, false if the call failed before or after the response.
+	 */
+	public boolean isHttpError()
+	{
+		return mCode >= 100;
+	}
+
+	@Override
+	public String toString()
+	{
+		return mCode+": "+mMessage;
+	}
+}
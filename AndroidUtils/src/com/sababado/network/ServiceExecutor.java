@@ -0,0 +1,663 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.sababado.utils.ConnectivityMonitor;
+import com.sababado.utils.UtilDevice;
+
+/**
+ * <p>Runs {@link AsyncServiceCallTask}s on a dedicated, bounded pool of worker threads instead of the default {@link android.os.AsyncTask} executor.
+ * Since Honeycomb {@link android.os.AsyncTask#execute(Object...)} runs tasks one at a time, so a single slow endpoint holds up every other call in the app.</p>
+ * <p>Queued calls are ordered by priority ({@link #PRIORITY_USER_VISIBLE} before {@link #PRIORITY_BACKGROUND}) and then by submission order.
+ * The number of queued calls is limited; when the queue is full the executor's rejection policy decides which call fails with
+ * {@link AsyncServiceCallTask#ERR_CODE_REJECTED}.</p>
+ * <p>Identical {@link Service#CALL_TYPE_GET} calls (see {@link Service#getRequestKey()}) submitted while one is already in flight are coalesced:
+ * the request is made and parsed once and the result is delivered to every listener. Listeners of a coalesced call receive the same result
+ * object and should treat it as read only. The shared call runs with the highest priority of its listeners, so a user visible call that joins
+ * a prefetch or background call moves it ahead in the queue. Coalescing can be turned off with {@link #setCoalescingEnabled(boolean)}.</p>
+ * <p>Results found in the {@link ServiceResultCache} are posted to the listener right away without queueing a call.</p>
+ * <p>Calls whose {@link Service#setNetworkPolicy(int) network policy} does not allow the active network, for example calls limited to Wi-Fi
+ * while on a mobile network, are held and queued once the {@link ConnectivityMonitor} reports an allowed network.</p>
+ * <p>Calls whose host or service class has a {@link RateLimit} in the {@link RateLimiter#getDefault() default rate limiter} wait until the limit
+ * allows them to start, see {@link #getLimitedCount()}.</p>
+ * <p><b>Must be used from the main thread.</b> Before Honeycomb {@link android.os.AsyncTask} already runs tasks in parallel and
+ * does not allow a custom executor, so on those devices calls are simply executed and priorities and queue limits are ignored.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.6
+ * @updates
+ * 1.6 the queue must hold at least 1 call, a queue depth of 0 rejected every call.<br/>
+ * 1.5 a coalesced call is raised to the priority of its most urgent subscriber, and counts as user visible once one subscribes.<br/>
+ * 1.4 added {@link #PRIORITY_PREFETCH} and tracking of user visible calls in flight for the {@link ServicePrefetcher}.<br/>
+ * 1.3 calls over their {@link RateLimit} wait in the executor until the limit allows them.<br/>
+ * 1.2 added {@link #submit(TypedServiceListener, TypedService, Context, int)} for typed results.<br/>
+ * 1.1 calls are held until their service's network policy allows the active network.<br/>
+ */
+public class ServiceExecutor
+{
+	/**
+	 * Priority for calls whose results the user is waiting on.
+	 */
+	public static final int PRIORITY_USER_VISIBLE = 0;
+	/**
+	 * Priority for calls like background refreshes that can wait for user visible calls.
+	 */
+	public static final int PRIORITY_BACKGROUND = 1;
+	/**
+	 * Priority for speculative calls whose results may never be shown, see {@link ServicePrefetcher}.
+	 */
+	public static final int PRIORITY_PREFETCH = 2;
+
+	/**
+	 * Rejection policy: when the queue is full the newly submitted call fails.
+	 */
+	public static final int REJECT_NEW = 0;
+	/**
+	 * Rejection policy: when the queue is full the lowest priority, most recently queued call fails to make room for the new call.
+	 * If every queued call has a higher priority than the new call then the new call fails instead.
+	 */
+	public static final int REJECT_LOWEST_PRIORITY = 1;
+
+	/**
+	 * Default number of worker threads.
+	 */
+	public static final int DEFAULT_POOL_SIZE = 4;
+	/**
+	 * Default maximum number of calls waiting for a worker thread.
+	 */
+	public static final int DEFAULT_MAX_QUEUE_DEPTH = 64;
+
+	//Time in seconds an idle worker thread is kept alive.
+	private static final int KEEP_ALIVE = 30;
+
+	private static ServiceExecutor sDefault;
+
+	//Pool of worker threads, ordered by priority.
+	private final ThreadPoolExecutor mPool;
+	//Maximum number of calls waiting for a worker thread.
+	private final int mMaxQueueDepth;
+	//Which call fails when the queue is full.
+	private final int mRejectionPolicy;
+	//Keeps calls with the same priority in submission order.
+	private final AtomicLong mSequence = new AtomicLong();
+	//Used to deliver rejections on the main thread.
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+	//In-flight GET calls by request key, only used from the main thread.
+	private final HashMap<String, CoalescedCall> mInFlight = new HashMap<String, CoalescedCall>();
+	//true if identical GET calls should share one request.
+	private boolean mCoalescingEnabled = true;
+	//Calls waiting for a network their service's policy allows, only used from the main thread.
+	private final ArrayList<DeferredCall> mDeferred = new ArrayList<DeferredCall>();
+	//Calls waiting for their rate limit in priority order, only used from the main thread.
+	private final ArrayList<DeferredCall> mLimited = new ArrayList<DeferredCall>();
+	//Number of user visible calls that have not finished, only used from the main thread.
+	private int mUserCallsInFlight;
+	//Told when the last user visible call finishes, only used from the main thread.
+	private final ArrayList<Runnable> mIdleListeners = new ArrayList<Runnable>();
+	//Counts a user visible call as finished.
+	private final Runnable mUserCallFinished = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			if(--mUserCallsInFlight == 0)
+			{
+				for(Runnable listener : new ArrayList<Runnable>(mIdleListeners))
+					listener.run();
+			}
+		}
+	};
+	//Tries the calls waiting for their rate limit again.
+	private final Runnable mDispatchLimited = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			dispatchLimited();
+		}
+	};
+	//Dispatches deferred calls when the network changes, registered while calls are deferred.
+	private final ConnectivityMonitor.OnConnectivityChangedListener mConnectivityListener = new ConnectivityMonitor.OnConnectivityChangedListener()
+	{
+		@Override
+		public void onConnectivityChanged(ConnectivityMonitor monitor)
+		{
+			dispatchDeferred(monitor);
+		}
+	};
+
+	/**
+	 * Create a new executor.
+	 * @param poolSize Number of calls that can run at the same time.
+	 * @param maxQueueDepth Maximum number of calls waiting for a worker thread, at least 1. Calls are handed to the pool through its queue,
+	 * so even an idle worker takes its call from the queue.
+	 * @param rejectionPolicy {@link #REJECT_NEW} or {@link #REJECT_LOWEST_PRIORITY}
+	 */
+	public ServiceExecutor(int poolSize, int maxQueueDepth, int rejectionPolicy)
+	{
+		if(poolSize < 1 || maxQueueDepth < 1)
+			throw new IllegalArgumentException("The pool size and the queue depth must be at least 1.");
+		if(rejectionPolicy != REJECT_NEW && rejectionPolicy != REJECT_LOWEST_PRIORITY)
+			throw new IllegalArgumentException("Inappropriate use of rejection policy. Use a ServiceExecutor.REJECT_* constant");
+		mMaxQueueDepth = maxQueueDepth;
+		mRejectionPolicy = rejectionPolicy;
+		mPool = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE, TimeUnit.SECONDS,
+				new PriorityBlockingQueue<Runnable>(), new ServiceThreadFactory());
+		mPool.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Get the executor shared by the application. It is created with the default pool size, queue depth and {@link #REJECT_LOWEST_PRIORITY}.
+	 * @return the default executor.
+	 */
+	public static synchronized ServiceExecutor getDefault()
+	{
+		if(sDefault == null)
+			sDefault = new ServiceExecutor(DEFAULT_POOL_SIZE, DEFAULT_MAX_QUEUE_DEPTH, REJECT_LOWEST_PRIORITY);
+		return sDefault;
+	}
+
+	/**
+	 * Replace the executor shared by the application.
+	 * @param executor New default executor.
+	 */
+	public static synchronized void setDefault(ServiceExecutor executor)
+	{
+		sDefault = executor;
+	}
+
+	/**
+	 * Submit a user visible service call.
+	 * @param asyncServiceListener Callback listener for the call
+	 * @param service Service to execute
+	 * @param ctx Invoking context
+	 * @return A handle that can be used to cancel the call.
+	 */
+	public ServiceCall submit(AsyncServiceListener asyncServiceListener, Service service, Context ctx)
+	{
+		return submit(asyncServiceListener, service, ctx, PRIORITY_USER_VISIBLE);
+	}
+
+	/**
+	 * Submit a service call with a given priority.
+	 * @param asyncServiceListener Callback listener for the call
+	 * @param service Service to execute
+	 * @param ctx Invoking context
+	 * @param priority Use a ServiceExecutor.PRIORITY_* constant
+	 * @return A handle that can be used to cancel the call.
+	 */
+	public ServiceCall submit(AsyncServiceListener asyncServiceListener, Service service, Context ctx, int priority)
+	{
+		Object cachedResult = ServiceResultCache.getDefault().get(service);
+		if(cachedResult != null)
+			return new ServiceCall(mMainHandler, asyncServiceListener, AsyncServiceCallTask.successResult(cachedResult));
+		
+		if(!mCoalescingEnabled || service.getCallType() != Service.CALL_TYPE_GET)
+			return execute(new AsyncServiceCallTask(asyncServiceListener, service, ctx), priority);
+		
+		String key = service.getRequestKey();
+		CoalescedCall coalescedCall = mInFlight.get(key);
+		if(coalescedCall != null)
+		{
+			if(priority < coalescedCall.getPriority())
+				raisePriority(coalescedCall, priority);
+			return coalescedCall.subscribe(asyncServiceListener);
+		}
+		
+		//first request for this key, make the call on behalf of everyone who asks for it while it is in flight.
+		coalescedCall = new CoalescedCall(key, mInFlight);
+		mInFlight.put(key, coalescedCall);
+		ServiceCall subscriber = coalescedCall.subscribe(asyncServiceListener);
+		coalescedCall.setPriority(priority);
+		coalescedCall.setCall(execute(new AsyncServiceCallTask(coalescedCall, service, ctx), priority));
+		return subscriber;
+	}
+	
+	/**
+	 * Raise the priority of a shared call because a more urgent subscriber joined it. Wherever the call waits it moves ahead,
+	 * and it counts as a user visible call from now on if the new priority is {@link #PRIORITY_USER_VISIBLE}.
+	 */
+	private void raisePriority(CoalescedCall coalescedCall, int priority)
+	{
+		ServiceCall call = coalescedCall.getCall();
+		if(call == null || call.getTask().isCancelled())
+			return;
+		coalescedCall.setPriority(priority);
+		if(priority == PRIORITY_USER_VISIBLE)
+		{
+			mUserCallsInFlight++;
+			call.getTask().addOnFinished(mUserCallFinished);
+		}
+		for(DeferredCall deferred : mDeferred)
+		{
+			if(deferred.mCall == call)
+				deferred.mPriority = priority;
+		}
+		for(int i=0; i<mLimited.size(); i++)
+		{
+			if(mLimited.get(i).mCall == call)
+			{
+				DeferredCall limited = mLimited.remove(i);
+				limited.mPriority = priority;
+				insertLimited(limited);
+				dispatchLimited();
+				break;
+			}
+		}
+		requeue(call, priority);
+	}
+	
+	/**
+	 * Move a call waiting for a worker thread to its new priority. Nothing happens if it is not waiting in the queue.
+	 */
+	private synchronized void requeue(ServiceCall call, int priority)
+	{
+		PrioritizedCall queued = call.getQueuedCall();
+		if(queued == null || !mPool.remove(queued))
+			return;
+		//keeps its place among calls of the new priority that were queued after it.
+		PrioritizedCall raised = new PrioritizedCall(queued.mWork, queued.mTask, priority, queued.mSequence);
+		call.setQueued(this, raised);
+		mPool.execute(raised);
+	}
+	
+	/**
+	 * Submit a user visible call of a typed service. The listener gets the parsed result as it is, see {@link TypedServiceListener}.
+	 * @param typedServiceListener Callback listener for the call
+	 * @param service Service to execute
+	 * @param ctx Invoking context
+	 * @return A handle that can be used to cancel the call.
+	 */
+	public <T> ServiceCall submit(TypedServiceListener<T> typedServiceListener, TypedService<? extends T> service, Context ctx)
+	{
+		return submit(typedServiceListener, service, ctx, PRIORITY_USER_VISIBLE);
+	}
+
+	/**
+	 * Submit a call of a typed service with a given priority. The listener gets the parsed result as it is, see {@link TypedServiceListener}.
+	 * @param typedServiceListener Callback listener for the call
+	 * @param service Service to execute
+	 * @param ctx Invoking context
+	 * @param priority Use a ServiceExecutor.PRIORITY_* constant
+	 * @return A handle that can be used to cancel the call.
+	 */
+	public <T> ServiceCall submit(TypedServiceListener<T> typedServiceListener, TypedService<? extends T> service, Context ctx, int priority)
+	{
+		return submit(new TypedListenerAdapter<T>(typedServiceListener), service, ctx, priority);
+	}
+	
+	/**
+	 * Turn coalescing of identical in-flight GET calls on or off. It is on by default.
+	 * @param coalescingEnabled true to coalesce identical calls.
+	 */
+	public void setCoalescingEnabled(boolean coalescingEnabled)
+	{
+		mCoalescingEnabled = coalescingEnabled;
+	}
+
+	/**
+	 * Execute an already created task with a given priority.
+	 * @param task Task to execute. It must not have been executed yet.
+	 * @param priority Use a ServiceExecutor.PRIORITY_* constant
+	 * @return A handle that can be used to cancel the call.
+	 */
+	public ServiceCall execute(AsyncServiceCallTask task, int priority)
+	{
+		ServiceCall call = new ServiceCall(task);
+		if(priority == PRIORITY_USER_VISIBLE)
+		{
+			mUserCallsInFlight++;
+			task.addOnFinished(mUserCallFinished);
+		}
+		ConnectivityMonitor monitor = ConnectivityMonitor.getInstance(task.getContext());
+		if(!monitor.isAllowed(task.getService().getNetworkPolicy()))
+		{
+			//hold the call until the network changes to one the service may use.
+			if(mDeferred.isEmpty())
+				monitor.addListener(mConnectivityListener);
+			mDeferred.add(new DeferredCall(call, priority));
+			return call;
+		}
+		admit(call, priority);
+		return call;
+	}
+	
+	/**
+	 * Check if no {@link #PRIORITY_USER_VISIBLE user visible} call is queued, held or running.
+	 * @return true if the executor is idle as far as the user is concerned.
+	 */
+	public boolean isIdle()
+	{
+		return mUserCallsInFlight == 0;
+	}
+	
+	/**
+	 * Add a listener that is run each time the last user visible call in flight finishes.
+	 */
+	void addIdleListener(Runnable listener)
+	{
+		if(!mIdleListeners.contains(listener))
+			mIdleListeners.add(listener);
+	}
+	
+	/**
+	 * Remove an idle listener.
+	 */
+	void removeIdleListener(Runnable listener)
+	{
+		mIdleListeners.remove(listener);
+	}
+	
+	/**
+	 * Get the number of calls waiting for their {@link RateLimit} to allow them.
+	 * @return the number of rate limited calls.
+	 */
+	public int getLimitedCount()
+	{
+		return mLimited.size();
+	}
+	
+	/**
+	 * Get the number of calls held until a network their {@link Service#setNetworkPolicy(int) policy} allows is available.
+	 * @return the number of deferred calls.
+	 */
+	public int getDeferredCount()
+	{
+		return mDeferred.size();
+	}
+	
+	/**
+	 * Dispatch the deferred calls the active network now allows. Cancelled calls are dropped.
+	 */
+	private void dispatchDeferred(ConnectivityMonitor monitor)
+	{
+		Iterator<DeferredCall> iterator = mDeferred.iterator();
+		while(iterator.hasNext())
+		{
+			DeferredCall deferred = iterator.next();
+			AsyncServiceCallTask task = deferred.mCall.getTask();
+			if(task.isCancelled())
+				iterator.remove();
+			else if(monitor.isAllowed(task.getService().getNetworkPolicy()))
+			{
+				iterator.remove();
+				admit(deferred.mCall, deferred.mPriority);
+			}
+		}
+		if(mDeferred.isEmpty())
+			monitor.removeListener(mConnectivityListener);
+	}
+	
+	/**
+	 * Dispatch a call if its rate limit allows it, otherwise hold it until it does.
+	 */
+	private void admit(ServiceCall call, int priority)
+	{
+		if(RateLimiter.getDefault().getLimit(call.getTask().getService()) == null)
+		{
+			dispatch(call, priority);
+			return;
+		}
+		insertLimited(new DeferredCall(call, priority));
+		dispatchLimited();
+	}
+	
+	/**
+	 * Add a call to the calls waiting for their rate limit, behind the waiting calls of the same or a higher priority.
+	 */
+	private void insertLimited(DeferredCall limited)
+	{
+		int index = mLimited.size();
+		while(index > 0 && mLimited.get(index - 1).mPriority > limited.mPriority)
+			index--;
+		mLimited.add(index, limited);
+	}
+	
+	/**
+	 * Dispatch the rate limited calls their limits now allow and schedule the next try. Cancelled calls are dropped.
+	 */
+	private void dispatchLimited()
+	{
+		mMainHandler.removeCallbacks(mDispatchLimited);
+		RateLimiter limiter = RateLimiter.getDefault();
+		long nextTry = RateLimit.WAIT_FOR_RELEASE;
+		Iterator<DeferredCall> iterator = mLimited.iterator();
+		while(iterator.hasNext())
+		{
+			DeferredCall limited = iterator.next();
+			AsyncServiceCallTask task = limited.mCall.getTask();
+			if(task.isCancelled())
+			{
+				iterator.remove();
+				continue;
+			}
+			final RateLimit limit = limiter.getLimit(task.getService());
+			long wait = limit == null ? 0 : limit.tryAcquire();
+			if(wait == 0)
+			{
+				iterator.remove();
+				if(limit != null)
+				{
+					task.addOnFinished(new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							limit.release();
+							dispatchLimited();
+						}
+					});
+				}
+				dispatch(limited.mCall, limited.mPriority);
+			}
+			else
+				nextTry = Math.min(nextTry, wait);
+		}
+		//calls that wait for a running call are tried again when it finishes.
+		if(nextTry != RateLimit.WAIT_FOR_RELEASE)
+			mMainHandler.postDelayed(mDispatchLimited, nextTry);
+	}
+	
+	/**
+	 * Hand a call's task to the pool.
+	 */
+	private void dispatch(final ServiceCall call, final int priority)
+	{
+		final AsyncServiceCallTask task = call.getTask();
+		if(UtilDevice.IS_PRE_HONEYCOMB)
+		{
+			task.execute();
+			return;
+		}
+		//AsyncTask hands its work to this executor right away, wrap it so it can be ordered by priority.
+		task.executeOnExecutor(new Executor()
+		{
+			@Override
+			public void execute(Runnable command)
+			{
+				PrioritizedCall prioritizedCall = new PrioritizedCall(command, task, priority, mSequence.getAndIncrement());
+				call.setQueued(ServiceExecutor.this, prioritizedCall);
+				enqueue(prioritizedCall);
+			}
+		});
+	}
+
+	/**
+	 * Get the number of calls waiting for a worker thread.
+	 * @return the queue depth.
+	 */
+	public int getQueueDepth()
+	{
+		return mPool.getQueue().size();
+	}
+
+	/**
+	 * Get the number of calls currently running.
+	 * @return the number of busy worker threads.
+	 */
+	public int getActiveCount()
+	{
+		return mPool.getActiveCount();
+	}
+
+	/**
+	 * Queue a call, applying the rejection policy if the queue is full.
+	 * @param call Call to queue.
+	 */
+	private synchronized void enqueue(PrioritizedCall call)
+	{
+		if(mPool.getQueue().size() >= mMaxQueueDepth)
+		{
+			PrioritizedCall rejected = call;
+			if(mRejectionPolicy == REJECT_LOWEST_PRIORITY)
+			{
+				PrioritizedCall lowest = findLowestPriority();
+				if(lowest != null && lowest.mPriority >= call.mPriority && mPool.remove(lowest))
+					rejected = lowest;
+			}
+			reject(rejected);
+			if(rejected == call)
+				return;
+		}
+		mPool.execute(call);
+	}
+
+	/**
+	 * Find the queued call with the lowest priority. Of calls with equal priority the most recently queued call is returned.
+	 * @return The lowest priority call, or null if nothing is queued.
+	 */
+	private PrioritizedCall findLowestPriority()
+	{
+		PrioritizedCall lowest = null;
+		for(Runnable r : mPool.getQueue())
+		{
+			PrioritizedCall queued = (PrioritizedCall)r;
+			if(lowest == null || queued.compareTo(lowest) > 0)
+				lowest = queued;
+		}
+		return lowest;
+	}
+
+	/**
+	 * Cancel a call that was rejected and let its listener know on the main thread.
+	 * @param rejected Call that will not run.
+	 */
+	private void reject(PrioritizedCall rejected)
+	{
+		final AsyncServiceCallTask task = rejected.mTask;
+		task.cancel(false);
+		mMainHandler.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				AsyncServiceCallTask.deliver(task.getAsyncServiceListener(),
+						AsyncServiceCallTask.errorResult("Too many service calls are waiting, please try again later.", AsyncServiceCallTask.ERR_CODE_REJECTED));
+			}
+		});
+	}
+
+	/**
+	 * Remove a queued call so it no longer counts towards the queue depth.
+	 * @param call Call to remove.
+	 */
+	void remove(PrioritizedCall call)
+	{
+		mPool.remove(call);
+	}
+
+	/**
+	 * A call held until the network allows it.
+	 */
+	private static class DeferredCall
+	{
+		private final ServiceCall mCall;
+		private int mPriority;
+
+		DeferredCall(ServiceCall call, int priority)
+		{
+			mCall = call;
+			mPriority = priority;
+		}
+	}
+
+	/**
+	 * Wraps the work of an {@link AsyncServiceCallTask} so that it can be ordered in the queue.
+	 */
+	static class PrioritizedCall implements Runnable, Comparable<PrioritizedCall>
+	{
+		private final Runnable mWork;
+		private final AsyncServiceCallTask mTask;
+		private final int mPriority;
+		private final long mSequence;
+
+		PrioritizedCall(Runnable work, AsyncServiceCallTask task, int priority, long sequence)
+		{
+			mWork = work;
+			mTask = task;
+			mPriority = priority;
+			mSequence = sequence;
+		}
+
+		@Override
+		public void run()
+		{
+			mWork.run();
+		}
+
+		@Override
+		public int compareTo(PrioritizedCall another)
+		{
+			if(mPriority != another.mPriority)
+				return mPriority < another.mPriority ? -1 : 1;
+			if(mSequence != another.mSequence)
+				return mSequence < another.mSequence ? -1 : 1;
+			return 0;
+		}
+	}
+
+	/**
+	 * Names worker threads and runs them at background priority.
+	 */
+	private static class ServiceThreadFactory implements ThreadFactory
+	{
+		private final AtomicInteger mCount = new AtomicInteger(1);
+
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread thread = new Thread(r, "ServiceExecutor #"+mCount.getAndIncrement());
+			thread.setPriority(Thread.NORM_PRIORITY - 1);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.HTTP;
+
+/**
+ * <p>Holds the process wide {@link HttpClient} that every {@link AsyncServiceCallTask} uses by default.
+ * The client is backed by a thread safe, pooled connection manager so that calls to the same host reuse kept-alive connections
+ * instead of paying for a new TCP (and TLS) handshake on every call.</p>
+ * <p>The pool limits can be changed with {@link #configure(int, int, long)} <b>before</b> the first service call is made.
+ * A completely different client can be injected with {@link #setSharedClient(HttpClient)}, or per task with {@link AsyncServiceCallTask#setHttpClient(HttpClient)}.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.1
+ * @updates
+ * 1.1 the default client notes connect and first byte times for {@link ServiceMetrics}.<br/>
+ */
+public class ServiceHttpClient
+{
+	/**
+	 * Default maximum number of connections kept in the pool across all hosts.
+	 */
+	public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 20;
+	/**
+	 * Default maximum number of connections kept in the pool for a single host (route).
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 6;
+	/**
+	 * Default time in milliseconds a pooled connection can sit idle before it is closed.
+	 */
+	public static final long DEFAULT_IDLE_TIMEOUT = 30000;
+
+	private static int sMaxTotalConnections = DEFAULT_MAX_TOTAL_CONNECTIONS;
+	private static int sMaxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+	private static long sIdleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+	//The client handed out to the service call tasks.
+	private static HttpClient sSharedClient;
+	//true if sSharedClient was created here and not injected.
+	private static boolean sIsDefaultClient;
+	//Periodically closes idle connections of the default client.
+	private static Timer sIdleConnectionTimer;
+
+	private ServiceHttpClient()
+	{
+	}
+
+	/**
+	 * Configure the pool of the default shared client. This must be called before the shared client is first used.
+	 * @param maxTotalConnections Maximum number of pooled connections across all hosts.
+	 * @param maxConnectionsPerRoute Maximum number of pooled connections to a single host.
+	 * @param idleTimeout Time in milliseconds a connection can be idle before it is evicted from the pool. Use 0 or less to never evict idle connections.
+	 * @throws IllegalStateException if the default shared client has already been created.
+	 */
+	public static synchronized void configure(int maxTotalConnections, int maxConnectionsPerRoute, long idleTimeout)
+	{
+		if(sIsDefaultClient && sSharedClient != null)
+			throw new IllegalStateException("The shared HttpClient is already in use. ServiceHttpClient.configure must be called before the first service call.");
+		if(maxTotalConnections < 1 || maxConnectionsPerRoute < 1)
+			throw new IllegalArgumentException("Connection limits must be at least 1.");
+		sMaxTotalConnections = maxTotalConnections;
+		sMaxConnectionsPerRoute = maxConnectionsPerRoute;
+		sIdleTimeout = idleTimeout;
+	}
+
+	/**
+	 * Get the shared client, creating the default pooled client if one has not been created or injected yet.
+	 * @return The process wide {@link HttpClient}.
+	 */
+	public static synchronized HttpClient getSharedClient()
+	{
+		if(sSharedClient == null)
+		{
+			sSharedClient = createDefaultClient();
+			sIsDefaultClient = true;
+			startIdleConnectionTimer();
+		}
+		return sSharedClient;
+	}
+
+	/**
+	 * Inject the client that all {@link AsyncServiceCallTask}s should use. The injected client should be thread safe.
+	 * <br/>If the current client is the default pooled client then it is shut down.
+	 * @param client Client to share, or <code>null</code> to go back to the default pooled client.
+	 */
+	public static synchronized void setSharedClient(HttpClient client)
+	{
+		if(sIsDefaultClient)
+			shutdown();
+		sSharedClient = client;
+		sIsDefaultClient = false;
+	}
+
+	/**
+	 * Close the connections of the shared client that have been idle longer than the configured idle timeout.
+	 */
+	public static synchronized void closeIdleConnections()
+	{
+		if(sSharedClient != null && sIdleTimeout > 0)
+			sSharedClient.getConnectionManager().closeIdleConnections(sIdleTimeout, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Shut down the default shared client and release all of its connections. A new client will be created the next time one is needed.
+	 * Injected clients are not shut down, they are just released.
+	 */
+	public static synchronized void shutdown()
+	{
+		if(sIdleConnectionTimer != null)
+		{
+			sIdleConnectionTimer.cancel();
+			sIdleConnectionTimer = null;
+		}
+		if(sSharedClient != null && sIsDefaultClient)
+			sSharedClient.getConnectionManager().shutdown();
+		sSharedClient = null;
+		sIsDefaultClient = false;
+	}
+
+	/**
+	 * Build a client with a thread safe pooled connection manager using the configured limits.
+	 * @return a new pooled client.
+	 */
+	private static HttpClient createDefaultClient()
+	{
+		HttpParams params = new BasicHttpParams();
+		HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
+		HttpProtocolParams.setContentCharset(params, HTTP.UTF_8);
+		ConnManagerParams.setMaxTotalConnections(params, sMaxTotalConnections);
+		ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(sMaxConnectionsPerRoute));
+
+		SchemeRegistry schemeRegistry = new SchemeRegistry();
+		schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+		schemeRegistry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
+
+		ClientConnectionManager connectionManager = new ThreadSafeClientConnManager(params, schemeRegistry);
+		DefaultHttpClient client = new DefaultHttpClient(connectionManager, params);
+		//time connecting and waiting for the first byte for the call metrics.
+		ServiceMetrics.TimingInterceptor timingInterceptor = new ServiceMetrics.TimingInterceptor();
+		client.addRequestInterceptor(timingInterceptor);
+		client.addResponseInterceptor(timingInterceptor);
+		return client;
+	}
+
+	/**
+	 * Start a daemon timer that evicts idle connections from the default client's pool.
+	 */
+	private static void startIdleConnectionTimer()
+	{
+		if(sIdleTimeout <= 0)
+			return;
+		sIdleConnectionTimer = new Timer("ServiceHttpClient-idle", true);
+		long period = Math.max(sIdleTimeout / 2, 1000);
+		sIdleConnectionTimer.schedule(new TimerTask()
+		{
+			@Override
+			public void run()
+			{
+				closeIdleConnections();
+			}
+		}, period, period);
+	}
+}
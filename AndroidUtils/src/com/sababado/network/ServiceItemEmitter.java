@@ -0,0 +1,32 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+/**
+ * Receives items from {@link Service#parseResults(java.io.InputStream, ServiceItemEmitter)} as soon as they are parsed.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public interface ServiceItemEmitter
+{
+	/**
+	 * Hand over a parsed item. Called on the background thread doing the parsing.
+	 * @param item The item that was just parsed.
+	 */
+	public void emit(Object item);
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.protocol.HttpContext;
+
+import android.os.SystemClock;
+
+/**
+ * <p>Collects the {@link ServiceCallMetrics} of every service call. Each call is handed to the registered {@link ServiceMetricsListener}s
+ * and counted per endpoint (host and path), with a rolling histogram of the total time of the calls that went to the network.</p>
+ * <p>The histograms hold the most recent {@link #DEFAULT_SAMPLE_SIZE} calls of each endpoint unless another size is given.
+ * Read them with {@link #getPercentile(String, double)} or export all endpoints with {@link #export()}.</p>
+ * <p>Path segments that look like ids (numbers, UUIDs and long hex strings) are replaced with <code>{id}</code>, so
+ * <code>/items/123</code> and <code>/items/456</code> are the same endpoint. At most {@link #DEFAULT_MAX_ENDPOINTS} endpoints are kept
+ * unless another limit is given; when a new endpoint comes in the one used least recently is forgotten.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.1
+ * @updates
+ * 1.1 ids in paths are folded into one endpoint and the number of endpoints is limited.<br/>
+ */
+public class ServiceMetrics
+{
+	/**
+	 * Default number of recent calls per endpoint the histograms are built from.
+	 */
+	public static final int DEFAULT_SAMPLE_SIZE = 200;
+	/**
+	 * Default maximum number of endpoints statistics are kept for.
+	 */
+	public static final int DEFAULT_MAX_ENDPOINTS = 64;
+	//Replaces path segments that look like ids.
+	private static final String ID_SEGMENT = "{id}";
+
+	//Context attributes set by the timing interceptor.
+	static final String ATTR_REQUEST_SENT = "com.sababado.network.request-sent";
+	static final String ATTR_RESPONSE_RECEIVED = "com.sababado.network.response-received";
+
+	private static ServiceMetrics sDefault;
+
+	private final int mSampleSize;
+	//Statistics by endpoint, least recently used first.
+	private final LinkedHashMap<String, EndpointStats> mEndpoints;
+	private final List<ServiceMetricsListener> mListeners = new CopyOnWriteArrayList<ServiceMetricsListener>();
+
+	/**
+	 * Create a metrics registry.
+	 * @param sampleSize Number of recent calls per endpoint the histograms are built from.
+	 */
+	public ServiceMetrics(int sampleSize)
+	{
+		this(sampleSize, DEFAULT_MAX_ENDPOINTS);
+	}
+
+	/**
+	 * Create a metrics registry.
+	 * @param sampleSize Number of recent calls per endpoint the histograms are built from.
+	 * @param maxEndpoints Maximum number of endpoints statistics are kept for.
+	 */
+	public ServiceMetrics(int sampleSize, final int maxEndpoints)
+	{
+		if(sampleSize < 1 || maxEndpoints < 1)
+			throw new IllegalArgumentException("The sample size and the maximum number of endpoints must be at least 1.");
+		mSampleSize = sampleSize;
+		mEndpoints = new LinkedHashMap<String, EndpointStats>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, EndpointStats> eldest)
+			{
+				return size() > maxEndpoints;
+			}
+		};
+	}
+
+	/**
+	 * Get the registry service calls report to.
+	 * @return the default registry.
+	 */
+	public static synchronized ServiceMetrics getDefault()
+	{
+		if(sDefault == null)
+			sDefault = new ServiceMetrics(DEFAULT_SAMPLE_SIZE);
+		return sDefault;
+	}
+
+	/**
+	 * Replace the registry service calls report to.
+	 * @param metrics Registry to use, or null to go back to a new default registry.
+	 */
+	public static synchronized void setDefault(ServiceMetrics metrics)
+	{
+		sDefault = metrics;
+	}
+
+	/**
+	 * Add a listener that receives the metrics of every call.
+	 * @param listener Listener to add.
+	 */
+	public void addListener(ServiceMetricsListener listener)
+	{
+		mListeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener.
+	 * @param listener Listener to remove.
+	 */
+	public void removeListener(ServiceMetricsListener listener)
+	{
+		mListeners.remove(listener);
+	}
+
+	/**
+	 * Get the endpoints calls have been made to.
+	 * @return The endpoints in alphabetical order.
+	 */
+	public synchronized List<String> getEndpoints()
+	{
+		List<String> endpoints = new ArrayList<String>(mEndpoints.keySet());
+		Collections.sort(endpoints);
+		return endpoints;
+	}
+
+	/**
+	 * Get a percentile of the total time of the recent network calls to an endpoint.
+	 * @param endpoint Host and path of the endpoint, see {@link ServiceCallMetrics#getEndpoint()}.
+	 * @param percentile Percentile between 0 and 1, for example 0.95.
+	 * @return The time in milliseconds, or -1 if no network calls were made to the endpoint.
+	 */
+	public synchronized long getPercentile(String endpoint, double percentile)
+	{
+		EndpointStats stats = mEndpoints.get(endpoint);
+		return stats == null ? -1 : stats.mTotalTimes.getPercentile(percentile);
+	}
+
+	/**
+	 * Get the number of calls made to an endpoint, including calls served from a cache.
+	 * @param endpoint Host and path of the endpoint.
+	 * @return the number of calls.
+	 */
+	public synchronized int getCallCount(String endpoint)
+	{
+		EndpointStats stats = mEndpoints.get(endpoint);
+		return stats == null ? 0 : stats.mCalls;
+	}
+
+	/**
+	 * Get the number of failed calls to an endpoint.
+	 * @param endpoint Host and path of the endpoint.
+	 * @return the number of failures.
+	 */
+	public synchronized int getFailureCount(String endpoint)
+	{
+		EndpointStats stats = mEndpoints.get(endpoint);
+		return stats == null ? 0 : stats.mFailures;
+	}
+
+	/**
+	 * Export the statistics of every endpoint as tab separated text, one line per endpoint after a header line:
+	 * <pre>endpoint	calls	failures	p50	p95	p99</pre>
+	 * Times are in milliseconds.
+	 * @return the exported statistics.
+	 */
+	public synchronized String export()
+	{
+		StringBuilder builder = new StringBuilder("endpoint\tcalls\tfailures\tp50\tp95\tp99\n");
+		//sorted so exports are stable, reading with get() would change the usage order.
+		for(String endpoint : getEndpoints())
+		{
+			EndpointStats stats = mEndpoints.get(endpoint);
+			builder.append(endpoint).append('\t')
+				.append(stats.mCalls).append('\t')
+				.append(stats.mFailures).append('\t')
+				.append(stats.mTotalTimes.getPercentile(0.5)).append('\t')
+				.append(stats.mTotalTimes.getPercentile(0.95)).append('\t')
+				.append(stats.mTotalTimes.getPercentile(0.99)).append('\n');
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Forget the statistics of every endpoint.
+	 */
+	public synchronized void reset()
+	{
+		mEndpoints.clear();
+	}
+
+	/**
+	 * Count a completed call and hand it to the listeners.
+	 * @param service Service that was called.
+	 * @param metrics Metrics of the call.
+	 */
+	void record(Service service, ServiceCallMetrics metrics)
+	{
+		synchronized(this)
+		{
+			EndpointStats stats = mEndpoints.get(metrics.mEndpoint);
+			if(stats == null)
+			{
+				stats = new EndpointStats(mSampleSize);
+				mEndpoints.put(metrics.mEndpoint, stats);
+			}
+			stats.mCalls++;
+			if(metrics.mOutcome == ServiceCallMetrics.OUTCOME_FAILURE)
+				stats.mFailures++;
+			if(metrics.mSource != ServiceCallMetrics.SOURCE_RESULT_CACHE && metrics.mAttempts > 0 && metrics.mTotalTime >= 0)
+				stats.mTotalTimes.record(metrics.mTotalTime);
+		}
+		for(ServiceMetricsListener listener : mListeners)
+			listener.onServiceCallMetrics(service, metrics);
+	}
+
+	/**
+	 * Get the endpoint of a url, its host and path with ids replaced by <code>{id}</code>.
+	 * @param url Url of a service.
+	 * @return the endpoint, or the url itself if it can not be parsed.
+	 */
+	static String getEndpoint(String url)
+	{
+		if(url == null)
+			return "";
+		try
+		{
+			URI uri = new URI(url);
+			if(uri.getHost() == null)
+				return url;
+			return uri.getPath() == null ? uri.getHost() : uri.getHost() + foldIds(uri.getPath());
+		}
+		catch(Exception e)
+		{
+			return url;
+		}
+	}
+
+	/**
+	 * Replace the segments of a path that look like ids with <code>{id}</code>.
+	 */
+	private static String foldIds(String path)
+	{
+		StringBuilder folded = null;
+		int start = 0;
+		while(start <= path.length())
+		{
+			int end = path.indexOf('/', start);
+			if(end < 0)
+				end = path.length();
+			if(isId(path, start, end))
+			{
+				if(folded == null)
+					folded = new StringBuilder(path.length()).append(path, 0, start);
+				folded.append(ID_SEGMENT);
+			}
+			else if(folded != null)
+				folded.append(path, start, end);
+			if(end < path.length() && folded != null)
+				folded.append('/');
+			start = end + 1;
+		}
+		return folded == null ? path : folded.toString();
+	}
+
+	/**
+	 * Check if a path segment is a number, a UUID or a hex string of at least 16 characters.
+	 */
+	private static boolean isId(String path, int start, int end)
+	{
+		int length = end - start;
+		if(length == 0)
+			return false;
+		boolean digits = true;
+		boolean hex = true;
+		for(int i=start; i<end; i++)
+		{
+			char c = path.charAt(i);
+			boolean digit = c >= '0' && c <= '9';
+			digits &= digit;
+			hex &= digit || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F') || (c == '-' && length == 36);
+		}
+		return digits || (hex && length >= 16);
+	}
+
+	/**
+	 * Statistics of one endpoint.
+	 */
+	private static class EndpointStats
+	{
+		private final LatencySampler mTotalTimes;
+		private int mCalls;
+		private int mFailures;
+
+		EndpointStats(int sampleSize)
+		{
+			mTotalTimes = new LatencySampler(sampleSize);
+		}
+	}
+
+	/**
+	 * Notes in the {@link HttpContext} of a request when it is sent, which is after its connection is established,
+	 * and when its response headers are received.
+	 */
+	static class TimingInterceptor implements HttpRequestInterceptor, HttpResponseInterceptor
+	{
+		@Override
+		public void process(HttpRequest request, HttpContext context) throws HttpException, IOException
+		{
+			//keep the first time if the request is redirected.
+			if(context.getAttribute(ATTR_REQUEST_SENT) == null)
+				context.setAttribute(ATTR_REQUEST_SENT, Long.valueOf(SystemClock.elapsedRealtime()));
+		}
+
+		@Override
+		public void process(HttpResponse response, HttpContext context) throws HttpException, IOException
+		{
+			context.setAttribute(ATTR_RESPONSE_RECEIVED, Long.valueOf(SystemClock.elapsedRealtime()));
+		}
+	}
+}
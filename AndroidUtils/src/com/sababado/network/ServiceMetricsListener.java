@@ -0,0 +1,33 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+/**
+ * Implement this interface and add it to {@link ServiceMetrics} to receive the timings of every service call, for example to send them to an analytics backend.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public interface ServiceMetricsListener
+{
+	/**
+	 * Called on the main thread when a service call completes, fails or is cancelled.
+	 * @param service Service that was called.
+	 * @param metrics Timings and outcome of the call.
+	 */
+	public void onServiceCallMetrics(Service service, ServiceCallMetrics metrics);
+}
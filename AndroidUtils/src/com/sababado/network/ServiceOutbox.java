@@ -0,0 +1,668 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.util.EntityUtils;
+
+import com.sababado.utils.ConnectivityMonitor;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * <p>A durable queue of POST, PUT and DELETE calls that could not be made because there was no network.
+ * Services opt in with {@link Service#setQueueWhenOffline(boolean)}; each queued call is written to its own file so the queue survives the app being killed.</p>
+ * <p>The outbox replays its calls oldest first when the network comes back, and when it is installed.
+ * Install it when the app starts, for example in {@link android.app.Application#onCreate()}, so calls queued before a restart are replayed.
+ * Results of replayed calls go to the {@link ServiceOutboxListener}s.</p>
+ * <p>Calls are replayed in rounds of at most {@link #setMaxInFlight(int) max in flight} calls, a round starts when the previous one is done.
+ * With a {@link #setBatcher(ServiceBatcher) batcher} the calls of a round are sent in batches. Calls within a round run in parallel,
+ * set the max in flight to 1 to replay calls strictly one after the other.
+ * Replaying stops at the end of a round in which a call failed because of the network or an unavailable server; it is picked up again when the network changes.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.3
+ * @updates
+ * 1.3 an uninstalled outbox stops replaying and ignores the results of calls still in flight instead of using its stopped I/O thread.<br/>
+ * 1.2 calls that failed fast on an open {@link CircuitBreaker} stay queued.<br/>
+ * 1.1 follows the network through the {@link ConnectivityMonitor} instead of its own receiver.<br/>
+ */
+public class ServiceOutbox
+{
+	private static final String TAG = "ServiceOutbox";
+	/**
+	 * Default number of calls replayed at the same time.
+	 */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+
+	private static final String SUFFIX = ".call";
+	private static final int FORMAT_VERSION = 1;
+
+	private static ServiceOutbox sInstalled;
+
+	private final Context mContext;
+	private final File mDirectory;
+	//Sequence number of the next queued call.
+	private long mNextSequence;
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+	//Reads and deletes queued calls off the main thread, in order.
+	private final ExecutorService mIoExecutor;
+	private final List<ServiceOutboxListener> mListeners = new CopyOnWriteArrayList<ServiceOutboxListener>();
+	//The following are only used from the main thread.
+	private ServiceExecutor mExecutor;
+	private ServiceBatcher mBatcher;
+	private int mMaxInFlight = DEFAULT_MAX_IN_FLIGHT;
+	private boolean mReplaying;
+	//true once the outbox is uninstalled, its I/O thread is stopped.
+	private volatile boolean mClosed;
+	//Replays the outbox when the network comes back.
+	private final ConnectivityMonitor.OnConnectivityChangedListener mConnectivityListener = new ConnectivityMonitor.OnConnectivityChangedListener()
+	{
+		@Override
+		public void onConnectivityChanged(ConnectivityMonitor monitor)
+		{
+			replay();
+		}
+	};
+
+	private ServiceOutbox(Context ctx, File directory)
+	{
+		mContext = ctx.getApplicationContext();
+		mDirectory = directory;
+		if(!mDirectory.exists() && !mDirectory.mkdirs())
+			Log.w(TAG, "Could not create the outbox directory "+mDirectory);
+		//continue numbering after the calls already queued.
+		for(File file : listQueued())
+			mNextSequence = Math.max(mNextSequence, getSequence(file) + 1);
+		mIoExecutor = Executors.newSingleThreadExecutor(new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable r)
+			{
+				Thread thread = new Thread(r, "ServiceOutbox");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Install an outbox that keeps its calls in the app's files directory, and start replaying calls queued earlier.
+	 * Call this from the main thread.
+	 * @param ctx Context of the app.
+	 * @return The installed outbox.
+	 */
+	public static ServiceOutbox install(Context ctx)
+	{
+		return install(ctx, new File(ctx.getFilesDir(), "service-outbox"));
+	}
+
+	/**
+	 * Install an outbox and start replaying calls queued earlier. Call this from the main thread.
+	 * @param ctx Context of the app.
+	 * @param directory Directory to keep queued calls in. It must not be a cache directory the system can clear.
+	 * @return The installed outbox.
+	 */
+	public static synchronized ServiceOutbox install(Context ctx, File directory)
+	{
+		uninstall();
+		sInstalled = new ServiceOutbox(ctx, directory);
+		ConnectivityMonitor.getInstance(ctx).addListener(sInstalled.mConnectivityListener);
+		sInstalled.replay();
+		return sInstalled;
+	}
+
+	/**
+	 * Get the installed outbox.
+	 * @return The installed outbox or <code>null</code> if none is installed.
+	 */
+	public static synchronized ServiceOutbox getInstalled()
+	{
+		return sInstalled;
+	}
+
+	/**
+	 * Stop queueing and replaying calls. Queued calls are left on disk and are replayed when an outbox is installed on the same directory again.
+	 */
+	public static synchronized void uninstall()
+	{
+		if(sInstalled == null)
+			return;
+		ConnectivityMonitor.getInstance(sInstalled.mContext).removeListener(sInstalled.mConnectivityListener);
+		//calls still in flight are not followed anymore, they stay queued unless they are done.
+		sInstalled.mClosed = true;
+		sInstalled.mIoExecutor.shutdown();
+		sInstalled = null;
+	}
+
+	/**
+	 * Add a listener for the results of replayed calls.
+	 * @param listener Listener to add.
+	 */
+	public void addListener(ServiceOutboxListener listener)
+	{
+		mListeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener.
+	 * @param listener Listener to remove.
+	 */
+	public void removeListener(ServiceOutboxListener listener)
+	{
+		mListeners.remove(listener);
+	}
+
+	/**
+	 * Set the executor replayed calls are made with, by default the {@link ServiceExecutor#getDefault() default executor}.
+	 * @param executor Executor to use.
+	 */
+	public void setExecutor(ServiceExecutor executor)
+	{
+		mExecutor = executor;
+	}
+
+	/**
+	 * Send replayed calls in batches.
+	 * @param batcher Batcher to send the calls of a round with, or null to send each call on its own.
+	 */
+	public void setBatcher(ServiceBatcher batcher)
+	{
+		mBatcher = batcher;
+	}
+
+	/**
+	 * Set the number of calls replayed at the same time.
+	 * @param maxInFlight Number of calls in a round, 1 to replay calls strictly in order.
+	 */
+	public void setMaxInFlight(int maxInFlight)
+	{
+		if(maxInFlight < 1)
+			throw new IllegalArgumentException("At least 1 call must be replayed at a time.");
+		mMaxInFlight = maxInFlight;
+	}
+
+	/**
+	 * Get the number of queued calls.
+	 * @return the number of calls, including calls being replayed.
+	 */
+	public synchronized int size()
+	{
+		return listQueued().length;
+	}
+
+	/**
+	 * Remove every queued call without making it.
+	 */
+	public synchronized void clear()
+	{
+		for(File file : listQueued())
+			file.delete();
+	}
+
+	/**
+	 * Replay the queued calls if there is a network and they are not already being replayed. Call this from the main thread.
+	 */
+	public void replay()
+	{
+		if(mClosed || mReplaying || !ConnectivityMonitor.getInstance(mContext).isNetworkAvailable())
+			return;
+		mReplaying = true;
+		loadNextRound();
+	}
+
+	/**
+	 * Queue a call.
+	 * @param service Call to queue.
+	 * @throws IOException if the call could not be written, or its request body can not be sent more than once.
+	 */
+	void enqueue(Service service) throws IOException
+	{
+		RequestBody requestBody = service.getRequestBody();
+		if(requestBody != null && !requestBody.isRepeatable())
+			throw new IOException("A request body that can only be sent once can not be queued.");
+		synchronized(this)
+		{
+			File file = new File(mDirectory, String.format("%019d", mNextSequence++) + SUFFIX);
+			File temp = new File(mDirectory, file.getName() + ".tmp");
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try
+			{
+				write(out, service);
+			}
+			finally
+			{
+				out.close();
+			}
+			//the call is only queued once it is completely written.
+			if(!temp.renameTo(file))
+			{
+				temp.delete();
+				throw new IOException("Could not queue the call in "+file);
+			}
+		}
+	}
+
+	/**
+	 * Load the next round of calls off the main thread and make them.
+	 */
+	private void loadNextRound()
+	{
+		final int count = mMaxInFlight;
+		try
+		{
+			mIoExecutor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final List<QueuedCall> round = load(count);
+					mMainHandler.post(new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							replayRound(round);
+						}
+					});
+				}
+			});
+		}
+		catch(RejectedExecutionException e)
+		{
+			//the outbox was uninstalled.
+			mReplaying = false;
+		}
+	}
+
+	/**
+	 * Make the calls of a round.
+	 */
+	private void replayRound(List<QueuedCall> round)
+	{
+		if(mClosed)
+		{
+			//the calls stay queued for the next outbox.
+			mReplaying = false;
+			return;
+		}
+		if(round.isEmpty())
+		{
+			mReplaying = false;
+			for(ServiceOutboxListener listener : mListeners)
+				listener.onOutboxReplayFinished(true);
+			return;
+		}
+		Round state = new Round(round.size());
+		ServiceExecutor executor = mExecutor != null ? mExecutor : ServiceExecutor.getDefault();
+		for(QueuedCall call : round)
+		{
+			ReplayListener listener = new ReplayListener(call, state);
+			if(mBatcher != null)
+				mBatcher.submit(listener, call.mService, mContext);
+			else
+				executor.submit(listener, call.mService, mContext, ServiceExecutor.PRIORITY_BACKGROUND);
+		}
+		if(mBatcher != null)
+			mBatcher.flush();
+	}
+
+	/**
+	 * Called when a call of a round is done, starts the next round when the whole round is done.
+	 */
+	private void onReplayed(Round round)
+	{
+		round.mPending--;
+		if(round.mPending > 0)
+			return;
+		if(round.mStop)
+		{
+			mReplaying = false;
+			for(ServiceOutboxListener listener : mListeners)
+				listener.onOutboxReplayFinished(false);
+		}
+		else
+			loadNextRound();
+	}
+
+	/**
+	 * Remove a replayed call from the outbox, off the main thread.
+	 */
+	private void remove(final QueuedCall call)
+	{
+		if(!mClosed)
+		{
+			try
+			{
+				mIoExecutor.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						synchronized(ServiceOutbox.this)
+						{
+							call.mFile.delete();
+						}
+					}
+				});
+				return;
+			}
+			catch(RejectedExecutionException e)
+			{
+				//uninstalled in the meantime.
+			}
+		}
+		//the call is done so it must not be replayed again, even though the I/O thread is stopped.
+		synchronized(this)
+		{
+			call.mFile.delete();
+		}
+	}
+
+	/**
+	 * Check if a call that failed might succeed later.
+	 * @param errCode Error code of the failure.
+	 * @return true if the call should stay queued.
+	 */
+	private static boolean isTransient(int errCode)
+	{
+		switch(errCode)
+		{
+			case AsyncServiceCallTask.ERR_CODE_NO_NETWORK:
+			case AsyncServiceCallTask.ERR_CODE_MAX_ATTEMPTS_REACHED:
+			case AsyncServiceCallTask.ERR_CODE_REJECTED:
+			case AsyncServiceCallTask.ERR_CODE_DEADLINE_EXCEEDED:
+			case AsyncServiceCallTask.ERR_CODE_QUEUED_OFFLINE:
+			case AsyncServiceCallTask.ERR_CODE_CIRCUIT_OPEN:
+			case HttpStatus.SC_REQUEST_TIMEOUT:
+			case 429:
+				return true;
+			default:
+				return errCode >= 500 && errCode < 600;
+		}
+	}
+
+	/**
+	 * Read the oldest queued calls. Calls that can not be read are removed.
+	 * @param count Maximum number of calls to read.
+	 * @return the calls, oldest first.
+	 */
+	private synchronized List<QueuedCall> load(int count)
+	{
+		File[] files = listQueued();
+		Arrays.sort(files);
+		List<QueuedCall> calls = new ArrayList<QueuedCall>(Math.min(count, files.length));
+		for(int i=0; i<files.length && calls.size() < count; i++)
+		{
+			try
+			{
+				DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(files[i])));
+				try
+				{
+					calls.add(new QueuedCall(files[i], read(in)));
+				}
+				finally
+				{
+					in.close();
+				}
+			}
+			catch(Exception e)
+			{
+				//the call can never be made, for example because its service class is gone.
+				Log.w(TAG, "Dropping unreadable call "+files[i].getName()+": "+e);
+				files[i].delete();
+			}
+		}
+		return calls;
+	}
+
+	private File[] listQueued()
+	{
+		File[] files = mDirectory.listFiles();
+		if(files == null)
+			return new File[0];
+		List<File> queued = new ArrayList<File>(files.length);
+		for(File file : files)
+		{
+			if(file.getName().endsWith(SUFFIX))
+				queued.add(file);
+		}
+		return queued.toArray(new File[queued.size()]);
+	}
+
+	private static long getSequence(File file)
+	{
+		String name = file.getName();
+		try
+		{
+			return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+		}
+		catch(NumberFormatException e)
+		{
+			return 0;
+		}
+	}
+
+	private static void write(DataOutputStream out, Service service) throws IOException
+	{
+		out.writeInt(FORMAT_VERSION);
+		writeString(out, service.getClass().getName());
+		writeString(out, service.getUrl());
+		out.writeInt(service.getCallType());
+		writeStrings(out, service.getParamNames());
+		writeStrings(out, service.getParamValues());
+		writeStrings(out, service.getConstantParamNames());
+		writeStrings(out, service.getConstantParamValues());
+		out.writeBoolean(service.isParamsInBody());
+		out.writeBoolean(service.isCompressRequestBody());
+		out.writeInt(service.getConnectTimeout());
+		out.writeInt(service.getReadTimeout());
+		out.writeLong(service.getDeadline());
+		RequestBody requestBody = service.getRequestBody();
+		out.writeBoolean(requestBody != null);
+		if(requestBody != null)
+		{
+			HttpEntity entity = requestBody.createEntity();
+			Header contentType = entity.getContentType();
+			writeString(out, contentType == null ? null : contentType.getValue());
+			byte[] body = EntityUtils.toByteArray(entity);
+			out.writeInt(body.length);
+			out.write(body);
+		}
+	}
+
+	private static Service read(DataInputStream in) throws Exception
+	{
+		int version = in.readInt();
+		if(version != FORMAT_VERSION)
+			throw new IOException("Unknown format version "+version);
+		Service service = Class.forName(readString(in)).asSubclass(Service.class).getConstructor().newInstance();
+		service.setUrl(readString(in));
+		service.setCallType(in.readInt());
+		service.setParamNames(readStrings(in));
+		service.setParamValues(readStrings(in));
+		String[] constantParamNames = readStrings(in);
+		service.setConstantParams(constantParamNames, readStrings(in));
+		service.setParamsInBody(in.readBoolean());
+		service.setCompressRequestBody(in.readBoolean());
+		int connectTimeout = in.readInt();
+		service.setTimeouts(connectTimeout, in.readInt());
+		service.setDeadline(in.readLong());
+		if(in.readBoolean())
+		{
+			String contentType = readString(in);
+			byte[] body = new byte[in.readInt()];
+			in.readFully(body);
+			service.setRequestBody(RequestBody.bytes(body, contentType));
+		}
+		else
+			service.setRequestBody(null);
+		//a replayed call is never queued again, it stays in the outbox until it is done.
+		service.setQueueWhenOffline(false);
+		return service;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException
+	{
+		if(value == null)
+		{
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException
+	{
+		int length = in.readInt();
+		if(length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	private static void writeStrings(DataOutputStream out, String[] values) throws IOException
+	{
+		if(values == null)
+		{
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(values.length);
+		for(String value : values)
+			writeString(out, value);
+	}
+
+	private static String[] readStrings(DataInputStream in) throws IOException
+	{
+		int length = in.readInt();
+		if(length < 0)
+			return null;
+		String[] values = new String[length];
+		for(int i=0; i<length; i++)
+			values[i] = readString(in);
+		return values;
+	}
+
+	/**
+	 * A call read from the outbox.
+	 */
+	private static class QueuedCall
+	{
+		private final File mFile;
+		private final Service mService;
+
+		QueuedCall(File file, Service service)
+		{
+			mFile = file;
+			mService = service;
+		}
+	}
+
+	/**
+	 * Progress of a round of replayed calls.
+	 */
+	private static class Round
+	{
+		//Number of calls of the round that are not done.
+		private int mPending;
+		//true if a call failed in a way that stops replaying.
+		private boolean mStop;
+
+		Round(int pending)
+		{
+			mPending = pending;
+		}
+	}
+
+	/**
+	 * Receives the result of a replayed call.
+	 */
+	private class ReplayListener implements AsyncServiceListener
+	{
+		private final QueuedCall mCall;
+		private final Round mRound;
+
+		ReplayListener(QueuedCall call, Round round)
+		{
+			mCall = call;
+			mRound = round;
+		}
+
+		@Override
+		public void onServiceCallProgressUpdate(String[] progress)
+		{
+		}
+
+		@Override
+		public void onServiceCallSuccess(Bundle success)
+		{
+			remove(mCall);
+			if(mClosed)
+				return;
+			for(ServiceOutboxListener listener : mListeners)
+				listener.onOutboxCallSuccess(mCall.mService, success);
+			onReplayed(mRound);
+		}
+
+		@Override
+		public void onServiceCallFailure(String errMsg, int errCode)
+		{
+			if(mClosed)
+			{
+				if(!isTransient(errCode))
+					remove(mCall);
+				return;
+			}
+			if(isTransient(errCode))
+				mRound.mStop = true;
+			else
+			{
+				remove(mCall);
+				for(ServiceOutboxListener listener : mListeners)
+					listener.onOutboxCallFailure(mCall.mService, errMsg, errCode);
+			}
+			onReplayed(mRound);
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import android.os.Bundle;
+
+/**
+ * Implement this interface and add it to the {@link ServiceOutbox} to receive the results of calls replayed from the outbox.
+ * The listeners of the original calls are not called because the app may have been restarted since the calls were queued.
+ * All methods are called on the main thread.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public interface ServiceOutboxListener
+{
+	/**
+	 * A queued call was made successfully and removed from the outbox.
+	 * @param service The call, recreated from the outbox.
+	 * @param success The success bundle, see {@link AsyncServiceListener#onServiceCallSuccess(Bundle)}.
+	 */
+	public void onOutboxCallSuccess(Service service, Bundle success);
+
+	/**
+	 * A queued call failed in a way that retrying will not fix, for example with a <code>4xx</code> status, and was removed from the outbox.
+	 * Calls that fail because of the network or the server being unavailable stay queued and are not reported.
+	 * @param service The call, recreated from the outbox.
+	 * @param errMsg The fail message.
+	 * @param errCode The error code associated with this failure.
+	 */
+	public void onOutboxCallFailure(Service service, String errMsg, int errCode);
+
+	/**
+	 * Replaying the outbox stopped.
+	 * @param drained true if every queued call was made, false if replaying stopped because calls could not be made yet.
+	 */
+	public void onOutboxReplayFinished(boolean drained);
+}
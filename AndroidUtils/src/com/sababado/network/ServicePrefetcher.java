@@ -0,0 +1,292 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import android.content.Context;
+import android.os.Bundle;
+
+import com.sababado.utils.ConnectivityMonitor;
+
+/**
+ * <p>Loads the results of services the user will probably need next, such as the details of the rows on screen, while the app is
+ * otherwise idle, so they can be shown right away from the {@link ServiceResultCache} later.</p>
+ * <p>Prefetched services are queued here and submitted to a {@link ServiceExecutor} with {@link ServiceExecutor#PRIORITY_PREFETCH}
+ * a few at a time, and only while:
+ * <ul>
+ * <li>no {@link ServiceExecutor#PRIORITY_USER_VISIBLE user visible} call is in flight on the executor, and</li>
+ * <li>the active network is allowed by the prefetcher's {@link #setNetworkPolicy(int) network policy} and by the service's own policy.</li>
+ * </ul>
+ * Prefetches that turn out not to be needed, for example because the rows scrolled away, should be cancelled with {@link #cancel(Service)}
+ * or {@link #cancelAll()}. When the queue is full the oldest prefetch is dropped.</p>
+ * <p>Only {@link Service#CALL_TYPE_GET} services with a {@link Service#setResultCacheTtl(long) result cache TTL} can be prefetched, since
+ * the result cache is where their results go. A user call for a service that is still being prefetched shares the prefetch's request.</p>
+ * <p><b>Must be used from the main thread.</b></p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public class ServicePrefetcher
+{
+	/**
+	 * Default number of prefetches submitted at the same time.
+	 */
+	public static final int DEFAULT_MAX_CONCURRENT = 2;
+	/**
+	 * Default number of prefetches that can wait.
+	 */
+	public static final int DEFAULT_MAX_QUEUED = 32;
+
+	private final ServiceExecutor mExecutor;
+	private final Context mContext;
+	private final int mMaxConcurrent;
+	private final int mMaxQueued;
+	private int mNetworkPolicy = ConnectivityMonitor.POLICY_NOT_ROAMING;
+	//Waiting prefetches by request key, oldest first.
+	private final LinkedHashMap<String, Service> mQueued = new LinkedHashMap<String, Service>();
+	//Submitted prefetches by request key.
+	private final HashMap<String, ServiceCall> mRunning = new HashMap<String, ServiceCall>();
+	//true while listening to the executor and the network for a chance to submit.
+	private boolean mWaiting;
+	//Submits more prefetches when the executor goes idle.
+	private final Runnable mIdleListener = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			schedule();
+		}
+	};
+	//Submits more prefetches when the network changes.
+	private final ConnectivityMonitor.OnConnectivityChangedListener mConnectivityListener = new ConnectivityMonitor.OnConnectivityChangedListener()
+	{
+		@Override
+		public void onConnectivityChanged(ConnectivityMonitor monitor)
+		{
+			schedule();
+		}
+	};
+
+	/**
+	 * Create a prefetcher with {@link #DEFAULT_MAX_CONCURRENT} and {@link #DEFAULT_MAX_QUEUED}.
+	 * @param executor Executor to submit prefetches to, typically {@link ServiceExecutor#getDefault()}.
+	 * @param context Any context, the application context is kept.
+	 */
+	public ServicePrefetcher(ServiceExecutor executor, Context context)
+	{
+		this(executor, context, DEFAULT_MAX_CONCURRENT, DEFAULT_MAX_QUEUED);
+	}
+
+	/**
+	 * Create a prefetcher.
+	 * @param executor Executor to submit prefetches to, typically {@link ServiceExecutor#getDefault()}.
+	 * @param context Any context, the application context is kept.
+	 * @param maxConcurrent Number of prefetches submitted at the same time.
+	 * @param maxQueued Number of prefetches that can wait, the oldest is dropped when more are added.
+	 */
+	public ServicePrefetcher(ServiceExecutor executor, Context context, int maxConcurrent, int maxQueued)
+	{
+		if(maxConcurrent < 1 || maxQueued < 1)
+			throw new IllegalArgumentException("At least 1 prefetch must be allowed to run and to wait.");
+		mExecutor = executor;
+		mContext = context.getApplicationContext();
+		mMaxConcurrent = maxConcurrent;
+		mMaxQueued = maxQueued;
+	}
+
+	/**
+	 * Set the networks prefetches may use, in addition to the network policy of each service. Defaults to
+	 * {@link ConnectivityMonitor#POLICY_NOT_ROAMING}.
+	 * @param networkPolicy Use a ConnectivityMonitor.POLICY_* constant.
+	 */
+	public void setNetworkPolicy(int networkPolicy)
+	{
+		if(networkPolicy != ConnectivityMonitor.POLICY_ANY && networkPolicy != ConnectivityMonitor.POLICY_NOT_ROAMING
+				&& networkPolicy != ConnectivityMonitor.POLICY_UNMETERED)
+			throw new IllegalArgumentException("Inappropriate use of network policy. Use a ConnectivityMonitor.POLICY_* constant");
+		mNetworkPolicy = networkPolicy;
+		schedule();
+	}
+
+	/**
+	 * Get the networks prefetches may use.
+	 * @return a ConnectivityMonitor.POLICY_* constant.
+	 */
+	public int getNetworkPolicy()
+	{
+		return mNetworkPolicy;
+	}
+
+	/**
+	 * Queue a service to be prefetched. Nothing happens if its result is already cached or it is already queued or being prefetched.
+	 * @param service Service to prefetch.
+	 * @throws IllegalArgumentException if the service is not a GET call with a result cache TTL.
+	 */
+	public void prefetch(Service service)
+	{
+		if(service.getCallType() != Service.CALL_TYPE_GET || service.getResultCacheTtl() <= 0)
+			throw new IllegalArgumentException("Only GET services with a result cache TTL can be prefetched.");
+		String key = service.getRequestKey();
+		if(mQueued.containsKey(key) || mRunning.containsKey(key) || ServiceResultCache.getDefault().get(service) != null)
+			return;
+		mQueued.put(key, service);
+		if(mQueued.size() > mMaxQueued)
+		{
+			Iterator<String> oldest = mQueued.keySet().iterator();
+			oldest.next();
+			oldest.remove();
+		}
+		schedule();
+	}
+
+	/**
+	 * Cancel the prefetch of a service whose result is no longer expected to be needed.
+	 * @param service A service with the same request as the prefetched one.
+	 * @return true if the prefetch was queued or running.
+	 */
+	public boolean cancel(Service service)
+	{
+		String key = service.getRequestKey();
+		if(mQueued.remove(key) != null)
+			return true;
+		ServiceCall call = mRunning.remove(key);
+		if(call == null)
+			return false;
+		call.cancel();
+		schedule();
+		return true;
+	}
+
+	/**
+	 * Cancel every queued and running prefetch.
+	 */
+	public void cancelAll()
+	{
+		mQueued.clear();
+		for(ServiceCall call : mRunning.values())
+			call.cancel();
+		mRunning.clear();
+		schedule();
+	}
+
+	/**
+	 * Get the number of prefetches waiting to be submitted.
+	 */
+	public int getQueuedCount()
+	{
+		return mQueued.size();
+	}
+
+	/**
+	 * Get the number of prefetches submitted to the executor that have not finished.
+	 */
+	public int getRunningCount()
+	{
+		return mRunning.size();
+	}
+
+	/**
+	 * Submit as many queued prefetches as are allowed now, and wait for the executor or the network if some have to wait.
+	 */
+	private void schedule()
+	{
+		ConnectivityMonitor monitor = ConnectivityMonitor.getInstance(mContext);
+		if(mExecutor.isIdle() && monitor.isAllowed(mNetworkPolicy))
+		{
+			Iterator<Service> iterator = mQueued.values().iterator();
+			while(mRunning.size() < mMaxConcurrent && iterator.hasNext())
+			{
+				Service service = iterator.next();
+				//a service that may not use this network waits for one it may use.
+				if(!monitor.isAllowed(service.getNetworkPolicy()))
+					continue;
+				iterator.remove();
+				if(ServiceResultCache.getDefault().get(service) != null)
+					continue;
+				String key = service.getRequestKey();
+				mRunning.put(key, mExecutor.submit(new PrefetchListener(key), service, mContext, ServiceExecutor.PRIORITY_PREFETCH));
+			}
+		}
+		setWaiting(!mQueued.isEmpty());
+	}
+
+	/**
+	 * Listen to the executor and the network while prefetches are waiting.
+	 */
+	private void setWaiting(boolean waiting)
+	{
+		if(waiting == mWaiting)
+			return;
+		mWaiting = waiting;
+		ConnectivityMonitor monitor = ConnectivityMonitor.getInstance(mContext);
+		if(waiting)
+		{
+			mExecutor.addIdleListener(mIdleListener);
+			monitor.addListener(mConnectivityListener);
+		}
+		else
+		{
+			mExecutor.removeIdleListener(mIdleListener);
+			monitor.removeListener(mConnectivityListener);
+		}
+	}
+
+	/**
+	 * Frees the slot of a finished prefetch. The result itself was put in the result cache by the call.
+	 */
+	private class PrefetchListener implements ServiceResultListener
+	{
+		private final String mKey;
+
+		PrefetchListener(String key)
+		{
+			mKey = key;
+		}
+
+		@Override
+		public void onServiceResult(ServiceResult result)
+		{
+			finished();
+		}
+
+		@Override
+		public void onServiceCallProgressUpdate(String[] progress)
+		{
+		}
+
+		@Override
+		public void onServiceCallSuccess(Bundle success)
+		{
+			finished();
+		}
+
+		@Override
+		public void onServiceCallFailure(String errMsg, int errCode)
+		{
+			finished();
+		}
+
+		private void finished()
+		{
+			mRunning.remove(mKey);
+			schedule();
+		}
+	}
+}
@@ -0,0 +1,676 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.http.impl.cookie.DateUtils;
+
+import android.util.Log;
+
+/**
+ * <p>An on-disk, size bounded, least recently used cache of {@link Service#CALL_TYPE_GET} response bodies.</p>
+ * <p>Responses are stored according to their <code>Cache-Control</code> and <code>Expires</code> headers along with their
+ * <code>ETag</code> and <code>Last-Modified</code> validators. A fresh response is served from disk without making a request.
+ * A stale response is revalidated with a conditional request and served from disk when the server answers <code>304 Not Modified</code>.</p>
+ * <p>Install a cache once, for example in {@link android.app.Application#onCreate()}, with {@link #install(File, long)}.
+ * Every {@link AsyncServiceCallTask} will use it for services that are {@link Service#isResponseCacheable() cacheable}.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public class ServiceResponseCache
+{
+	private static final String TAG = "ServiceResponseCache";
+	//Version of the metadata file format.
+	private static final int META_VERSION = 1;
+	private static final String BODY_SUFFIX = ".body";
+	private static final String META_SUFFIX = ".meta";
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private static ServiceResponseCache sInstalled;
+
+	//Directory holding the cache files.
+	private final File mDirectory;
+	//Maximum number of bytes the cached bodies can use.
+	private final long mMaxSize;
+	//Number of bytes the cached bodies use.
+	private long mSize;
+	//Size of each cached body by file name, in least recently used order.
+	private final LinkedHashMap<String, Long> mEntries = new LinkedHashMap<String, Long>(32, 0.75f, true);
+	//Used to give temporary files unique names.
+	private long mTempCount;
+
+	/**
+	 * Create a cache in a directory. Use {@link #install(File, long)} to have service calls use it.
+	 * @param directory Directory to store responses in. It is created if it does not exist.
+	 * @param maxSize Maximum number of bytes the cached bodies can use.
+	 */
+	public ServiceResponseCache(File directory, long maxSize)
+	{
+		if(maxSize <= 0)
+			throw new IllegalArgumentException("The cache size must be greater than 0.");
+		mDirectory = directory;
+		mMaxSize = maxSize;
+		if(!mDirectory.exists() && !mDirectory.mkdirs())
+			Log.w(TAG, "Could not create the cache directory "+mDirectory);
+		loadEntries();
+	}
+
+	/**
+	 * Install a response cache used by all service calls.
+	 * @param directory Directory to store responses in, for example a folder in {@link android.content.Context#getCacheDir()}.
+	 * @param maxSize Maximum number of bytes the cached bodies can use.
+	 * @return The installed cache.
+	 */
+	public static synchronized ServiceResponseCache install(File directory, long maxSize)
+	{
+		sInstalled = new ServiceResponseCache(directory, maxSize);
+		return sInstalled;
+	}
+
+	/**
+	 * Get the installed response cache.
+	 * @return The installed cache or <code>null</code> if none is installed.
+	 */
+	public static synchronized ServiceResponseCache getInstalled()
+	{
+		return sInstalled;
+	}
+
+	/**
+	 * Stop service calls from using the installed cache. The cached files are left on disk.
+	 */
+	public static synchronized void uninstall()
+	{
+		sInstalled = null;
+	}
+
+	/**
+	 * Get the number of bytes used by the cached bodies.
+	 * @return the cache size
+	 */
+	public synchronized long getSize()
+	{
+		return mSize;
+	}
+
+	/**
+	 * Get the maximum number of bytes the cached bodies can use.
+	 * @return the maximum cache size
+	 */
+	public long getMaxSize()
+	{
+		return mMaxSize;
+	}
+
+	/**
+	 * Remove the cached response of a service.
+	 * @param service Service whose response should be removed.
+	 */
+	public synchronized void remove(Service service)
+	{
+		removeEntry(fileName(service.getRequestKey()));
+	}
+
+	/**
+	 * Remove all cached responses.
+	 */
+	public synchronized void clear()
+	{
+		for(String name : mEntries.keySet().toArray(new String[mEntries.size()]))
+			removeEntry(name);
+	}
+
+	/**
+	 * Look up the cached response for a request.
+	 * @param requestKey Key of the request, see {@link Service#getRequestKey()}.
+	 * @return The cached entry or <code>null</code> if nothing is cached.
+	 */
+	synchronized Entry get(String requestKey)
+	{
+		String name = fileName(requestKey);
+		if(mEntries.get(name) == null)
+			return null;
+		DataInputStream in = null;
+		try
+		{
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(mDirectory, name+META_SUFFIX))));
+			if(in.readInt() != META_VERSION)
+			{
+				removeEntry(name);
+				return null;
+			}
+			Entry entry = new Entry(name);
+			entry.mETag = readNullableString(in);
+			entry.mLastModified = readNullableString(in);
+			entry.mExpires = in.readLong();
+			//keep the least recently used order across restarts.
+			new File(mDirectory, name+BODY_SUFFIX).setLastModified(System.currentTimeMillis());
+			return entry;
+		}
+		catch(IOException e)
+		{
+			Log.w(TAG, "Failed to read cache entry, removing it: "+e.getMessage());
+			removeEntry(name);
+			return null;
+		}
+		finally
+		{
+			closeQuietly(in);
+		}
+	}
+
+	/**
+	 * Open the cached body of an entry.
+	 * @param entry Entry to open.
+	 * @return A stream of the cached body.
+	 * @throws IOException if the body could not be opened, for example because it was evicted.
+	 */
+	InputStream openBody(Entry entry) throws IOException
+	{
+		return new FileInputStream(new File(mDirectory, entry.mName+BODY_SUFFIX));
+	}
+
+	/**
+	 * Add the conditional request headers for a stale entry to a request.
+	 * @param entry Cached entry of the request.
+	 * @param request Request to make conditional.
+	 */
+	void addValidators(Entry entry, HttpRequest request)
+	{
+		if(entry.mETag != null)
+			request.addHeader("If-None-Match", entry.mETag);
+		if(entry.mLastModified != null)
+			request.addHeader("If-Modified-Since", entry.mLastModified);
+	}
+
+	/**
+	 * Update the freshness of an entry after the server answered <code>304 Not Modified</code>.
+	 * @param entry Entry that was revalidated.
+	 * @param response The 304 response.
+	 */
+	synchronized void update(Entry entry, HttpResponse response)
+	{
+		Header eTag = response.getFirstHeader("ETag");
+		if(eTag != null)
+			entry.mETag = eTag.getValue();
+		Header lastModified = response.getFirstHeader("Last-Modified");
+		if(lastModified != null)
+			entry.mLastModified = lastModified.getValue();
+		long expires = computeExpires(response);
+		entry.mExpires = expires < 0 ? 0 : expires;
+		try
+		{
+			writeMeta(entry);
+		}
+		catch(IOException e)
+		{
+			Log.w(TAG, "Failed to update cache entry: "+e.getMessage());
+		}
+	}
+
+	/**
+	 * Start caching a response body. The returned stream copies the body to disk as it is read and stores it when the stream is closed.
+	 * @param requestKey Key of the request, see {@link Service#getRequestKey()}.
+	 * @param response The successful response.
+	 * @param body The body of the response.
+	 * @return A stream to read the body from. This is <code>body</code> itself if the response can not be cached.
+	 */
+	InputStream put(String requestKey, HttpResponse response, InputStream body)
+	{
+		long expires = computeExpires(response);
+		if(expires < 0)
+			return body;
+		Entry entry = new Entry(fileName(requestKey));
+		Header eTag = response.getFirstHeader("ETag");
+		entry.mETag = eTag == null ? null : eTag.getValue();
+		Header lastModified = response.getFirstHeader("Last-Modified");
+		entry.mLastModified = lastModified == null ? null : lastModified.getValue();
+		entry.mExpires = expires;
+		//a response that is neither fresh nor can be revalidated is useless to store.
+		if(entry.mETag == null && entry.mLastModified == null && expires <= System.currentTimeMillis())
+			return body;
+		File temp;
+		synchronized(this)
+		{
+			temp = new File(mDirectory, entry.mName+"."+(mTempCount++)+TEMP_SUFFIX);
+		}
+		try
+		{
+			return new CacheWritingInputStream(body, entry, temp);
+		}
+		catch(IOException e)
+		{
+			Log.w(TAG, "Failed to start caching response: "+e.getMessage());
+			return body;
+		}
+	}
+
+	/**
+	 * Compute when a response stops being fresh.
+	 * @param response Response to check.
+	 * @return The time in milliseconds the response expires, 0 if it must always be revalidated or -1 if it must not be stored.
+	 */
+	private long computeExpires(HttpResponse response)
+	{
+		long now = System.currentTimeMillis();
+		Header[] cacheControls = response.getHeaders("Cache-Control");
+		long maxAge = -1;
+		boolean noCache = false;
+		for(Header cacheControl : cacheControls)
+		{
+			for(HeaderElement element : cacheControl.getElements())
+			{
+				String name = element.getName();
+				if("no-store".equalsIgnoreCase(name))
+					return -1;
+				if("no-cache".equalsIgnoreCase(name) || "must-revalidate".equalsIgnoreCase(name))
+					noCache = true;
+				else if("max-age".equalsIgnoreCase(name) && element.getValue() != null)
+				{
+					try
+					{
+						maxAge = Long.parseLong(element.getValue());
+					}
+					catch(NumberFormatException e)
+					{
+						noCache = true;
+					}
+				}
+			}
+		}
+		if(noCache)
+			return 0;
+		if(maxAge >= 0)
+		{
+			long age = 0;
+			Header ageHeader = response.getFirstHeader("Age");
+			if(ageHeader != null)
+			{
+				try
+				{
+					age = Long.parseLong(ageHeader.getValue());
+				}
+				catch(NumberFormatException e)
+				{
+				}
+			}
+			return now + Math.max(0, maxAge - age) * 1000;
+		}
+		Header expires = response.getFirstHeader("Expires");
+		if(expires != null)
+		{
+			try
+			{
+				return DateUtils.parseDate(expires.getValue()).getTime();
+			}
+			catch(DateParseException e)
+			{
+				//an invalid date means the response is already expired.
+				return 0;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Store a fully written body and its metadata, then evict entries until the cache fits its size.
+	 */
+	private synchronized void commit(Entry entry, File temp, long length)
+	{
+		File body = new File(mDirectory, entry.mName+BODY_SUFFIX);
+		removeEntry(entry.mName);
+		if(length > mMaxSize || !temp.renameTo(body))
+		{
+			temp.delete();
+			return;
+		}
+		try
+		{
+			writeMeta(entry);
+		}
+		catch(IOException e)
+		{
+			Log.w(TAG, "Failed to write cache entry: "+e.getMessage());
+			body.delete();
+			return;
+		}
+		mEntries.put(entry.mName, length);
+		mSize += length;
+		trimToSize();
+	}
+
+	/**
+	 * Evict the least recently used entries until the cache fits its maximum size.
+	 */
+	private void trimToSize()
+	{
+		Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+		while(mSize > mMaxSize && iterator.hasNext())
+		{
+			Map.Entry<String, Long> eldest = iterator.next();
+			iterator.remove();
+			mSize -= eldest.getValue();
+			new File(mDirectory, eldest.getKey()+BODY_SUFFIX).delete();
+			new File(mDirectory, eldest.getKey()+META_SUFFIX).delete();
+		}
+	}
+
+	private void removeEntry(String name)
+	{
+		Long length = mEntries.remove(name);
+		if(length != null)
+			mSize -= length;
+		new File(mDirectory, name+BODY_SUFFIX).delete();
+		new File(mDirectory, name+META_SUFFIX).delete();
+	}
+
+	private void writeMeta(Entry entry) throws IOException
+	{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(mDirectory, entry.mName+META_SUFFIX))));
+		try
+		{
+			out.writeInt(META_VERSION);
+			writeNullableString(out, entry.mETag);
+			writeNullableString(out, entry.mLastModified);
+			out.writeLong(entry.mExpires);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * Build the index from the files already on disk, oldest first. Left over temporary files are deleted.
+	 */
+	private void loadEntries()
+	{
+		File[] files = mDirectory.listFiles();
+		if(files == null)
+			return;
+		Arrays.sort(files, new Comparator<File>()
+		{
+			@Override
+			public int compare(File lhs, File rhs)
+			{
+				long l = lhs.lastModified();
+				long r = rhs.lastModified();
+				return l < r ? -1 : (l == r ? 0 : 1);
+			}
+		});
+		for(File file : files)
+		{
+			String name = file.getName();
+			if(name.endsWith(TEMP_SUFFIX))
+				file.delete();
+			else if(name.endsWith(BODY_SUFFIX))
+			{
+				String entryName = name.substring(0, name.length()-BODY_SUFFIX.length());
+				if(new File(mDirectory, entryName+META_SUFFIX).exists())
+				{
+					mEntries.put(entryName, file.length());
+					mSize += file.length();
+				}
+				else
+					file.delete();
+			}
+		}
+		trimToSize();
+	}
+
+	/**
+	 * Get the file name of a request key.
+	 */
+	private static String fileName(String requestKey)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			byte[] hash = digest.digest(requestKey.getBytes("UTF-8"));
+			StringBuilder name = new StringBuilder(hash.length*2);
+			for(byte b : hash)
+			{
+				name.append(Character.forDigit((b >> 4) & 0xf, 16));
+				name.append(Character.forDigit(b & 0xf, 16));
+			}
+			return name.toString();
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			throw new RuntimeException(e);
+		}
+		catch(IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String readNullableString(DataInputStream in) throws IOException
+	{
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeNullableString(DataOutputStream out, String value) throws IOException
+	{
+		out.writeBoolean(value != null);
+		if(value != null)
+			out.writeUTF(value);
+	}
+
+	private static void closeQuietly(InputStream in)
+	{
+		if(in == null)
+			return;
+		try
+		{
+			in.close();
+		}
+		catch(IOException e)
+		{
+		}
+	}
+
+	/**
+	 * Metadata of a cached response.
+	 */
+	static class Entry
+	{
+		//Name of the files of this entry.
+		private final String mName;
+		private String mETag;
+		private String mLastModified;
+		//Time the response stops being fresh, 0 if it must always be revalidated.
+		private long mExpires;
+
+		private Entry(String name)
+		{
+			mName = name;
+		}
+
+		/**
+		 * Check if the entry can be used without revalidating it.
+		 * @return true if the entry is fresh.
+		 */
+		boolean isFresh()
+		{
+			return mExpires > System.currentTimeMillis();
+		}
+
+		/**
+		 * Check if the entry can be revalidated with a conditional request.
+		 * @return true if the entry has an <code>ETag</code> or <code>Last-Modified</code> validator.
+		 */
+		boolean hasValidators()
+		{
+			return mETag != null || mLastModified != null;
+		}
+	}
+
+	/**
+	 * Copies a body to a temporary file as it is read. When closed, the rest of the body is read and the file is committed to the cache.
+	 * If reading fails the temporary file is discarded.
+	 */
+	private class CacheWritingInputStream extends FilterInputStream
+	{
+		private final Entry mEntry;
+		private final File mTemp;
+		private OutputStream mOut;
+		private long mLength;
+		private boolean mFailed;
+		private boolean mClosed;
+
+		CacheWritingInputStream(InputStream in, Entry entry, File temp) throws IOException
+		{
+			super(in);
+			mEntry = entry;
+			mTemp = temp;
+			mOut = new BufferedOutputStream(new FileOutputStream(temp));
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			int b;
+			try
+			{
+				b = in.read();
+			}
+			catch(IOException e)
+			{
+				mFailed = true;
+				throw e;
+			}
+			if(b != -1)
+				write(new byte[]{(byte)b}, 0, 1);
+			return b;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int count) throws IOException
+		{
+			int read;
+			try
+			{
+				read = in.read(buffer, offset, count);
+			}
+			catch(IOException e)
+			{
+				mFailed = true;
+				throw e;
+			}
+			if(read > 0)
+				write(buffer, offset, read);
+			return read;
+		}
+
+		@Override
+		public long skip(long byteCount) throws IOException
+		{
+			//skipped bytes still need to be cached.
+			byte[] buffer = new byte[(int)Math.min(byteCount, 4096)];
+			int read = read(buffer, 0, buffer.length);
+			return read < 0 ? 0 : read;
+		}
+
+		@Override
+		public boolean markSupported()
+		{
+			return false;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			if(mClosed)
+				return;
+			mClosed = true;
+			try
+			{
+				if(!mFailed)
+				{
+					//read what the parser left so the whole body is cached.
+					byte[] buffer = new byte[4096];
+					while(read(buffer, 0, buffer.length) != -1)
+					{
+					}
+				}
+			}
+			catch(IOException e)
+			{
+				mFailed = true;
+			}
+			finally
+			{
+				try
+				{
+					mOut.close();
+				}
+				catch(IOException e)
+				{
+					mFailed = true;
+				}
+				if(mFailed)
+					mTemp.delete();
+				else
+					commit(mEntry, mTemp, mLength);
+				super.close();
+			}
+		}
+
+		private void write(byte[] buffer, int offset, int count)
+		{
+			if(mFailed)
+				return;
+			try
+			{
+				mOut.write(buffer, offset, count);
+				mLength += count;
+				if(mLength > mMaxSize)
+					mFailed = true;
+			}
+			catch(IOException e)
+			{
+				Log.w(TAG, "Failed to write to the cache: "+e.getMessage());
+				mFailed = true;
+			}
+		}
+	}
+}
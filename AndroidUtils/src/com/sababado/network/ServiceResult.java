@@ -0,0 +1,83 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+/**
+ * Outcome of a service call: either the parsed result or a {@link ServiceError}.
+ * <br/>This is what a call carries from the worker thread to its listener. A Bundle is only built for an {@link AsyncServiceListener}
+ * that is not typed, see {@link TypedServiceListener}.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public final class ServiceResult
+{
+	private final Object mResult;
+	private final ServiceError mError;
+
+	private ServiceResult(Object result, ServiceError error)
+	{
+		mResult = result;
+		mError = error;
+	}
+
+	/**
+	 * Create a successful outcome.
+	 * @param result The parsed result.
+	 */
+	static ServiceResult success(Object result)
+	{
+		return new ServiceResult(result, null);
+	}
+
+	/**
+	 * Create a failed outcome.
+	 * @param errMsg The fail message.
+	 * @param errCode The error code associated with this failure.
+	 */
+	static ServiceResult failure(String errMsg, int errCode)
+	{
+		return new ServiceResult(null, new ServiceError(errCode, errMsg));
+	}
+
+	/**
+	 * Check if the call succeeded.
+	 * @return true if there is a result, false if there is an error.
+	 */
+	public boolean isSuccess()
+	{
+		return mError == null;
+	}
+
+	/**
+	 * Get the parsed result of a successful call.
+	 * @return the result, or <code>null</code> if the call failed.
+	 */
+	public Object getResult()
+	{
+		return mResult;
+	}
+
+	/**
+	 * Get the error of a failed call.
+	 * @return the error, or <code>null</code> if the call succeeded.
+	 */
+	public ServiceError getError()
+	{
+		return mError;
+	}
+}
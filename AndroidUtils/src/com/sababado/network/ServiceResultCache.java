@@ -0,0 +1,190 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.os.SystemClock;
+
+/**
+ * <p>An in-memory cache of parsed service results, keyed by {@link Service#getRequestKey()}.</p>
+ * <p>Only {@link Service#CALL_TYPE_GET} services with a {@link Service#setResultCacheTtl(long) result cache TTL} are cached.
+ * A cache hit is delivered straight to {@link AsyncServiceListener#onServiceCallSuccess(android.os.Bundle)} without making a request
+ * or calling {@link Service#parseResults(java.io.InputStream)}. Cached results are shared between calls and should be treated as read only.</p>
+ * <p>The cache holds a bounded number of results and evicts the least recently used one when it is full.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.1
+ * @updates
+ * 1.1 holds any parsed result, not only {@link java.util.ArrayList}s, so {@link TypedService} results can be cached.<br/>
+ */
+public class ServiceResultCache
+{
+	/**
+	 * Default maximum number of cached results.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 64;
+
+	private static ServiceResultCache sDefault;
+
+	//Cached results by request key, in least recently used order.
+	private final LinkedHashMap<String, CachedResult> mEntries = new LinkedHashMap<String, CachedResult>(16, 0.75f, true);
+	//Maximum number of cached results.
+	private int mMaxEntries;
+
+	/**
+	 * Create a cache.
+	 * @param maxEntries Maximum number of results to hold.
+	 */
+	public ServiceResultCache(int maxEntries)
+	{
+		setMaxEntries(maxEntries);
+	}
+
+	/**
+	 * Get the cache used by service calls. It holds {@link #DEFAULT_MAX_ENTRIES} results unless changed with {@link #setMaxEntries(int)}.
+	 * @return the default cache.
+	 */
+	public static synchronized ServiceResultCache getDefault()
+	{
+		if(sDefault == null)
+			sDefault = new ServiceResultCache(DEFAULT_MAX_ENTRIES);
+		return sDefault;
+	}
+
+	/**
+	 * Set the maximum number of cached results. Least recently used results are evicted if there are more.
+	 * @param maxEntries Maximum number of results to hold.
+	 */
+	public synchronized void setMaxEntries(int maxEntries)
+	{
+		if(maxEntries < 1)
+			throw new IllegalArgumentException("The cache must hold at least 1 result.");
+		mMaxEntries = maxEntries;
+		trimToSize();
+	}
+
+	/**
+	 * Get the number of cached results.
+	 * @return the number of results.
+	 */
+	public synchronized int size()
+	{
+		return mEntries.size();
+	}
+
+	/**
+	 * Get the cached result of a service.
+	 * @param service Service to look up.
+	 * @return The cached result or <code>null</code> if the service is not cacheable, nothing is cached or the result expired.
+	 */
+	public synchronized Object get(Service service)
+	{
+		if(!isCacheable(service))
+			return null;
+		String key = service.getRequestKey();
+		CachedResult cached = mEntries.get(key);
+		if(cached == null)
+			return null;
+		if(cached.mExpires <= SystemClock.elapsedRealtime())
+		{
+			mEntries.remove(key);
+			return null;
+		}
+		return cached.mResult;
+	}
+
+	/**
+	 * Cache the result of a service for its {@link Service#getResultCacheTtl() TTL}. Nothing is cached if the service is not cacheable.
+	 * @param service Service the result belongs to.
+	 * @param result Parsed result.
+	 */
+	public synchronized void put(Service service, Object result)
+	{
+		if(!isCacheable(service) || result == null)
+			return;
+		mEntries.put(service.getRequestKey(), new CachedResult(service.getUrl(), result, SystemClock.elapsedRealtime() + service.getResultCacheTtl()));
+		trimToSize();
+	}
+
+	/**
+	 * Remove the cached result of a service.
+	 * @param service Service whose result is no longer valid.
+	 */
+	public synchronized void invalidate(Service service)
+	{
+		mEntries.remove(service.getRequestKey());
+	}
+
+	/**
+	 * Remove the cached results of every service with a given url, regardless of their parameters.
+	 * This is useful after a call that changes the data behind that url.
+	 * @param url Url of the services.
+	 */
+	public synchronized void invalidate(String url)
+	{
+		Iterator<CachedResult> iterator = mEntries.values().iterator();
+		while(iterator.hasNext())
+		{
+			if(iterator.next().mUrl.equals(url))
+				iterator.remove();
+		}
+	}
+
+	/**
+	 * Remove all cached results.
+	 */
+	public synchronized void invalidateAll()
+	{
+		mEntries.clear();
+	}
+
+	private static boolean isCacheable(Service service)
+	{
+		return service.getCallType() == Service.CALL_TYPE_GET && service.getResultCacheTtl() > 0;
+	}
+
+	private void trimToSize()
+	{
+		Iterator<Map.Entry<String, CachedResult>> iterator = mEntries.entrySet().iterator();
+		while(mEntries.size() > mMaxEntries && iterator.hasNext())
+		{
+			iterator.next();
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * A cached result and when it expires.
+	 */
+	private static class CachedResult
+	{
+		private final String mUrl;
+		private final Object mResult;
+		//Expiration time based on SystemClock.elapsedRealtime()
+		private final long mExpires;
+
+		CachedResult(String url, Object result, long expires)
+		{
+			mUrl = url;
+			mResult = result;
+			mExpires = expires;
+		}
+	}
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+/**
+ * A listener that takes the {@link ServiceResult} of a call as it is, without a Bundle being built for it.
+ * <br/>Used by the listeners inside this package that pass results on to other listeners.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+interface ServiceResultListener extends AsyncServiceListener
+{
+	/**
+	 * Call back for when the call has completed, successfully or not.
+	 * @param result Outcome of the call.
+	 */
+	void onServiceResult(ServiceResult result);
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import android.os.SystemClock;
+
+/**
+ * <p>Records what service calls do as a fixed size ring of typed events: the call's id, the phase it reached, the time, a code and a value.
+ * Events are kept in arrays of primitives that are allocated once when tracing is turned on, so recording an event allocates nothing,
+ * and a disabled tracer only costs a field read. The newest events overwrite the oldest ones.</p>
+ * <p>Turn it on with {@link #enable(int)} and read it with {@link #dump()}, for example from a hidden diagnostics screen or a bug report.
+ * Calls are identified by {@link AsyncServiceCallTask#getCallId()}.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public final class ServiceTracer
+{
+	/**
+	 * Default number of events kept.
+	 */
+	public static final int DEFAULT_CAPACITY = 512;
+
+	/**
+	 * The task was executed. Value: nothing.
+	 */
+	public static final int PHASE_EXECUTED = 0;
+	/**
+	 * A worker thread started the call. Value: milliseconds the call waited for it.
+	 */
+	public static final int PHASE_STARTED = 1;
+	/**
+	 * The result came from the {@link ServiceResultCache}.
+	 */
+	public static final int PHASE_RESULT_CACHE_HIT = 2;
+	/**
+	 * A fresh response came from the {@link ServiceResponseCache}.
+	 */
+	public static final int PHASE_RESPONSE_CACHE_HIT = 3;
+	/**
+	 * An attempt is made. Value: number of the attempt, starting at 1.
+	 */
+	public static final int PHASE_ATTEMPT = 4;
+	/**
+	 * An attempt got a response. Code: HTTP status. Value: milliseconds the attempt took.
+	 */
+	public static final int PHASE_RESPONSE = 5;
+	/**
+	 * An attempt failed without a response. Value: milliseconds the attempt took.
+	 */
+	public static final int PHASE_IO_ERROR = 6;
+	/**
+	 * The call will be retried. Value: milliseconds until the retry.
+	 */
+	public static final int PHASE_RETRY = 7;
+	/**
+	 * The response was parsed. Value: milliseconds spent parsing, not counting the download.
+	 */
+	public static final int PHASE_PARSED = 8;
+	/**
+	 * The call succeeded. Value: total milliseconds of the call.
+	 */
+	public static final int PHASE_SUCCESS = 9;
+	/**
+	 * The call failed. Code: the AsyncServiceCallTask.ERR_CODE_* constant or HTTP status. Value: total milliseconds of the call.
+	 */
+	public static final int PHASE_FAILURE = 10;
+	/**
+	 * The call was cancelled. Value: total milliseconds of the call.
+	 */
+	public static final int PHASE_CANCELLED = 11;
+
+	private static final String[] PHASE_NAMES = { "EXECUTED", "STARTED", "RESULT_CACHE_HIT", "RESPONSE_CACHE_HIT", "ATTEMPT",
+			"RESPONSE", "IO_ERROR", "RETRY", "PARSED", "SUCCESS", "FAILURE", "CANCELLED" };
+
+	private static final ServiceTracer sInstance = new ServiceTracer();
+
+	private volatile boolean mEnabled;
+	private long[] mTimes;
+	private int[] mCallIds;
+	private byte[] mPhases;
+	private int[] mCodes;
+	private long[] mValues;
+	//Index the next event is written to.
+	private int mNext;
+	//Number of events recorded since tracing was turned on, some may have been overwritten.
+	private long mRecorded;
+
+	private ServiceTracer()
+	{
+	}
+
+	/**
+	 * Get the tracer service calls record to.
+	 */
+	public static ServiceTracer getInstance()
+	{
+		return sInstance;
+	}
+
+	/**
+	 * Turn tracing on and forget previous events.
+	 * @param capacity Number of events kept, use {@link #DEFAULT_CAPACITY} if unsure.
+	 */
+	public synchronized void enable(int capacity)
+	{
+		if(capacity < 1)
+			throw new IllegalArgumentException("At least 1 event must be kept.");
+		mTimes = new long[capacity];
+		mCallIds = new int[capacity];
+		mPhases = new byte[capacity];
+		mCodes = new int[capacity];
+		mValues = new long[capacity];
+		mNext = 0;
+		mRecorded = 0;
+		mEnabled = true;
+	}
+
+	/**
+	 * Turn tracing off and let go of the recorded events.
+	 */
+	public synchronized void disable()
+	{
+		mEnabled = false;
+		mTimes = null;
+		mCallIds = null;
+		mPhases = null;
+		mCodes = null;
+		mValues = null;
+	}
+
+	/**
+	 * Check if events are recorded.
+	 */
+	public boolean isEnabled()
+	{
+		return mEnabled;
+	}
+
+	/**
+	 * Record an event if tracing is on.
+	 * @param callId Id of the call.
+	 * @param phase A ServiceTracer.PHASE_* constant.
+	 * @param code Code of the event, see the phase.
+	 * @param value Value of the event, see the phase.
+	 */
+	public void trace(int callId, int phase, int code, long value)
+	{
+		if(!mEnabled)
+			return;
+		long time = SystemClock.elapsedRealtime();
+		synchronized(this)
+		{
+			//tracing may have been turned off since the check.
+			if(mTimes == null)
+				return;
+			int i = mNext;
+			mTimes[i] = time;
+			mCallIds[i] = callId;
+			mPhases[i] = (byte)phase;
+			mCodes[i] = code;
+			mValues[i] = value;
+			mNext = i + 1 == mTimes.length ? 0 : i + 1;
+			mRecorded++;
+		}
+	}
+
+	/**
+	 * Write the recorded events, oldest first, one per line: time in milliseconds relative to the newest event, call id, phase, code and value.
+	 * @param writer Writer to write to.
+	 */
+	public synchronized void dump(PrintWriter writer)
+	{
+		if(mTimes == null)
+		{
+			writer.println("Service tracing is off.");
+			return;
+		}
+		int count = (int)Math.min(mRecorded, mTimes.length);
+		writer.println("Service trace: "+count+" of "+mRecorded+" events");
+		int first = count < mTimes.length ? 0 : mNext;
+		long newest = count == 0 ? 0 : mTimes[(first + count - 1) % mTimes.length];
+		for(int n=0; n<count; n++)
+		{
+			int i = (first + n) % mTimes.length;
+			int phase = mPhases[i];
+			writer.print(mTimes[i] - newest);
+			writer.print("ms #");
+			writer.print(mCallIds[i]);
+			writer.print(' ');
+			writer.print(phase >= 0 && phase < PHASE_NAMES.length ? PHASE_NAMES[phase] : String.valueOf(phase));
+			writer.print(" code=");
+			writer.print(mCodes[i]);
+			writer.print(" value=");
+			writer.println(mValues[i]);
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Get the recorded events as text, see {@link #dump(PrintWriter)}.
+	 * @return the events.
+	 */
+	public String dump()
+	{
+		StringWriter out = new StringWriter();
+		dump(new PrintWriter(out));
+		return out.toString();
+	}
+}
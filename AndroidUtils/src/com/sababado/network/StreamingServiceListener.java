@@ -0,0 +1,40 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.util.ArrayList;
+
+/**
+ * <p>An {@link AsyncServiceListener} that receives parsed items in batches while the response is still being downloaded and parsed,
+ * so the first screenful can be shown before the whole result is available.</p>
+ * <p>Items are only delivered for services that emit them from {@link Service#parseResults(java.io.InputStream, ServiceItemEmitter)}.
+ * {@link #onServiceCallSuccess(android.os.Bundle)} is still called with the complete result once parsing is done, after the last batch.
+ * Results served from the {@link ServiceResultCache} are only delivered to {@link #onServiceCallSuccess(android.os.Bundle)}.</p>
+ * <p>Batch sizes are set with {@link AsyncServiceCallTask#setStreamingBatch(int, long)}.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public interface StreamingServiceListener extends AsyncServiceListener
+{
+	/**
+	 * Call back, on the main thread, with the next batch of parsed items.
+	 * @param items Items parsed since the last batch, in order.
+	 */
+	@SuppressWarnings("rawtypes")
+	public void onServiceCallItems(ArrayList items);
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Adds up the time spent waiting in reads of a response body, so downloading can be told apart from parsing.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+class TimingInputStream extends FilterInputStream
+{
+	//Time spent in reads, in nanoseconds.
+	private long mReadTime;
+
+	TimingInputStream(InputStream in)
+	{
+		super(in);
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		long start = System.nanoTime();
+		try
+		{
+			return super.read();
+		}
+		finally
+		{
+			mReadTime += System.nanoTime() - start;
+		}
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int count) throws IOException
+	{
+		long start = System.nanoTime();
+		try
+		{
+			return super.read(buffer, offset, count);
+		}
+		finally
+		{
+			mReadTime += System.nanoTime() - start;
+		}
+	}
+
+	@Override
+	public long skip(long count) throws IOException
+	{
+		long start = System.nanoTime();
+		try
+		{
+			return super.skip(count);
+		}
+		finally
+		{
+			mReadTime += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Get the time spent in reads.
+	 * @return time in milliseconds.
+	 */
+	long getReadTime()
+	{
+		return mReadTime / 1000000;
+	}
+}
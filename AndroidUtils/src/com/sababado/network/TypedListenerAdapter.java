@@ -0,0 +1,65 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import android.os.Bundle;
+
+/**
+ * Lets a {@link TypedServiceListener} be used wherever an {@link AsyncServiceListener} is expected.
+ * Results are handed to it as they are through {@link ServiceResultListener}.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+class TypedListenerAdapter<T> implements ServiceResultListener
+{
+	private final TypedServiceListener<T> mListener;
+
+	TypedListenerAdapter(TypedServiceListener<T> listener)
+	{
+		mListener = listener;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void onServiceResult(ServiceResult result)
+	{
+		if(result.isSuccess())
+			mListener.onServiceCallResult((T)result.getResult());
+		else
+			mListener.onServiceCallError(result.getError());
+	}
+
+	@Override
+	public void onServiceCallProgressUpdate(String[] progress)
+	{
+		mListener.onServiceCallProgressUpdate(progress);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void onServiceCallSuccess(Bundle success)
+	{
+		mListener.onServiceCallResult((T)success.getSerializable(AsyncServiceCallTask.EXTRA_SERVICE_RESULT));
+	}
+
+	@Override
+	public void onServiceCallFailure(String errMsg, int errCode)
+	{
+		mListener.onServiceCallError(new ServiceError(errCode, errMsg));
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * A {@link Service} whose parsed result has a type. The result goes from the parser to a {@link TypedServiceListener} as it is,
+ * without being put into a Bundle or cast by the caller.
+ * <br/>Extend this and implement {@link #parse(InputStream)} instead of {@link #parseResults(InputStream)}.
+ * An {@link AsyncServiceListener} can still be used with a typed service, it gets the result under
+ * {@link AsyncServiceCallTask#EXTRA_SERVICE_RESULT}, wrapped in an {@link ArrayList} if the result is not {@link java.io.Serializable}.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ * @param <T> Type of the parsed result.
+ */
+public abstract class TypedService<T> extends Service
+{
+	/**
+	 * Create a typed service.
+	 * @param url Url of the service.
+	 * @param callType Use a Service.CALL_TYPE_* constant.
+	 * @param paramNames Names of the parameters.
+	 * @param paramValues Values of the parameters.
+	 */
+	public TypedService(String url, int callType, String[] paramNames, String[] paramValues)
+	{
+		super(url, callType, paramNames, paramValues);
+	}
+
+	/**
+	 * Define parsing logic here.
+	 * @param is {@link InputStream} that contains the successful response from the service call
+	 * @return The parsed result.
+	 * @throws XmlPullParserException
+	 * @throws IOException
+	 */
+	public abstract T parse(InputStream is) throws XmlPullParserException, IOException;
+
+	/**
+	 * Parse the response with {@link #parse(InputStream)}.
+	 * @return An {@link ArrayList} holding the parsed result as its only item.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Override
+	public final ArrayList parseResults(InputStream is) throws XmlPullParserException, IOException
+	{
+		ArrayList result = new ArrayList(1);
+		result.add(parse(is));
+		return result;
+	}
+
+	@Override
+	Object parseBody(InputStream is, ServiceItemEmitter emitter) throws XmlPullParserException, IOException
+	{
+		return parse(is);
+	}
+}
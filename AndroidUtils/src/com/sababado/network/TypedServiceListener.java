@@ -0,0 +1,47 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+/**
+ * Callbacks of a {@link TypedService} call. The parsed result is handed over as it is, with no Bundle, no serialization and no cast.
+ * <br/>Submit it with {@link ServiceExecutor#submit(TypedServiceListener, TypedService, android.content.Context)} or
+ * {@link AsyncServiceCallTask#AsyncServiceCallTask(TypedServiceListener, TypedService, android.content.Context)}.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ * @param <T> Type of the parsed result.
+ */
+public interface TypedServiceListener<T>
+{
+	/**
+	 * Call back for when the {@link AsyncServiceCallTask} wants to relay progress updates about the service call.
+	 * @param progress An array of strings, or various progress updates.
+	 */
+	public void onServiceCallProgressUpdate(String[] progress);
+
+	/**
+	 * Call back for when the service call has successfully completed.
+	 * @param result The parsed result, as returned by {@link TypedService#parse(java.io.InputStream)}.
+	 */
+	public void onServiceCallResult(T result);
+
+	/**
+	 * Call back for when the service call has failed.
+	 * @param error Why the call failed.
+	 */
+	public void onServiceCallError(ServiceError error);
+}
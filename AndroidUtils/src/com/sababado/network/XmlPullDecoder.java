@@ -0,0 +1,128 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import android.util.Xml;
+
+/**
+ * <p>A {@link ResponseDecoder} for XML responses. Every element with the item tag, at any depth, becomes an item; its attributes and the
+ * text of its direct child elements are set with an {@link ItemMapping}. For example with the item tag <code>"post"</code>
+ * <pre>&lt;posts&gt;&lt;post id="1"&gt;&lt;title&gt;Hello&lt;/title&gt;&lt;/post&gt;...&lt;/posts&gt;</pre>
+ * Child elements that are not mapped are skipped, a mapped child element must only contain text.</p>
+ * <p>The response is read with an {@link XmlPullParser} as it arrives. Each worker thread keeps one parser and reuses it for every call
+ * instead of creating a new parser per call.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ * @param <T> Type of the decoded items.
+ */
+public class XmlPullDecoder<T> implements ResponseDecoder
+{
+	private static final ThreadLocal<XmlPullParser> sParser = new ThreadLocal<XmlPullParser>()
+	{
+		@Override
+		protected XmlPullParser initialValue()
+		{
+			return Xml.newPullParser();
+		}
+	};
+
+	private final String mItemTag;
+	private final ItemMapping<T> mMapping;
+
+	/**
+	 * Create a decoder.
+	 * @param itemTag Name of the element of an item.
+	 * @param mapping How an item element maps to an item.
+	 */
+	public XmlPullDecoder(String itemTag, ItemMapping<T> mapping)
+	{
+		mItemTag = itemTag;
+		mMapping = mapping;
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Override
+	public ArrayList decode(Service service, InputStream is, ServiceItemEmitter emitter) throws XmlPullParserException, IOException
+	{
+		XmlPullParser parser = sParser.get();
+		parser.setInput(is, null);
+		try
+		{
+			ArrayList result = new ArrayList();
+			T item = null;
+			int itemDepth = 0;
+			int event = parser.getEventType();
+			while(event != XmlPullParser.END_DOCUMENT && !service.isCancelled())
+			{
+				if(event == XmlPullParser.START_TAG)
+				{
+					if(item == null)
+					{
+						if(mItemTag.equals(parser.getName()))
+						{
+							item = mMapping.create();
+							itemDepth = parser.getDepth();
+							if(mMapping.hasAttributes())
+								setAttributes(parser, item);
+						}
+					}
+					else if(parser.getDepth() == itemDepth + 1)
+					{
+						FieldSetter<? super T> setter = mMapping.getField(parser.getName());
+						//nextText() leaves the parser on the end tag of the field.
+						if(setter != null)
+							setter.set(item, parser.nextText());
+					}
+				}
+				else if(event == XmlPullParser.END_TAG && item != null && parser.getDepth() == itemDepth)
+				{
+					result.add(item);
+					if(emitter != null)
+						emitter.emit(item);
+					item = null;
+				}
+				event = parser.next();
+			}
+			return result;
+		}
+		finally
+		{
+			//do not keep the stream of this call alive through the shared parser.
+			parser.setInput((Reader)null);
+		}
+	}
+
+	private void setAttributes(XmlPullParser parser, T item)
+	{
+		int count = parser.getAttributeCount();
+		for(int i=0; i<count; i++)
+		{
+			FieldSetter<? super T> setter = mMapping.getAttribute(parser.getAttributeName(i));
+			if(setter != null)
+				setter.set(item, parser.getAttributeValue(i));
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.utils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+
+/**
+ * Keeps the state of the active network, updated from connectivity broadcasts, so it can be checked without asking the
+ * {@link ConnectivityManager} every time.
+ * <br/>A network is considered metered unless it is Wi-Fi or ethernet.
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.0
+ */
+public class ConnectivityMonitor
+{
+	/**
+	 * Policy that allows any network.
+	 */
+	public static final int POLICY_ANY = 0;
+	/**
+	 * Policy that allows any network that is not roaming.
+	 */
+	public static final int POLICY_NOT_ROAMING = 1;
+	/**
+	 * Policy that only allows networks that are not metered, such as Wi-Fi.
+	 */
+	public static final int POLICY_UNMETERED = 2;
+	/**
+	 * Network type when there is no active network.
+	 */
+	public static final int TYPE_NONE = -1;
+
+	/**
+	 * Listener for changes of the active network.
+	 */
+	public interface OnConnectivityChangedListener
+	{
+		/**
+		 * Called on the main thread when the active network changed.
+		 * @param monitor The monitor, with the new state.
+		 */
+		public void onConnectivityChanged(ConnectivityMonitor monitor);
+	}
+
+	private static ConnectivityMonitor sInstance;
+
+	private final ConnectivityManager mConnectivityManager;
+	private final List<OnConnectivityChangedListener> mListeners = new CopyOnWriteArrayList<OnConnectivityChangedListener>();
+	private volatile boolean mAvailable;
+	private volatile int mType = TYPE_NONE;
+	private volatile boolean mRoaming;
+
+	private ConnectivityMonitor(Context context)
+	{
+		mConnectivityManager = (ConnectivityManager) (context.getSystemService(Context.CONNECTIVITY_SERVICE));
+		update();
+		context.registerReceiver(new BroadcastReceiver()
+		{
+			@Override
+			public void onReceive(Context context, Intent intent)
+			{
+				update();
+				for(OnConnectivityChangedListener listener : mListeners)
+					listener.onConnectivityChanged(ConnectivityMonitor.this);
+			}
+		}, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+	}
+
+	/**
+	 * Get the monitor, starting it the first time.
+	 * @param context Any context, the application context is used.
+	 * @return the monitor
+	 */
+	public static synchronized ConnectivityMonitor getInstance(Context context)
+	{
+		if(sInstance == null)
+			sInstance = new ConnectivityMonitor(context.getApplicationContext());
+		return sInstance;
+	}
+
+	/**
+	 * Add a listener for changes of the active network.
+	 * @param listener Listener to add.
+	 */
+	public void addListener(OnConnectivityChangedListener listener)
+	{
+		mListeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener.
+	 * @param listener Listener to remove.
+	 */
+	public void removeListener(OnConnectivityChangedListener listener)
+	{
+		mListeners.remove(listener);
+	}
+
+	/**
+	 * Check if there is an active network.
+	 * @return True if a network exists, false if not.
+	 */
+	public boolean isNetworkAvailable()
+	{
+		return mAvailable;
+	}
+
+	/**
+	 * Get the type of the active network.
+	 * @return A ConnectivityManager.TYPE_* constant, or {@link #TYPE_NONE} if there is no active network.
+	 */
+	public int getNetworkType()
+	{
+		return mType;
+	}
+
+	/**
+	 * Check if the active network is metered. Everything but Wi-Fi and ethernet is considered metered.
+	 * @return true if the network is metered, false if it is not or there is no network.
+	 */
+	public boolean isMetered()
+	{
+		int type = mType;
+		return type != TYPE_NONE && type != ConnectivityManager.TYPE_WIFI && type != ConnectivityManager.TYPE_ETHERNET;
+	}
+
+	/**
+	 * Check if the active network is roaming.
+	 * @return true if the network is roaming.
+	 */
+	public boolean isRoaming()
+	{
+		return mRoaming;
+	}
+
+	/**
+	 * Check if the active network is allowed by a policy.
+	 * @param policy A POLICY_* constant.
+	 * @return true if the network is allowed. {@link #POLICY_ANY} allows calls even without a network so they can fail or be queued as usual.
+	 */
+	public boolean isAllowed(int policy)
+	{
+		switch(policy)
+		{
+			case POLICY_NOT_ROAMING:
+				return mAvailable && !mRoaming;
+			case POLICY_UNMETERED:
+				return mAvailable && !isMetered();
+			default:
+				return true;
+		}
+	}
+
+	/**
+	 * Read the state of the active network.
+	 */
+	private void update()
+	{
+		NetworkInfo activeNetworkInfo = mConnectivityManager.getActiveNetworkInfo();
+		mAvailable = activeNetworkInfo != null;
+		mType = activeNetworkInfo == null ? TYPE_NONE : activeNetworkInfo.getType();
+		mRoaming = activeNetworkInfo != null && activeNetworkInfo.isRoaming();
+	}
+}
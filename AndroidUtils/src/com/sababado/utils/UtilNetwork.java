@@ -20,28 +20,25 @@ import com.sababado.androidutils.R;
 
 import android.content.Context;
 import android.content.res.Resources;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 
 /**
  * Android network related Utility functions
  * @author Robert J. Szabo
  * @since 08/27/2012
- * @version 1.0
+ * @version 1.1
+ * @updates
+ * 1.1 network availability comes from the {@link ConnectivityMonitor}.<br/>
  */
 public class UtilNetwork
 {
 	/**
-	 * Checks if there is an Internet connection
+	 * Checks if there is an Internet connection. The state is cached by the {@link ConnectivityMonitor} and kept up to date from connectivity broadcasts.
 	 * @param context The context to use to check the Internet connection
 	 * @return True if a connection exists, false if not.
 	 */
 	public static boolean isNetworkAvailable(Context context)
 	{
-	    ConnectivityManager connectivityManager 
-	          = (ConnectivityManager) (context.getSystemService(Context.CONNECTIVITY_SERVICE));
-	    NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
-	    return activeNetworkInfo != null;
+		return ConnectivityMonitor.getInstance(context).isNetworkAvailable();
 	}
 	
 	/**
@@ -19,6 +19,7 @@ package com.sababado.widget;
 import java.io.Serializable;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.List;
 
 import android.os.Parcelable;
 import android.util.Log;
@@ -35,7 +36,9 @@ import com.sababado.content.SearchableList;
  * Most of the standard adapter methods are overriden to work with the {@link Filterable} data set.
  * @author Robert Szabo
  * @since 01/20/2013
- * @version 1.0
+ * @version 1.1
+ * @updates
+ * 1.1 added {@link #appendListData(ArrayList)} and {@link #replaceListData(int, List)} for lists that are loaded page by page.<br/>
  */
 public abstract class FilterableBaseAdapter extends BaseAdapter implements Filterable
 {
@@ -143,6 +146,45 @@ public abstract class FilterableBaseAdapter extends BaseAdapter implements Filte
 			mGenericLists = new GenericLists<T>(listData);
 	}
 	
+	/**
+	 * Add data to the end of the list. If the list is filtered the new data is filtered with the current constraint.
+	 * Be sure to call {@link #notifyDataSetChanged()} after this to refresh the list.
+	 * @param listData Data to add.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> void appendListData(ArrayList<T> listData)
+	{
+		if(mGenericLists == null)
+			setListData(new ArrayList<T>(listData));
+		else
+			((GenericLists<T>)mGenericLists).append(listData);
+	}
+	
+	/**
+	 * Replace items of the original list, starting at a position. If the list is not filtered the same items are replaced in the filtered list.
+	 * This is used to release the items of pages that are far from the visible part of a long list by replacing them with <code>null</code>
+	 * placeholders, and to put them back when they are loaded again. {@link #getView(int, View, ViewGroup)} should show a placeholder row
+	 * for <code>null</code> items.
+	 * Be sure to call {@link #notifyDataSetChanged()} after this to refresh the list.
+	 * @param position Position of the first item to replace in the original list.
+	 * @param items New items, may contain <code>null</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> void replaceListData(int position, List<T> items)
+	{
+		if(mGenericLists != null)
+			((GenericLists<T>)mGenericLists).replace(position, items);
+	}
+	
+	/**
+	 * Check if the list is currently filtered by a constraint.
+	 * @return true if the filtered list is a subset of the original list.
+	 */
+	public boolean isFiltered()
+	{
+		return mGenericLists != null && mGenericLists.mConstraint != null && mGenericLists.mConstraint.length() > 0;
+	}
+	
 	/**
 	 * Get the Original list data managed by this adapter
 	 * @return
@@ -194,6 +236,10 @@ public abstract class FilterableBaseAdapter extends BaseAdapter implements Filte
 		 * The filtered data list
 		 */
 		ArrayList<T> mFilteredListData;
+		/**
+		 * The constraint the filtered list was built with, null if it was never filtered.
+		 */
+		CharSequence mConstraint;
 
 		/**
 		 * Create a new object with a given list of data. This data is set as the base list.
@@ -225,6 +271,45 @@ public abstract class FilterableBaseAdapter extends BaseAdapter implements Filte
 			return null;
 		}
 
+		/**
+		 * Add data to the end of the lists, filtering it with the current constraint.
+		 * @param listData Data to add.
+		 */
+		@SuppressWarnings("unchecked")
+		void append(ArrayList<T> listData)
+		{
+			mListData.addAll(listData);
+			if(mFilteredListData == null)
+				return;
+			if(mConstraint == null || mConstraint.length() == 0)
+				mFilteredListData.addAll(listData);
+			else
+			{
+				ArrayList<?> filt = FilterableBaseAdapter.this.performFiltering(new ArrayList<T>(listData), mConstraint);
+				if(filt != null)
+					mFilteredListData.addAll((ArrayList<T>)filt);
+			}
+		}
+
+		/**
+		 * Replace items of the original list, and of the filtered list if it is not filtered.
+		 * @param position Position of the first item to replace.
+		 * @param items New items.
+		 */
+		void replace(int position, List<T> items)
+		{
+			boolean mirror = mFilteredListData != null && (mConstraint == null || mConstraint.length() == 0)
+					&& mFilteredListData.size() == mListData.size();
+			int end = Math.min(mListData.size(), position + items.size());
+			for(int i=position; i<end; i++)
+			{
+				T item = items.get(i - position);
+				mListData.set(i, item);
+				if(mirror)
+					mFilteredListData.set(i, item);
+			}
+		}
+
 		/**
 		 * Factory method to get the List Filter.
 		 * 
@@ -269,6 +354,7 @@ public abstract class FilterableBaseAdapter extends BaseAdapter implements Filte
 			protected void publishResults(CharSequence constraint, FilterResults results)
 			{
 				Log.v(TAG, "constraint: "+constraint );
+				mConstraint = constraint;
 				Log.v(TAG, "mFilteredListData is null? "+(mFilteredListData == null));
 				if(mFilteredListData == null)
 					mFilteredListData = new ArrayList<T>();
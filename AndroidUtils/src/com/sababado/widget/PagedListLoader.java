@@ -0,0 +1,457 @@
+/*
+ * Copyright [2012] [Robert James Szabo]
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package com.sababado.widget;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.widget.AbsListView;
+
+import com.sababado.network.AsyncServiceCallTask;
+import com.sababado.network.AsyncServiceListener;
+import com.sababado.network.PagedService;
+import com.sababado.network.ServiceCall;
+import com.sababado.network.ServiceExecutor;
+
+/**
+ * <p>Loads the pages of a {@link PagedService} into a {@link FilterableBaseAdapter} as its list scrolls.
+ * Set it as the list's {@link AbsListView.OnScrollListener} and call {@link #start()}.</p>
+ * <p>The next page is requested when the last visible item is within the {@link #setPrefetchDistance(int) prefetch distance} of the end of
+ * what has been requested so far. Up to {@link #setMaxPagesInFlight(int) max pages in flight} pages are loaded at the same time and pages
+ * are appended to the adapter in order. Pages addressed by cursor are loaded one at a time since each needs the cursor of the page before it.</p>
+ * <p>For very long lists {@link #setMaxPagesInMemory(int)} limits how many pages around the visible items are kept. The items of pages further
+ * away are replaced with <code>null</code> placeholders, which keeps the list's positions and scroll bar stable, and the pages are loaded again
+ * when the list scrolls back to them. Pages are not released while the adapter is filtered.</p>
+ * <p>Only use a loader from the main thread.</p>
+ * @author Robert J. Szabo
+ * @since 10/17/2026
+ * @version 1.1
+ * @updates
+ * 1.1 the next cursor and the end of the list are read from the {@link PagedService.PageResult}, so cached and shared pages continue paging.<br/>
+ */
+public class PagedListLoader implements AbsListView.OnScrollListener
+{
+	/**
+	 * Listener for pages being loaded.
+	 */
+	public interface OnPageLoadListener
+	{
+		/**
+		 * Called when a page was added to the adapter or loaded again after it was released.
+		 * @param page Index of the page, starting at 0.
+		 * @param hasMore true if there are more pages after the last loaded page.
+		 */
+		public void onPageLoaded(int page, boolean hasMore);
+
+		/**
+		 * Called when a page failed to load. No further pages are loaded until {@link PagedListLoader#retry()} is called.
+		 * @param page Index of the page, starting at 0.
+		 * @param errMsg The fail message.
+		 * @param errCode The error code associated with this failure.
+		 */
+		public void onPageFailed(int page, String errMsg, int errCode);
+	}
+
+	/**
+	 * Default number of items from the end of the list at which the next page is requested.
+	 */
+	public static final int DEFAULT_PREFETCH_DISTANCE = 10;
+	/**
+	 * Default number of pages loaded at the same time.
+	 */
+	public static final int DEFAULT_MAX_PAGES_IN_FLIGHT = 2;
+
+	private static final int STATE_LOADING = 0;
+	//loaded but waiting for an earlier page before it can be appended.
+	private static final int STATE_WAITING = 1;
+	private static final int STATE_LOADED = 2;
+	private static final int STATE_RELEASED = 3;
+	private static final int STATE_FAILED = 4;
+
+	private final Context mContext;
+	private final FilterableBaseAdapter mAdapter;
+	private final PagedService mService;
+	private ServiceExecutor mExecutor;
+	private OnPageLoadListener mListener;
+	private int mPrefetchDistance = DEFAULT_PREFETCH_DISTANCE;
+	private int mMaxPagesInFlight = DEFAULT_MAX_PAGES_IN_FLIGHT;
+	//0 to keep every page.
+	private int mMaxPagesInMemory;
+
+	//Requested pages, by index.
+	private final ArrayList<Page> mPages = new ArrayList<Page>();
+	//Number of pages at the start of mPages that were appended to the adapter.
+	private int mAppendedPages;
+	private int mInFlight;
+	private boolean mEndReached;
+	private boolean mFailed;
+	private int mFirstVisible;
+	private int mVisibleCount;
+
+	/**
+	 * Create a loader.
+	 * @param ctx Invoking context
+	 * @param adapter Adapter to add the pages to. Its data is replaced when loading starts.
+	 * @param service The paged service, each page is loaded with a copy made by {@link PagedService#forPage(int, String)}.
+	 */
+	public PagedListLoader(Context ctx, FilterableBaseAdapter adapter, PagedService service)
+	{
+		mContext = ctx;
+		mAdapter = adapter;
+		mService = service;
+	}
+
+	/**
+	 * Set the executor pages are loaded with, by default the {@link ServiceExecutor#getDefault() default executor}.
+	 * @param executor Executor to use.
+	 */
+	public void setExecutor(ServiceExecutor executor)
+	{
+		mExecutor = executor;
+	}
+
+	/**
+	 * Set a listener for pages being loaded.
+	 * @param listener Listener, or null.
+	 */
+	public void setOnPageLoadListener(OnPageLoadListener listener)
+	{
+		mListener = listener;
+	}
+
+	/**
+	 * Set how close to the end of the list the last visible item must be for the next page to be requested.
+	 * @param prefetchDistance Number of items.
+	 */
+	public void setPrefetchDistance(int prefetchDistance)
+	{
+		mPrefetchDistance = Math.max(0, prefetchDistance);
+	}
+
+	/**
+	 * Set the number of pages loaded at the same time.
+	 * @param maxPagesInFlight Number of pages, at least 1.
+	 */
+	public void setMaxPagesInFlight(int maxPagesInFlight)
+	{
+		if(maxPagesInFlight < 1)
+			throw new IllegalArgumentException("At least 1 page must be loaded at a time.");
+		mMaxPagesInFlight = maxPagesInFlight;
+	}
+
+	/**
+	 * Set the number of pages around the visible items whose items are kept. Items of other pages are released.
+	 * @param maxPagesInMemory Number of pages, or 0 to keep every page.
+	 */
+	public void setMaxPagesInMemory(int maxPagesInMemory)
+	{
+		mMaxPagesInMemory = Math.max(0, maxPagesInMemory);
+	}
+
+	/**
+	 * Start loading from the first page, clearing the adapter and anything loaded before.
+	 */
+	public void start()
+	{
+		cancel();
+		mPages.clear();
+		mAppendedPages = 0;
+		mEndReached = false;
+		mFailed = false;
+		mAdapter.setListData(new ArrayList<Object>());
+		mAdapter.notifyDataSetChanged();
+		update();
+	}
+
+	/**
+	 * Load the pages that failed again and continue loading.
+	 */
+	public void retry()
+	{
+		mFailed = false;
+		for(Page page : mPages)
+		{
+			if(page.mState == STATE_FAILED)
+				load(page);
+		}
+		update();
+	}
+
+	/**
+	 * Cancel the pages being loaded, for example when the list is destroyed. Call {@link #retry()} to continue loading.
+	 */
+	public void cancel()
+	{
+		for(Page page : mPages)
+		{
+			if(page.mState == STATE_LOADING && page.mCall != null && page.mCall.cancel())
+			{
+				mInFlight--;
+				page.mState = page.mStart >= 0 ? STATE_RELEASED : STATE_FAILED;
+				if(page.mStart < 0)
+					mFailed = true;
+			}
+		}
+	}
+
+	/**
+	 * Check if every page has been loaded.
+	 * @return true if the last page was reached.
+	 */
+	public boolean isEndReached()
+	{
+		return mEndReached;
+	}
+
+	/**
+	 * Check if pages are being loaded.
+	 * @return true if a page is in flight.
+	 */
+	public boolean isLoading()
+	{
+		return mInFlight > 0;
+	}
+
+	@Override
+	public void onScrollStateChanged(AbsListView view, int scrollState)
+	{
+	}
+
+	@Override
+	public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount)
+	{
+		mFirstVisible = firstVisibleItem;
+		mVisibleCount = visibleItemCount;
+		update();
+	}
+
+	/**
+	 * Release far pages, reload near released pages and request the next pages as needed.
+	 */
+	private void update()
+	{
+		if(mMaxPagesInMemory > 0 && !mAdapter.isFiltered())
+		{
+			int pageSize = mService.getPageSize();
+			int center = (mFirstVisible + mVisibleCount / 2) / pageSize;
+			int first = center - (mMaxPagesInMemory - 1) / 2;
+			int last = first + mMaxPagesInMemory - 1;
+			boolean released = false;
+			for(int i=0; i<mAppendedPages; i++)
+			{
+				Page page = mPages.get(i);
+				boolean near = i >= first && i <= last;
+				if(!near && page.mState == STATE_LOADED)
+				{
+					mAdapter.replaceListData(page.mStart, Collections.nCopies(page.mSize, null));
+					page.mState = STATE_RELEASED;
+					released = true;
+				}
+				else if(near && page.mState == STATE_RELEASED && mInFlight < mMaxPagesInFlight)
+					load(page);
+			}
+			if(released)
+				mAdapter.notifyDataSetChanged();
+		}
+		requestNextPages();
+	}
+
+	/**
+	 * Request pages after the last requested one while the list is close to its end.
+	 */
+	private void requestNextPages()
+	{
+		while(!mEndReached && !mFailed && mInFlight < mMaxPagesInFlight)
+		{
+			int next = mPages.size();
+			int requestedEnd = next * mService.getPageSize();
+			if(next > 0 && mFirstVisible + mVisibleCount + mPrefetchDistance < requestedEnd)
+				return;
+			String cursor = null;
+			if(mService.getPaging() == PagedService.PAGING_CURSOR && next > 0)
+			{
+				Page previous = mPages.get(next - 1);
+				if(previous.mState == STATE_LOADING || previous.mState == STATE_FAILED)
+					return;
+				cursor = previous.mNextCursor;
+			}
+			Page page = new Page(next, cursor);
+			mPages.add(page);
+			load(page);
+		}
+	}
+
+	private void load(Page page)
+	{
+		ServiceExecutor executor = mExecutor != null ? mExecutor : ServiceExecutor.getDefault();
+		page.mState = STATE_LOADING;
+		page.mService = mService.forPage(page.mIndex, page.mCursor);
+		mInFlight++;
+		page.mCall = executor.submit(new PageListener(page), page.mService, mContext);
+	}
+
+	/**
+	 * Append the loaded pages that are next in order to the adapter.
+	 */
+	@SuppressWarnings("rawtypes")
+	private void appendReadyPages()
+	{
+		boolean appended = false;
+		while(mAppendedPages < mPages.size() && mPages.get(mAppendedPages).mState == STATE_WAITING)
+		{
+			Page page = mPages.get(mAppendedPages);
+			ArrayList items = page.mItems;
+			page.mItems = null;
+			ArrayList<?> listData = mAdapter.getListData();
+			page.mStart = listData == null ? 0 : listData.size();
+			page.mSize = items.size();
+			page.mState = STATE_LOADED;
+			mAdapter.appendListData(items);
+			mAppendedPages++;
+			appended = true;
+			if(!page.mHasNext)
+			{
+				//drop pages requested past the end.
+				mEndReached = true;
+				while(mPages.size() > mAppendedPages)
+				{
+					Page extra = mPages.remove(mPages.size() - 1);
+					if(extra.mState == STATE_LOADING && extra.mCall != null && extra.mCall.cancel())
+						mInFlight--;
+				}
+			}
+			if(mListener != null)
+				mListener.onPageLoaded(page.mIndex, !mEndReached);
+		}
+		if(appended)
+			mAdapter.notifyDataSetChanged();
+	}
+
+	/**
+	 * A requested page.
+	 */
+	private static class Page
+	{
+		private final int mIndex;
+		private final String mCursor;
+		private int mState = STATE_LOADING;
+		//Position of the first item in the adapter's list, -1 until it is appended.
+		private int mStart = -1;
+		private int mSize;
+		//Items waiting to be appended.
+		@SuppressWarnings("rawtypes")
+		private ArrayList mItems;
+		private boolean mHasNext;
+		private String mNextCursor;
+		//Copy of the service loading the page.
+		private PagedService mService;
+		private ServiceCall mCall;
+
+		Page(int index, String cursor)
+		{
+			mIndex = index;
+			mCursor = cursor;
+		}
+	}
+
+	/**
+	 * Receives one page.
+	 */
+	private class PageListener implements AsyncServiceListener
+	{
+		private final Page mPage;
+
+		PageListener(Page page)
+		{
+			mPage = page;
+		}
+
+		@Override
+		public void onServiceCallProgressUpdate(String[] progress)
+		{
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public void onServiceCallSuccess(Bundle success)
+		{
+			mInFlight--;
+			if(!isCurrent())
+				return;
+			ArrayList items = (ArrayList)success.getSerializable(AsyncServiceCallTask.EXTRA_SERVICE_RESULT);
+			if(items == null)
+				items = new ArrayList();
+			PagedService service = mPage.mService;
+			if(mPage.mStart >= 0)
+			{
+				//a released page was loaded again.
+				mAdapter.replaceListData(mPage.mStart, items.subList(0, Math.min(items.size(), mPage.mSize)));
+				mPage.mState = STATE_LOADED;
+				mAdapter.notifyDataSetChanged();
+				if(mListener != null)
+					mListener.onPageLoaded(mPage.mIndex, !mEndReached);
+			}
+			else
+			{
+				mPage.mItems = items;
+				if(items instanceof PagedService.PageResult)
+				{
+					//the copy did not parse the page if it came from the result cache or an identical call.
+					PagedService.PageResult result = (PagedService.PageResult)items;
+					mPage.mHasNext = result.hasNextPage();
+					mPage.mNextCursor = result.getNextCursor();
+				}
+				else
+				{
+					mPage.mHasNext = service.hasNextPage(items.size());
+					mPage.mNextCursor = service.getNextCursor();
+				}
+				mPage.mState = STATE_WAITING;
+				appendReadyPages();
+			}
+			update();
+		}
+
+		@Override
+		public void onServiceCallFailure(String errMsg, int errCode)
+		{
+			mInFlight--;
+			if(!isCurrent())
+				return;
+			if(mPage.mStart >= 0)
+			{
+				//leave the placeholders, the page is loaded again when it comes into view.
+				mPage.mState = STATE_RELEASED;
+				return;
+			}
+			mPage.mState = STATE_FAILED;
+			mFailed = true;
+			if(mListener != null)
+				mListener.onPageFailed(mPage.mIndex, errMsg, errCode);
+		}
+
+		/**
+		 * Check if the page is still part of the list, it is not after the loader restarted or the end was reached before it.
+		 */
+		private boolean isCurrent()
+		{
+			return mPage.mIndex < mPages.size() && mPages.get(mPage.mIndex) == mPage;
+		}
+	}
+}